@@ -0,0 +1,123 @@
+package io.openio.sds.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Upload of a 16 MiB chunk to 3 replicas, as done by RawxClient: with a
+ * new buffer per read fed to a FeedableInputStream per replica, and with
+ * the buffers of a FanOut ring shared by the replicas. The replicas copy
+ * the data into a connection-sized buffer. Run with {@code -prof gc} to see
+ * the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+    private static final int SIZE = 16 * 1024 * 1024;
+    private static final int REPLICAS = 3;
+    private static final int SEND_BUFFER_SIZE = 8192;
+
+    @Param({ "8192", "65536" })
+    public int receiveBufferSize;
+
+    private ExecutorService executor;
+    private byte[] source;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        source = new byte[receiveBufferSize];
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long feedableStreams() throws Exception {
+        List<FeedableInputStream> gens = new ArrayList<FeedableInputStream>();
+        List<Future<Long>> replicas = new ArrayList<Future<Long>>();
+        for (int i = 0; i < REPLICAS; i++) {
+            FeedableInputStream in = new FeedableInputStream(5, 2000, 5);
+            gens.add(in);
+            replicas.add(executor.submit(replica(in)));
+        }
+        long done = 0;
+        while (done < SIZE) {
+            byte[] b = new byte[(int) Math.min(SIZE - done, receiveBufferSize)];
+            System.arraycopy(source, 0, b, 0, b.length);
+            done += b.length;
+            for (FeedableInputStream in : gens)
+                in.feed(ByteBuffer.wrap(b), done >= SIZE);
+        }
+        return join(replicas);
+    }
+
+    @Benchmark
+    public long fanOut() throws Exception {
+        FanOut fanout = new FanOut(REPLICAS, 5, receiveBufferSize, 10000);
+        List<Future<Long>> replicas = new ArrayList<Future<Long>>();
+        for (int i = 0; i < REPLICAS; i++)
+            replicas.add(executor.submit(replica(fanout.reader(i))));
+        long done = 0;
+        while (done < SIZE) {
+            byte[] b = fanout.acquire();
+            int len = (int) Math.min(SIZE - done, b.length);
+            System.arraycopy(source, 0, b, 0, len);
+            done += len;
+            fanout.publish(len, done >= SIZE);
+        }
+        return join(replicas);
+    }
+
+    private static Callable<Long> replica(final InputStream in) {
+        return new Callable<Long>() {
+            @Override
+            public Long call() throws IOException {
+                byte[] buf = new byte[SEND_BUFFER_SIZE];
+                long total = 0;
+                int n;
+                while (total < SIZE && -1 != (n = in.read(buf, 0, buf.length)))
+                    total += n;
+                in.close();
+                return total;
+            }
+        };
+    }
+
+    private static long join(List<Future<Long>> replicas)
+            throws InterruptedException, ExecutionException {
+        long total = 0;
+        for (Future<Long> f : replicas)
+            total += f.get();
+        return total;
+    }
+}
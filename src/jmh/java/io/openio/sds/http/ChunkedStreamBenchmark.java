@@ -0,0 +1,132 @@
+package io.openio.sds.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.openio.sds.http.ResponseHeadBenchmark.ReplayStream;
+
+/**
+ * Decoding of a 1 MiB chunked body, as sent by ecd for an erasure coded
+ * download, with the former byte-by-byte size parser and with the decoder
+ * working on the connection buffer. Run with {@code -prof gc} to see the
+ * allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkedStreamBenchmark {
+
+    private static final int BODY_SIZE = 1024 * 1024;
+
+    @Param({ "512", "8192", "65536" })
+    public int chunkSize;
+
+    private ConnectionReader reader;
+    private byte[] buf = new byte[65536];
+
+    @Setup
+    public void setup() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] data = new byte[chunkSize];
+        for (int sent = 0; sent < BODY_SIZE; sent += chunkSize) {
+            body.write(Integer.toHexString(chunkSize).getBytes("US-ASCII"));
+            body.write(new byte[] { '\r', '\n' });
+            body.write(data);
+            body.write(new byte[] { '\r', '\n' });
+        }
+        body.write("0\r\n\r\n".getBytes("US-ASCII"));
+        reader = new ConnectionReader(new ReplayStream(body.toByteArray()),
+                ConnectionReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Benchmark
+    public long formerDecoder() throws IOException {
+        return consume(new FormerChunkedStream(reader));
+    }
+
+    @Benchmark
+    public long bufferDecoder() throws IOException {
+        return consume(new ChunkedStream(reader));
+    }
+
+    private long consume(InputStream in) throws IOException {
+        long total = 0;
+        int n;
+        while (-1 != (n = in.read(buf, 0, buf.length)))
+            total += n;
+        return total;
+    }
+
+    /*
+     * The former ChunkedStream
+     */
+    static class FormerChunkedStream extends InputStream {
+
+        private InputStream chunked;
+        private int currentRemaining = 0;
+        private boolean first = true;
+
+        FormerChunkedStream(InputStream chunked) {
+            this.chunked = chunked;
+        }
+
+        @Override
+        public int read() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] buf, int offset, int len) throws IOException {
+            if (0 == currentRemaining)
+                readSize();
+            if (-1 == currentRemaining)
+                return -1;
+            int res = chunked.read(buf, offset,
+                    Math.min(len, Math.min(buf.length - offset, currentRemaining)));
+            currentRemaining = currentRemaining - res;
+            return res;
+        }
+
+        private void readSize() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            if (!first)
+                readCRLF();
+            first = false;
+            while ('\r' != (b = chunked.read())) {
+                if (-1 == b)
+                    throw new EOFException("Unexpected end of chunked stream");
+                out.write(b);
+            }
+            chunked.read();
+            currentRemaining = Integer.parseInt(out.toString("utf-8"), 16);
+            if (0 == currentRemaining) {
+                readCRLF();
+                currentRemaining = -1;
+            }
+        }
+
+        private void readCRLF() throws IOException {
+            chunked.read();
+            chunked.read();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.openio.sds.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.SocketProviders;
+import io.openio.sds.http.OioHttp.RequestBuilder;
+
+/**
+ * Encoding of the head of a proxy "content/show" GET into the buffer of a
+ * connection. Run with {@code -prof gc} to see the allocation rate:
+ * {@code encode} only encodes a prepared request, {@code buildAndEncode}
+ * also builds the request as the proxy client does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestEncoderBenchmark {
+
+    private static final String URL = "http://127.0.0.1:6006/v3.0/OPENIO/content/show"
+            + "?acct=ACME&ref=backups&path=2018%2F06%2F12%2Fdb-dump.tar.gz";
+
+    private OioHttp http;
+    private RequestContext reqCtx;
+    private RequestBuilder prepared;
+    private ConnectionWriter writer;
+
+    @Setup
+    public void setup() {
+        OioHttpSettings settings = new OioHttpSettings();
+        http = OioHttp.http(settings, SocketProviders.directSocketProvider(settings));
+        reqCtx = new RequestContext().withRequestId("4F3D1A7B8C65050060D2A0D2F8C3E1A1");
+        prepared = http.get(URL).withRequestContext(reqCtx);
+        writer = new ConnectionWriter(new NullOutputStream(), settings.sendBufferSize());
+    }
+
+    @Benchmark
+    public ConnectionWriter encode() throws IOException {
+        prepared.writeHead(writer.reset());
+        return writer;
+    }
+
+    @Benchmark
+    public ConnectionWriter buildAndEncode() throws IOException {
+        http.get(URL).withRequestContext(reqCtx).writeHead(writer.reset());
+        return writer;
+    }
+
+    static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.openio.sds.http;
+
+import static io.openio.sds.common.OioConstants.OIO_CHARSET;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.openio.sds.http.OioHttpResponse.ResponseHead;
+
+/**
+ * Parsing of a proxy "content/show" response head, with the former
+ * byte-by-byte and String based parser, and with the parser working on the
+ * connection buffer. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseHeadBenchmark {
+
+    static final String CONTENT_SHOW_HEAD = "HTTP/1.1 200 OK\r\n"
+            + "Content-Type: application/json\r\n"
+            + "Content-Length: 1474\r\n"
+            + "Date: Tue, 12 Jun 2018 09:21:07 GMT\r\n"
+            + "X-oio-content-meta-chunk-method: plain/nb_copy=3\r\n"
+            + "X-oio-content-meta-ctime: 1528795267\r\n"
+            + "X-oio-content-meta-deleted: False\r\n"
+            + "X-oio-content-meta-hash: 9E107D9D372BB6826BD81D3542A419D6\r\n"
+            + "X-oio-content-meta-hash-method: md5\r\n"
+            + "X-oio-content-meta-id: 4F3D1A7B8C65050060D2A0D2F8C3E1A1\r\n"
+            + "X-oio-content-meta-length: 104857600\r\n"
+            + "X-oio-content-meta-mime-type: application/octet-stream\r\n"
+            + "X-oio-content-meta-name: backups/2018/06/12/db-dump.tar.gz\r\n"
+            + "X-oio-content-meta-policy: THREECOPIES\r\n"
+            + "X-oio-content-meta-version: 1528795267413270\r\n"
+            + "X-oio-content-meta-mtime: 1528795267\r\n"
+            + "X-oio-content-meta-size: 104857600\r\n"
+            + "X-oio-content-meta-x-owner: backup-agent\r\n"
+            + "X-oio-content-meta-x-retention: 30d\r\n"
+            + "X-oio-content-meta-x-source-host: db-04.example.com\r\n"
+            + "X-oio-container-meta-sys-account: ACME\r\n"
+            + "X-oio-container-meta-sys-m2-ctime: 1528791011\r\n"
+            + "X-oio-container-meta-sys-m2-init: 1\r\n"
+            + "X-oio-container-meta-sys-m2-usage: 8589934592\r\n"
+            + "X-oio-container-meta-sys-m2-version: 2\r\n"
+            + "X-oio-container-meta-sys-name: 6A1E2F0C9C7FB0E3A8B4D1F2C6D7E8F9A0B1C2D3E4F5061728394A5B6C7D8E9F.1\r\n"
+            + "X-oio-container-meta-sys-ns: OPENIO\r\n"
+            + "X-oio-container-meta-sys-type: meta2\r\n"
+            + "X-oio-container-meta-sys-user-name: backups\r\n"
+            + "X-oio-container-meta-x-schema-version: 1.8\r\n"
+            + "X-oio-container-meta-x-version-main-admin: 1::0\r\n"
+            + "X-oio-container-meta-x-version-main-aliases: 1::0\r\n"
+            + "X-oio-container-meta-x-version-main-chunks: 1::0\r\n"
+            + "X-oio-container-meta-x-version-main-contents: 1::0\r\n"
+            + "X-oio-container-meta-x-version-main-properties: 1::0\r\n"
+            + "X-oio-ns-chunk-size: 1048576\r\n"
+            + "\r\n";
+
+    private ReplayStream stream;
+    private ConnectionReader reader;
+
+    @Setup
+    public void setup() {
+        stream = new ReplayStream(CONTENT_SHOW_HEAD.getBytes(OIO_CHARSET));
+        reader = new ConnectionReader(stream, ConnectionReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Benchmark
+    public ResponseHead stringParser() throws IOException {
+        return ResponseHead.parse(readHeaders(new BufferedInputStream(stream)));
+    }
+
+    @Benchmark
+    public ResponseHead bufferParser() throws IOException {
+        return ResponseHead.parse(reader);
+    }
+
+    /*
+     * The former OioHttpResponse.readHeaders()
+     */
+    private static String readHeaders(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int state = 0;
+        while (state < 3) {
+            int b = in.read();
+            bos.write(b);
+            if (b == '\r')
+                state = (state == 2) ? 3 : 1;
+            else if (b == '\n')
+                state = (state == 1) ? 2 : 0;
+            else
+                state = 0;
+        }
+        in.read();
+        return new String(bos.toByteArray(), OIO_CHARSET);
+    }
+
+    /**
+     * Endless stream of the same response head, never returning bytes of
+     * two heads in one read, so both parsers see one response per call.
+     */
+    static class ReplayStream extends InputStream {
+
+        private final byte[] data;
+        private int pos = 0;
+
+        ReplayStream(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read() {
+            int b = data[pos++];
+            if (pos == data.length)
+                pos = 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int n = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            if (pos == data.length)
+                pos = 0;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.openio.sds.http;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.openio.sds.common.SocketProvider;
+import io.openio.sds.common.SocketProviders;
+import io.openio.sds.pool.PoolingSettings;
+
+/**
+ * Throughput of small requests (like chunk PUT/DELETE) over pooled and
+ * direct connections, against a local keep-alive HTTP server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class SocketProviderBenchmark {
+
+    @Param({ "direct", "pooled" })
+    public String provider;
+
+    private LoopbackServer server;
+    private OioHttp http;
+    private String url;
+
+    @Setup
+    public void setup() throws IOException {
+        server = new LoopbackServer();
+        server.start();
+        OioHttpSettings settings = new OioHttpSettings();
+        SocketProvider socketProvider = "pooled".equals(provider)
+                ? SocketProviders.pooledSocketProvider(new PoolingSettings(), settings)
+                : SocketProviders.directSocketProvider(settings);
+        http = OioHttp.http(settings, socketProvider);
+        url = "http://127.0.0.1:" + server.port() + "/chunk";
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public int request() {
+        OioHttpResponse resp = http.get(url).execute();
+        resp.close();
+        return resp.code();
+    }
+
+    /**
+     * Minimal HTTP/1.1 server answering "200 OK" with an empty body to every
+     * request, keeping the connection open unless asked otherwise.
+     */
+    static class LoopbackServer extends Thread {
+
+        private static final byte[] RESPONSE = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Length: 0\r\n\r\n").getBytes();
+        private static final byte[] RESPONSE_CLOSE = ("HTTP/1.1 200 OK\r\n"
+                + "Content-Length: 0\r\nConnection: close\r\n\r\n").getBytes();
+
+        private final ServerSocket server;
+
+        LoopbackServer() throws IOException {
+            super("loopback-server");
+            setDaemon(true);
+            server = new ServerSocket();
+            server.setReuseAddress(true);
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        }
+
+        int port() {
+            return server.getLocalPort();
+        }
+
+        void shutdown() throws IOException {
+            server.close();
+        }
+
+        @Override
+        public void run() {
+            while (!server.isClosed()) {
+                try {
+                    final Socket sock = server.accept();
+                    Thread handler = new Thread() {
+                        @Override
+                        public void run() {
+                            serve(sock);
+                        }
+                    };
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        }
+
+        private void serve(Socket sock) {
+            try {
+                InputStream in = new BufferedInputStream(sock.getInputStream());
+                OutputStream out = sock.getOutputStream();
+                while (true) {
+                    boolean close = readHead(in);
+                    out.write(close ? RESPONSE_CLOSE : RESPONSE);
+                    out.flush();
+                    if (close)
+                        break;
+                }
+            } catch (IOException e) {
+                // client went away
+            } finally {
+                try {
+                    sock.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        /**
+         * Read a request head, and tell if the client asked to close the
+         * connection.
+         */
+        private boolean readHead(InputStream in) throws IOException {
+            StringBuilder head = new StringBuilder();
+            int state = 0;
+            while (state < 4) {
+                int b = in.read();
+                if (-1 == b)
+                    throw new IOException("connection closed");
+                head.append((char) b);
+                if (b == '\r')
+                    state = (state == 2) ? 3 : 1;
+                else if (b == '\n')
+                    state = (state == 1 || state == 3) ? state + 1 : 0;
+                else
+                    state = 0;
+            }
+            return head.indexOf("Connection: close") >= 0;
+        }
+    }
+}
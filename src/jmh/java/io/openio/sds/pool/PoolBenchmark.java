@@ -0,0 +1,122 @@
+package io.openio.sds.pool;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lease/release throughput of the FIFO blocking pool, the lock-free LIFO
+ * pool, and the LIFO pool with thread affinity, under increasing contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PoolBenchmark {
+
+    @Param({ "fifo", "lifo", "lifo-affine" })
+    public String pool;
+
+    private Pool<Item> p;
+
+    @Setup
+    public void setup() {
+        PoolingSettings settings = new PoolingSettings()
+                .maxForEach(1024)
+                .idleTimeout(Integer.MAX_VALUE)
+                .lifo(!"fifo".equals(pool))
+                .threadAffinity("lifo-affine".equals(pool));
+        p = new Pool<Item>(settings) {
+
+            @Override
+            protected Item create() {
+                return new Item();
+            }
+
+            @Override
+            protected void destroy(Item t) {
+                // nothing
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        p.shutdown();
+    }
+
+    private Item leaseRelease() {
+        Item item = p.lease();
+        p.release(item);
+        return item;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Item threads001() {
+        return leaseRelease();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Item threads008() {
+        return leaseRelease();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Item threads064() {
+        return leaseRelease();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public Item threads256() {
+        return leaseRelease();
+    }
+
+    static class Item implements Poolable {
+
+        private volatile boolean pooled = false;
+        private volatile long lastUsage;
+
+        @Override
+        public boolean reusable() {
+            return true;
+        }
+
+        @Override
+        public void lastUsage(long lastUsage) {
+            this.lastUsage = lastUsage;
+        }
+
+        @Override
+        public long lastUsage() {
+            return lastUsage;
+        }
+
+        @Override
+        public void setPooled(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public boolean isPooled() {
+            return pooled;
+        }
+    }
+}
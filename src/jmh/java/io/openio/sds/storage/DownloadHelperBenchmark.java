@@ -0,0 +1,117 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.models.Range.between;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+
+/**
+ * Mapping of a range of an object made of 10000 chunks to its targets, with
+ * the former linear scan and with the offset index. {@code tail} reads the
+ * last kilobytes of the object, {@code wide} almost all of it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadHelperBenchmark {
+
+    private static final int CHUNKS = 10000;
+    private static final long CHUNK_SIZE = 1024 * 1024;
+
+    @Param({ "tail", "wide" })
+    public String range;
+
+    private ObjectInfo oinf;
+    private Range r;
+
+    @Setup
+    public void setup() {
+        List<ChunkInfo> chunks = new ArrayList<ChunkInfo>(CHUNKS);
+        for (int pos = 0; pos < CHUNKS; pos++)
+            chunks.add(new ChunkInfo().pos(Position.simple(pos)).size(CHUNK_SIZE)
+                    .url("http://127.0.0.1:6001/" + pos));
+        oinf = new ObjectInfo().size(CHUNKS * CHUNK_SIZE).chunks(chunks);
+        long size = CHUNKS * CHUNK_SIZE;
+        if ("tail".equals(range))
+            r = between(size - 10000, size - 1);
+        else
+            r = between(1000, size - 1000);
+        // both build the sorted chunks, keep it out of the measure
+        oinf.sortedChunks();
+    }
+
+    @Benchmark
+    public List<Target> formerScan() {
+        return FormerDownloadHelper.loadTargets(oinf, r);
+    }
+
+    @Benchmark
+    public List<Target> offsetIndex() {
+        return DownloadHelper.loadTargets(oinf, r);
+    }
+
+    /*
+     * The former DownloadHelper
+     */
+    static class FormerDownloadHelper {
+
+        static List<Target> loadTargets(ObjectInfo oinf, Range range) {
+            LinkedList<Target> targets = new LinkedList<Target>();
+            ObjectOffset begin = findOffset(oinf, range.from());
+            ObjectOffset end = findOffset(oinf, range.to());
+            if (end.pos() == begin.pos()) {
+                targets.addFirst(new Target()
+                        .setChunk(oinf.sortedChunks().get(begin.pos()))
+                        .setRange(between(begin.offset(), end.offset())));
+            } else {
+                targets.addFirst(new Target()
+                        .setChunk(oinf.sortedChunks().get(begin.pos()))
+                        .setRange(between(begin.offset(),
+                                oinf.chunksize(begin.pos()).intValue() - 1)));
+                for (int extrapos = begin.pos() + 1; extrapos < end.pos(); extrapos++) {
+                    targets.addFirst(new Target()
+                            .setChunk(oinf.sortedChunks().get(extrapos))
+                            .setRange(between(0, oinf.chunksize(extrapos).intValue())));
+                }
+                targets.addFirst(new Target()
+                        .setChunk(oinf.sortedChunks().get(end.pos()))
+                        .setRange(between(0, end.offset())));
+            }
+            Collections.reverse(targets);
+            return targets;
+        }
+
+        private static ObjectOffset findOffset(ObjectInfo oinf, long offset) {
+            for (int pos = 0; pos < oinf.nbchunks(); pos++) {
+                long size = oinf.chunksize(pos);
+                if (offset <= size)
+                    return new ObjectOffset().pos(pos).offset(offset);
+                offset -= size;
+            }
+            throw new IllegalArgumentException("Range begin out of content size");
+        }
+    }
+}
@@ -2,6 +2,9 @@ package io.openio.sds;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -510,6 +513,56 @@ public interface Client {
      */
     public InputStream downloadObject(ObjectInfo oinf, Range range);
 
+    /**
+     * Downloads the data of the specified object into a file, several chunks
+     * at a time. The file is created if needed, and truncated.
+     * 
+     * @param oinf
+     *            the information about object to download
+     * @param path
+     *            the file to write the data into
+     * @param parallelism
+     *            the maximum number of chunks downloaded at the same time
+     * 
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public void downloadObject(ObjectInfo oinf, Path path, int parallelism);
+
+    /**
+     * Downloads the data of the specified object into a file, several chunks
+     * at a time. Each chunk is written at its offset in the object, the
+     * position of the channel is not used. The file is then truncated to the
+     * size of the object.
+     * 
+     * @param oinf
+     *            the information about object to download
+     * @param channel
+     *            the file to write the data into, not closed
+     * @param parallelism
+     *            the maximum number of chunks downloaded at the same time
+     * 
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public void downloadObject(ObjectInfo oinf, FileChannel channel, int parallelism);
+
+    /**
+     * Opens a read-only channel over the data of the specified object, for
+     * random access. The data is downloaded by blocks, which are cached by
+     * the client, so reading the same part again is served locally.
+     * <p>
+     * Erasure coded objects are not supported.
+     * 
+     * @param oinf
+     *            the information about object to read
+     * @return the channel
+     * 
+     * @throws OioException
+     *             if the object is erasure coded
+     */
+    public SeekableByteChannel openObject(ObjectInfo oinf);
+
 
     /**
      * Deletes the specified object
@@ -3,9 +3,9 @@ package io.openio.sds;
 import static io.openio.sds.http.OioHttp.http;
 
 import java.io.FileNotFoundException;
-import java.net.InetSocketAddress;
-import java.net.URI;
 
+import io.openio.sds.common.HostSelector;
+import io.openio.sds.common.HostSelectors;
 import io.openio.sds.common.SocketProvider;
 import io.openio.sds.common.SocketProviders;
 import io.openio.sds.http.OioHttp;
@@ -31,11 +31,14 @@ public class ClientBuilder {
 	 * @return a new {@link AdvancedClient} object
 	 */
 	public static AdvancedClient newAdvancedClient(Settings settings) {
+		// proxies and ecd services are scored together, hosts are distinct
+		HostSelector hostSelector = HostSelectors.scoredHostSelector();
 		OioHttp proxyHttp = http(settings.proxy().http(),
-		        proxySocketProvider(settings.proxy().url(),
-		                settings.proxy().http(), settings.proxy().pooling()));
+		        proxySocketProvider(settings.proxy().http(),
+		                settings.proxy().pooling()), hostSelector);
 		OioHttp rawxHttp = http(settings.rawx().http(),
-		        rawxSocketProvider(settings.rawx().http()));
+		        rawxSocketProvider(settings.rawx().http(),
+		                settings.rawx().pooling()), hostSelector);
 		ProxyClient proxy = new ProxyClient(proxyHttp, settings.proxy());
 		RawxClient rawx = new RawxClient(rawxHttp, settings.rawx());
 		EcdClient ecd = null == settings.proxy().ecd() 
@@ -105,18 +108,21 @@ public class ClientBuilder {
 		return newClient(settings);
 	}
 
-	private static SocketProvider proxySocketProvider(String url,
+	/*
+	 * Requests fail over to the other proxy hosts, so keep a pool for each
+	 * of them, not only for the first one.
+	 */
+	private static SocketProvider proxySocketProvider(
 	        final OioHttpSettings http, PoolingSettings pooling) {
-		URI uri = URI.create(url);
-		InetSocketAddress target = new InetSocketAddress(uri.getHost(),
-		        uri.getPort());
 		return pooling.enabled()
-		        ? SocketProviders.pooledSocketProvider(pooling, http, target)
+		        ? SocketProviders.pooledSocketProvider(pooling, http)
 		        : SocketProviders.directSocketProvider(http);
 	}
 
 	private static SocketProvider rawxSocketProvider(
-	        final OioHttpSettings http) {
-		return SocketProviders.directSocketProvider(http);
+	        final OioHttpSettings http, PoolingSettings pooling) {
+		return pooling.enabled()
+		        ? SocketProviders.pooledSocketProvider(pooling, http)
+		        : SocketProviders.directSocketProvider(http);
 	}
 }
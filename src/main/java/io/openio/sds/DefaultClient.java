@@ -4,7 +4,13 @@ import static io.openio.sds.common.Check.checkArgument;
 import static io.openio.sds.common.IdGen.requestId;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 
@@ -269,6 +275,67 @@ public class DefaultClient implements AdvancedClient {
                 .downloadObject(oinf, range, reqCtx);
     }
 
+    @Override
+    public void downloadObject(ObjectInfo oinf, Path path, int parallelism) {
+        checkArgument(path != null, "path cannot be null");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            downloadObject(oinf, channel, parallelism);
+        } catch (IOException e) {
+            throw new OioException("Unable to write object data to " + path, e);
+        }
+    }
+
+    @Override
+    public void downloadObject(ObjectInfo oinf, FileChannel channel, int parallelism) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        checkArgument(channel != null, "channel cannot be null");
+        RequestContext reqCtx = oinf.requestContext();
+        reqCtx.startTiming();
+        if (oinf.isEC())
+            copy(ecd.downloadObject(oinf, reqCtx), channel);
+        else
+            rawx.downloadObject(oinf, channel, parallelism, reqCtx);
+        try {
+            // drop what a larger file had past the end of the object
+            channel.truncate(oinf.size());
+        } catch (IOException e) {
+            throw new OioException("Unable to truncate object data", e);
+        }
+    }
+
+    @Override
+    public SeekableByteChannel openObject(ObjectInfo oinf) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        if (oinf.isEC())
+            throw new OioException("Random access to erasure coded objects is not supported");
+        RequestContext reqCtx = oinf.requestContext();
+        reqCtx.startTiming();
+        return rawx.openObject(oinf, reqCtx);
+    }
+
+    /*
+     * Erasure coded objects are decoded by ecd, as a single stream.
+     */
+    private static void copy(InputStream in, FileChannel channel) {
+        byte[] buf = new byte[128 * 1024];
+        long position = 0;
+        try {
+            try {
+                int read;
+                while (-1 != (read = in.read(buf))) {
+                    ByteBuffer b = ByteBuffer.wrap(buf, 0, read);
+                    while (b.hasRemaining())
+                        position += channel.write(b, position);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new OioException("Unable to download object data", e);
+        }
+    }
+
     @Override
     public void deleteObject(OioUrl url) {
         this.deleteObject(url, null, new RequestContext());
@@ -0,0 +1,316 @@
+package io.openio.sds.common;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies a stream to several readers, e.g. the uploads of the replicas of
+ * a chunk, without copying it for each of them.
+ * <p>
+ * The producer fills the buffers of a ring ({@link #acquire()}, then
+ * {@link #publish(int, boolean)}), and all the readers read the same
+ * buffers. Each buffer counts the readers which have not read it yet, and
+ * is filled again once the last of them is done with it. A slow reader
+ * holds the producer back once it is {@code slots} buffers late.
+ * <p>
+ * A reader which is closed before the end releases the buffers it did not
+ * read, so the producer never waits for it. {@link #abort()} makes all the
+ * readers fail, e.g. when the source stream breaks.
+ * <p>
+ * With {@link #quorum(int)}, the producer does not wait for the late readers
+ * either, as long as enough of them keep up: the readers a whole ring behind
+ * are shed, i.e. closed and made to fail, instead. The buffers are allocated
+ * on first use, so a large ring only costs memory if the readers actually
+ * drift apart, or if the stream is long enough to go around it.
+ */
+public class FanOut {
+
+    private final byte[][] slots;
+    private final int slotSize;
+    private final int[] lengths;
+    /* readers which have not read each slot yet */
+    private final int[] refs;
+    private final Reader[] readers;
+    private final long timeoutNanos;
+    /* number of slots published so far */
+    private long published = 0;
+    private boolean ended = false;
+    private boolean aborted = false;
+    private int open;
+    /* readers to keep up with, 0 to wait for all of them */
+    private int quorum = 0;
+
+    /**
+     * @param readers
+     *            the number of readers
+     * @param slots
+     *            the number of buffers of the ring
+     * @param slotSize
+     *            the size of each buffer
+     * @param timeoutMillis
+     *            how long a reader waits for the next buffer before failing
+     */
+    public FanOut(int readers, int slots, int slotSize, long timeoutMillis) {
+        Check.checkArgument(0 < readers, "readers must be positive");
+        Check.checkArgument(0 < slots, "slots must be positive");
+        Check.checkArgument(0 < slotSize, "slotSize must be positive");
+        this.slots = new byte[slots][];
+        this.slotSize = slotSize;
+        this.lengths = new int[slots];
+        this.refs = new int[slots];
+        this.readers = new Reader[readers];
+        for (int i = 0; i < readers; i++)
+            this.readers[i] = new Reader();
+        this.open = readers;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Shed the readers a whole ring behind when at least {@code quorum}
+     * readers are ahead of them, instead of waiting for them.
+     *
+     * @param quorum
+     *            the number of readers to keep up with, 0 to wait for all of
+     *            them
+     * @return this
+     */
+    public synchronized FanOut quorum(int quorum) {
+        Check.checkArgument(0 <= quorum, "quorum must not be negative");
+        this.quorum = quorum;
+        return this;
+    }
+
+    /**
+     * @param i
+     *            the index of the reader
+     * @return {@code true} if the reader was shed for being too late
+     */
+    public synchronized boolean shed(int i) {
+        return readers[i].shed;
+    }
+
+    /**
+     * Shed a reader, e.g. one still uploading once the others are done: it
+     * fails on its next read, and the producer does not wait for it.
+     *
+     * @param i
+     *            the index of the reader
+     */
+    public synchronized void abandon(int i) {
+        readers[i].shed = true;
+        readers[i].close();
+        notifyAll();
+    }
+
+    /**
+     * @param i
+     *            the index of the reader
+     * @return the stream of the reader
+     */
+    public InputStream reader(int i) {
+        return readers[i];
+    }
+
+    /**
+     * Returns the next buffer to fill, once all the readers have read its
+     * previous content, or have been shed. Must be followed by
+     * {@link #publish(int, boolean)}.
+     *
+     * @return the buffer, to fill from its start
+     * @throws InterruptedIOException
+     *             if the producer is interrupted while waiting
+     */
+    public synchronized byte[] acquire() throws InterruptedIOException {
+        int slot = (int) (published % slots.length);
+        try {
+            while (0 < refs[slot] && !aborted) {
+                if (!shedLaggards())
+                    wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while waiting for readers");
+        }
+        if (null == slots[slot])
+            slots[slot] = new byte[slotSize];
+        return slots[slot];
+    }
+
+    /*
+     * Close the readers holding the next slot to fill, i.e. a whole ring
+     * behind, if enough other readers are ahead
+     */
+    private boolean shedLaggards() {
+        if (0 == quorum)
+            return false;
+        long behind = published - slots.length;
+        int late = 0;
+        for (Reader r : readers) {
+            if (!r.closed && r.next <= behind)
+                late++;
+        }
+        if (0 == late || open - late < quorum)
+            return false;
+        for (Reader r : readers) {
+            if (!r.closed && r.next <= behind) {
+                r.shed = true;
+                r.close();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hand the buffer returned by {@link #acquire()} to the readers.
+     *
+     * @param length
+     *            the number of bytes put in the buffer
+     * @param last
+     *            whether it is the end of the stream
+     */
+    public synchronized void publish(int length, boolean last) {
+        int slot = (int) (published % slots.length);
+        lengths[slot] = length;
+        refs[slot] = open;
+        published++;
+        ended = last;
+        notifyAll();
+    }
+
+    /**
+     * Copy {@code size} bytes of a stream to the readers, then end their
+     * stream.
+     *
+     * @param data
+     *            the stream to copy
+     * @param size
+     *            the number of bytes to copy
+     * @throws IOException
+     *             if {@code data} fails or ends before {@code size} bytes
+     */
+    public void feed(InputStream data, long size) throws IOException {
+        long done = 0;
+        while (done < size) {
+            byte[] b = acquire();
+            int len = (int) Math.min(size - done, b.length);
+            int filled = 0;
+            while (filled < len) {
+                int read = data.read(b, filled, len - filled);
+                if (-1 == read)
+                    throw new EOFException("Unexpected end of stream");
+                filled += read;
+            }
+            done += len;
+            publish(len, done >= size);
+        }
+    }
+
+    /**
+     * Make the readers fail, and stop waiting for them.
+     */
+    public synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    /*
+     * A reader is done with a slot. With a quorum, the producer checks again
+     * for laggards each time a reader leaves the slot it waits for.
+     */
+    private synchronized void release(int slot) {
+        if (0 == --refs[slot] || (0 < quorum && slot == published % slots.length))
+            notifyAll();
+    }
+
+    private class Reader extends InputStream {
+
+        /* next slot to read, and position in it */
+        private long next = 0;
+        private int offset = 0;
+        private boolean closed = false;
+        private boolean shed = false;
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return -1 == read ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (0 >= len)
+                return 0;
+            int slot;
+            synchronized (FanOut.this) {
+                if (closed)
+                    throw closedException();
+                long deadline = System.nanoTime() + timeoutNanos;
+                while (next == published && !ended && !aborted && !closed) {
+                    long left = deadline - System.nanoTime();
+                    if (0 >= left)
+                        throw new IOException("Timed out waiting for data to upload");
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(FanOut.this, left);
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException("Interrupted while waiting for data");
+                    }
+                }
+                if (closed)
+                    throw closedException();
+                if (aborted)
+                    throw new IOException("Upload source failed");
+                if (next == published)
+                    return -1;
+                slot = (int) (next % slots.length);
+            }
+            // the slot is not filled again before this reader releases it,
+            // unless it is shed meanwhile
+            int n = Math.min(len, lengths[slot] - offset);
+            System.arraycopy(slots[slot], offset, b, off, n);
+            synchronized (FanOut.this) {
+                if (closed)
+                    throw closedException();
+                offset += n;
+                if (offset == lengths[slot]) {
+                    next++;
+                    offset = 0;
+                    release(slot);
+                }
+            }
+            return n;
+        }
+
+        private IOException closedException() {
+            if (shed)
+                return new IOException("Reader shed, more than "
+                        + (long) slots.length * slotSize + " bytes behind");
+            return new IOException("Stream closed");
+        }
+
+        @Override
+        public int available() {
+            synchronized (FanOut.this) {
+                return next < published ? lengths[(int) (next % slots.length)] - offset : 0;
+            }
+        }
+
+        /**
+         * Release the buffers not read yet, so the producer does not wait
+         * for this reader.
+         */
+        @Override
+        public void close() {
+            synchronized (FanOut.this) {
+                if (closed)
+                    return;
+                closed = true;
+                open--;
+                for (; next < published; next++)
+                    release((int) (next % slots.length));
+            }
+        }
+    }
+}
@@ -21,7 +21,7 @@ public class FeedableInputStream extends InputStream {
 
     private LinkedBlockingQueue<DataPart> q;
     private DataPart current = null;
-    private boolean failed = false;
+    private volatile boolean failed = false;
     private long pollDelayMillis = 10000;
 
     /**
@@ -76,6 +76,9 @@ public class FeedableInputStream extends InputStream {
     public int read(byte[] buf, int offset, int length) {
         if (length <= 0)
             return 0;
+        if (current != null && current.isLast() && (current.buffer() == null
+                || !current.buffer().hasRemaining()))
+            return -1;
         int retriesLeft = 5;
         while (current == null && retriesLeft > 0) {
             try {
@@ -104,17 +107,20 @@ public class FeedableInputStream extends InputStream {
         int read = Math.min(current.buffer().remaining(),
                 Math.min(buf.length - offset, length));
         current.buffer().get(buf, offset, read);
-
-        int rc;
-        if (read < length) {
-            rc = read + Math.max(0, read(buf, offset + read, length - read));
-        } else {
-            rc = read;
-        }
-
-        if (current.buffer().remaining() == 0)
+        /* the last part is kept, so the next read returns -1 */
+        if (!current.buffer().hasRemaining() && !current.isLast())
             current = null;
-        return rc;
+        return read;
+    }
+
+    /**
+     * Stop accepting data, so the feeder does not wait for a reader which
+     * is gone (e.g. the upload has been refused before its body was sent).
+     */
+    @Override
+    public void close() throws IOException {
+        failed = true;
+        q.clear();
     }
 
     public static class DataPart {
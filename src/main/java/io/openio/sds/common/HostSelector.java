@@ -0,0 +1,49 @@
+package io.openio.sds.common;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Chooses the order in which the hosts of a service (e.g. the proxies, or
+ * the ecd services) are tried, from the outcome of the previous requests.
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface HostSelector {
+
+    /**
+     * Returns the hosts in the order they should be tried.
+     *
+     * @param hosts
+     *            the hosts able to serve the request
+     * @return the same hosts, in the order they should be tried
+     */
+    public List<InetSocketAddress> select(List<InetSocketAddress> hosts);
+
+    /**
+     * Called when a request is sent to a host.
+     *
+     * @param host
+     *            the host
+     */
+    public void onStart(InetSocketAddress host);
+
+    /**
+     * Called when a host has answered a request.
+     *
+     * @param host
+     *            the host
+     * @param latencyNanos
+     *            the time taken to get the answer
+     */
+    public void onSuccess(InetSocketAddress host, long latencyNanos);
+
+    /**
+     * Called when a request to a host has failed because of the network
+     * (e.g. the connection was refused or timed out).
+     *
+     * @param host
+     *            the host
+     */
+    public void onFailure(InetSocketAddress host);
+}
@@ -0,0 +1,73 @@
+package io.openio.sds.common;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * Factory of {@link HostSelector}.
+ */
+public class HostSelectors {
+
+    public static final int DEFAULT_EJECTION_THRESHOLD = 3;
+    public static final long DEFAULT_EJECTION_MILLIS = 30000L;
+
+    private HostSelectors() {
+    }
+
+    /**
+     * Host selector always trying the hosts in the order they are
+     * specified.
+     *
+     * @return a new {@code HostSelector} instance
+     */
+    public static HostSelector orderedHostSelector() {
+        return new HostSelector() {
+
+            @Override
+            public List<InetSocketAddress> select(List<InetSocketAddress> hosts) {
+                return hosts;
+            }
+
+            @Override
+            public void onStart(InetSocketAddress host) {
+            }
+
+            @Override
+            public void onSuccess(InetSocketAddress host, long latencyNanos) {
+            }
+
+            @Override
+            public void onFailure(InetSocketAddress host) {
+            }
+        };
+    }
+
+    /**
+     * Host selector spreading the requests over the hosts, favoring the fast
+     * and healthy ones, with the default ejection settings.
+     *
+     * @return a new {@code HostSelector} instance
+     * @see ScoredHostSelector
+     */
+    public static HostSelector scoredHostSelector() {
+        return scoredHostSelector(DEFAULT_EJECTION_THRESHOLD, DEFAULT_EJECTION_MILLIS);
+    }
+
+    /**
+     * Host selector spreading the requests over the hosts, favoring the fast
+     * and healthy ones.
+     *
+     * @param ejectionThreshold
+     *            the number of consecutive failures after which a host is
+     *            only tried as a last resort
+     * @param ejectionMillis
+     *            the time in milliseconds during which a failing host is
+     *            only tried as a last resort
+     * @return a new {@code HostSelector} instance
+     * @see ScoredHostSelector
+     */
+    public static HostSelector scoredHostSelector(int ejectionThreshold,
+            long ejectionMillis) {
+        return new ScoredHostSelector(ejectionThreshold, ejectionMillis);
+    }
+}
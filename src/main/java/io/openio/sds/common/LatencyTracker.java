@@ -0,0 +1,73 @@
+package io.openio.sds.common;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the last latencies observed for a kind of request, to compute their
+ * percentiles.
+ * <p>
+ * Thread safe. Samples recorded concurrently may overwrite each other, and
+ * percentiles are only recomputed every {@code window / 16} samples, which
+ * is fine for an estimate.
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+    private final AtomicLong count = new AtomicLong(0);
+    private final int refresh;
+    private volatile long cachedAt = -1;
+    private volatile long[] sorted = new long[0];
+
+    /**
+     * @param window
+     *            the number of latest samples to keep
+     */
+    public LatencyTracker(int window) {
+        Check.checkArgument(0 < window, "window must be positive");
+        this.samples = new long[window];
+        this.refresh = Math.max(1, window / 16);
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos
+     *            the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long i = count.getAndIncrement();
+        samples[(int) (i % samples.length)] = nanos;
+    }
+
+    /**
+     * @return the number of latencies recorded so far
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Returns a percentile of the latest latencies.
+     *
+     * @param p
+     *            the percentile, between 0 and 1 (e.g. 0.95)
+     * @return the percentile in nanoseconds, or -1 if nothing has been
+     *         recorded yet
+     */
+    public long percentile(double p) {
+        Check.checkArgument(0 <= p && p <= 1, "percentile must be between 0 and 1");
+        long n = count.get();
+        if (0 == n)
+            return -1;
+        long[] s = sorted;
+        if (0 > cachedAt || n - cachedAt >= refresh) {
+            s = Arrays.copyOf(samples, (int) Math.min(n, samples.length));
+            Arrays.sort(s);
+            sorted = s;
+            cachedAt = n;
+        }
+        int rank = (int) Math.ceil(p * s.length) - 1;
+        return s[Math.max(0, Math.min(s.length - 1, rank))];
+    }
+}
@@ -0,0 +1,185 @@
+package io.openio.sds.common;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HostSelector} keeping a score for each host, from an exponentially
+ * weighted moving average (EWMA) of its latency and of its error rate, and
+ * from the number of requests in flight.
+ * <p>
+ * The first host is picked with the "power of two choices": the best of two
+ * hosts drawn at random. This spreads the load over all the hosts while
+ * avoiding the slow ones, without all the clients piling onto the best one.
+ * The other hosts follow, best score first, for the failovers.
+ * <p>
+ * After {@code ejectionThreshold} consecutive network failures, a host is
+ * ejected for {@code ejectionMillis}: it is only tried after all the other
+ * hosts. Once the ejection is over, a single failure ejects it again, and a
+ * success clears it.
+ */
+public class ScoredHostSelector implements HostSelector {
+
+    /* weight of the last sample in the moving averages */
+    private static final double ALPHA = 0.3;
+    /* a host failing every request looks this many times slower */
+    private static final double ERROR_PENALTY = 10.0;
+    /* latency floor, so unknown and very fast hosts still compare by load */
+    private static final double MIN_LATENCY_NANOS = 1000000.0;
+
+    private final ConcurrentHashMap<InetSocketAddress, HostStats> stats =
+            new ConcurrentHashMap<InetSocketAddress, HostStats>();
+    private final int ejectionThreshold;
+    private final long ejectionNanos;
+
+    public ScoredHostSelector(int ejectionThreshold, long ejectionMillis) {
+        Check.checkArgument(0 < ejectionThreshold, "ejectionThreshold must be positive");
+        Check.checkArgument(0 <= ejectionMillis, "ejectionMillis must not be negative");
+        this.ejectionThreshold = ejectionThreshold;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+    }
+
+    @Override
+    public List<InetSocketAddress> select(List<InetSocketAddress> hosts) {
+        int n = hosts.size();
+        if (2 > n)
+            return hosts;
+        long now = System.nanoTime();
+        ArrayList<Candidate> available = new ArrayList<Candidate>(n);
+        ArrayList<Candidate> ejected = new ArrayList<Candidate>(0);
+        for (InetSocketAddress host : hosts) {
+            Candidate c = new Candidate(host, stats(host), now);
+            if (c.ejected)
+                ejected.add(c);
+            else
+                available.add(c);
+        }
+        ArrayList<InetSocketAddress> res = new ArrayList<InetSocketAddress>(n);
+        if (2 <= available.size()) {
+            ThreadLocalRandom rand = ThreadLocalRandom.current();
+            int a = rand.nextInt(available.size());
+            int b = rand.nextInt(available.size() - 1);
+            if (b >= a)
+                b++;
+            int first = available.get(a).cost <= available.get(b).cost ? a : b;
+            res.add(available.remove(first).host);
+        }
+        Collections.sort(available, BY_COST);
+        Collections.sort(ejected, BY_EJECTION);
+        for (Candidate c : available)
+            res.add(c.host);
+        for (Candidate c : ejected)
+            res.add(c.host);
+        return res;
+    }
+
+    @Override
+    public void onStart(InetSocketAddress host) {
+        stats(host).inflight.incrementAndGet();
+    }
+
+    @Override
+    public void onSuccess(InetSocketAddress host, long latencyNanos) {
+        HostStats s = stats(host);
+        s.inflight.decrementAndGet();
+        synchronized (s) {
+            s.latency = 0 > s.latency ? latencyNanos : ewma(s.latency, latencyNanos);
+            s.errors = ewma(s.errors, 0.0);
+            s.failures = 0;
+            s.ejectedUntil = 0L;
+        }
+    }
+
+    @Override
+    public void onFailure(InetSocketAddress host) {
+        HostStats s = stats(host);
+        s.inflight.decrementAndGet();
+        synchronized (s) {
+            s.errors = ewma(s.errors, 1.0);
+            if (++s.failures >= ejectionThreshold)
+                s.ejectedUntil = System.nanoTime() + ejectionNanos;
+        }
+    }
+
+    /**
+     * @param host
+     *            the host
+     * @return {@code true} if the host is currently ejected
+     */
+    public boolean ejected(InetSocketAddress host) {
+        HostStats s = stats.get(host);
+        return null != s && s.ejected(System.nanoTime());
+    }
+
+    private HostStats stats(InetSocketAddress host) {
+        HostStats s = stats.get(host);
+        if (null == s) {
+            HostStats created = new HostStats();
+            s = stats.putIfAbsent(host, created);
+            if (null == s)
+                s = created;
+        }
+        return s;
+    }
+
+    private static double ewma(double average, double sample) {
+        return average + ALPHA * (sample - average);
+    }
+
+    private static class HostStats {
+
+        private final AtomicInteger inflight = new AtomicInteger(0);
+        /* negative until the first answer */
+        private volatile double latency = -1.0;
+        private volatile double errors = 0.0;
+        private volatile long ejectedUntil = 0L;
+        /* consecutive failures, only accessed under lock */
+        private int failures = 0;
+
+        boolean ejected(long now) {
+            long until = ejectedUntil;
+            return 0L != until && 0L < until - now;
+        }
+
+        double cost() {
+            double base = Math.max(latency, MIN_LATENCY_NANOS);
+            return base * (1 + Math.max(0, inflight.get())) * (1 + ERROR_PENALTY * errors);
+        }
+    }
+
+    private static class Candidate {
+
+        private final InetSocketAddress host;
+        private final double cost;
+        private final boolean ejected;
+        private final long ejectedUntil;
+
+        Candidate(InetSocketAddress host, HostStats stats, long now) {
+            this.host = host;
+            this.cost = stats.cost();
+            this.ejectedUntil = stats.ejectedUntil;
+            this.ejected = stats.ejected(now);
+        }
+    }
+
+    private static final Comparator<Candidate> BY_COST = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate c1, Candidate c2) {
+            return Double.compare(c1.cost, c2.cost);
+        }
+    };
+
+    private static final Comparator<Candidate> BY_EJECTION = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate c1, Candidate c2) {
+            return Long.compare(c1.ejectedUntil - c2.ejectedUntil, 0L);
+        }
+    };
+}
@@ -2,6 +2,7 @@ package io.openio.sds.common;
 
 import io.openio.sds.http.OioHttpSettings;
 import io.openio.sds.http.SocketPool;
+import io.openio.sds.http.SocketPoolGroup;
 import io.openio.sds.pool.PoolingSettings;
 
 import java.net.InetSocketAddress;
@@ -56,6 +57,40 @@ public class SocketProviders {
         };
     }
 
+    /**
+     * Socket provider that reuses socket instances, keeping one pool for each
+     * requested address. All the pools share the
+     * {@link PoolingSettings#maxTotal()} budget.
+     *
+     * @param poolSettings
+     *            pooling settings to use
+     * @param httpSettings
+     *            http settings to use
+     * @return new {@code SocketProvider} instance
+     */
+    public static SocketProvider pooledSocketProvider(PoolingSettings poolSettings,
+            final OioHttpSettings httpSettings) {
+
+        final SocketPoolGroup pools = new SocketPoolGroup(httpSettings, poolSettings);
+        return new AbstractSocketProvider() {
+
+            @Override
+            public boolean reusableSocket() {
+                return true;
+            }
+
+            @Override
+            public Socket getSocket(String host, int port) {
+                return getSocket(new InetSocketAddress(host, port));
+            }
+
+            @Override
+            public Socket getSocket(InetSocketAddress addr) {
+                return pools.lease(addr);
+            }
+        };
+    }
+
     public static SocketProvider directSocketProvider(final OioHttpSettings http) {
         return new AbstractSocketProvider() {
 
@@ -0,0 +1,26 @@
+package io.openio.sds.exceptions;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Exception raised without sending the request when the circuit breaker of
+ * its host is open, because the host failed too many times recently.
+ */
+public class CircuitOpenException extends OioSystemException {
+
+    private static final long serialVersionUID = 7170823606094446218L;
+
+    private final InetSocketAddress host;
+
+    public CircuitOpenException(InetSocketAddress host) {
+        super("Circuit breaker open for " + host);
+        this.host = host;
+    }
+
+    /**
+     * @return the host whose circuit breaker is open
+     */
+    public InetSocketAddress host() {
+        return host;
+    }
+}
@@ -1,78 +1,197 @@
 package io.openio.sds.http;
 
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Decoder of a chunked response body.
+ * <p>
+ * Chunk size lines are parsed in place from the buffer of the connection,
+ * chunk extensions are ignored, and the trailers are available from
+ * {@link #trailers()} once the body has been read. A read may return the
+ * data of several chunks, as long as their size lines are already buffered.
+ */
 public class ChunkedStream extends InputStream {
 
-	private InputStream chunked;
-	private int currentRemaining = 0;
-	private boolean first = true;
+	/*
+	 * 15 hexadecimal digits, so the size always fits in a long
+	 */
+	private static final int MAX_SIZE_DIGITS = 15;
+
+	private final ConnectionReader chunked;
+	private long currentRemaining = 0;
+	private boolean pendingCrlf = false;
+	private boolean eof = false;
+	private Map<String, String> trailers = null;
 
 	public ChunkedStream(InputStream chunked) {
-		this.chunked = chunked;
+		this.chunked = chunked instanceof ConnectionReader
+				? (ConnectionReader) chunked
+				: new ConnectionReader(chunked, ConnectionReader.DEFAULT_BUFFER_SIZE);
 	}
 
 	@Override
 	public int read() throws IOException {
-		if (-1 == currentRemaining)
+		if (0 == currentRemaining && !eof)
+			nextChunk(true);
+		if (eof)
 			return -1;
-		if (0 == currentRemaining)
-			readSize();
 		int res = chunked.read();
+		if (-1 == res)
+			throw new EOFException("Unexpected end of chunked stream");
 		currentRemaining--;
 		return res;
 	}
 
 	@Override
-	public int read(byte[] buf) throws IOException {
-		if (-1 == currentRemaining)
+	public int read(byte[] buf, int offset, int len) throws IOException {
+		if (offset < 0 || len < 0 || len > buf.length - offset)
+			throw new IndexOutOfBoundsException();
+		if (eof)
 			return -1;
-		if (0 == currentRemaining)
-			readSize();
-		int res = chunked.read(buf, 0, Math.min(buf.length, currentRemaining));
-		currentRemaining = currentRemaining - res;
-		return res;
+		if (0 == len)
+			return 0;
+		int total = 0;
+		while (total < len) {
+			// only block for the next size line if nothing has been read yet
+			if (0 == currentRemaining && (!nextChunk(0 == total) || eof))
+				break;
+			int res = chunked.read(buf, offset + total,
+					(int) Math.min(len - total, currentRemaining));
+			if (-1 == res)
+				throw new EOFException("Unexpected end of chunked stream");
+			total += res;
+			currentRemaining -= res;
+			if (0 < currentRemaining && 0 == chunked.buffered())
+				break;
+		}
+		return (0 == total && eof) ? -1 : total;
 	}
 
 	@Override
-	public int read(byte[] buf, int offset, int len) throws IOException {
-		if (0 == currentRemaining)
-			readSize();
-		if (-1 == currentRemaining)
-			return -1;
-		int res = chunked.read(buf, offset,
-				Math.min(len, Math.min(buf.length - offset, currentRemaining)));
-		currentRemaining = currentRemaining - res;
-		return res;
+	public int available() throws IOException {
+		return (int) Math.min(currentRemaining, chunked.buffered());
+	}
+
+	boolean exhausted() {
+		return eof;
+	}
+
+	/**
+	 * Returns the trailers sent after the last chunk, with lower case names.
+	 *
+	 * @return the trailers, empty until the whole body has been read
+	 */
+	public Map<String, String> trailers() {
+		if (null == trailers)
+			return Collections.emptyMap();
+		return trailers;
+	}
+
+	/**
+	 * Read and discard the rest of the body, giving up after {@code max}
+	 * bytes of chunk data.
+	 *
+	 * @param max
+	 *            the max number of bytes to discard
+	 * @return {@code true} if the whole body has been read
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	boolean drain(long max) throws IOException {
+		long drained = 0;
+		while (!eof) {
+			if (drained > max)
+				return false;
+			if (0 == currentRemaining) {
+				nextChunk(true);
+				continue;
+			}
+			long skipped = chunked.skip(Math.min(currentRemaining, max - drained + 1));
+			if (0 >= skipped) {
+				// skip() does not tell the end of the stream apart
+				if (-1 == chunked.read())
+					throw new EOFException("Unexpected end of chunked stream");
+				skipped = 1;
+			}
+			drained += skipped;
+			currentRemaining -= skipped;
+		}
+		return drained <= max;
 	}
 
+	/**
+	 * Does not close the connection, which is released (or closed) by
+	 * {@link OioHttpResponse#close(boolean)}.
+	 */
 	@Override
 	public void close() throws IOException {
-		chunked.close();
 	}
 
-	private void readSize() throws IOException {
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		byte b;
-		if(!first)
-			readCRLF();
-		first=false;
-		while ('\r' != (b = (byte) chunked.read())) { // 'til \r
-			out.write(b);
+	/**
+	 * Read the CRLF ending the previous chunk and the size line of the next
+	 * one, and the trailers after the last chunk.
+	 *
+	 * @param block
+	 *            whether to wait for the lines to be received, or to give up
+	 *            if they are not buffered yet
+	 * @return {@code false} if the lines are not buffered and
+	 *         {@code block} is {@code false}
+	 */
+	private boolean nextChunk(boolean block) throws IOException {
+		if (pendingCrlf) {
+			if (!block && !chunked.lineBuffered())
+				return false;
+			int end = chunked.lineEnd();
+			int start = chunked.position();
+			if (end != start && !(end == start + 1 && '\r' == chunked.buffer()[start]))
+				throw new IOException("Missing CRLF after chunk data");
+			chunked.position(end + 1);
+			pendingCrlf = false;
 		}
-		chunked.read(); // read \n
-		currentRemaining = Integer.parseInt(out.toString("utf-8"), 16);
-		if (0 == currentRemaining) { // EOF
-			readCRLF();
-			currentRemaining = -1;
+		if (!block && !chunked.lineBuffered())
+			return false;
+		int end = chunked.lineEnd();
+		currentRemaining = parseSize(chunked.buffer(), chunked.position(), end);
+		chunked.position(end + 1);
+		if (0 == currentRemaining) {
+			trailers = new HashMap<String, String>();
+			OioHttpResponse.readHeaders(chunked, trailers);
+			eof = true;
+		} else {
+			pendingCrlf = true;
 		}
+		return true;
 	}
 
-	private void readCRLF() throws IOException {
-		chunked.read();
-		chunked.read();
+	/**
+	 * Parse the hexadecimal size of a chunk, ignoring its extensions.
+	 */
+	private static long parseSize(byte[] b, int start, int end) throws IOException {
+		long size = 0;
+		int i = start;
+		for (; i < end; i++) {
+			int digit = Character.digit(b[i], 16);
+			if (-1 == digit)
+				break;
+			if (i - start == MAX_SIZE_DIGITS)
+				throw new IOException("Chunk size too large");
+			size = (size << 4) | digit;
+		}
+		if (i == start)
+			throw new IOException("Invalid chunk size");
+		for (; i < end; i++) {
+			byte c = b[i];
+			if (';' == c || '\r' == c)
+				break;
+			if (' ' != c && '\t' != c)
+				throw new IOException("Invalid chunk size");
+		}
+		return size;
 	}
 
 }
@@ -0,0 +1,25 @@
+package io.openio.sds.http;
+
+import java.net.InetSocketAddress;
+
+import io.openio.sds.http.CircuitBreakers.State;
+
+/**
+ * Listener of the state changes of the circuit breakers of an
+ * {@link OioHttp} instance.
+ */
+public interface CircuitBreakerListener {
+
+    /**
+     * Called when the circuit breaker of a host changes its state. Must not
+     * block, it is called by the thread making the request.
+     *
+     * @param host
+     *            the host
+     * @param from
+     *            the former state
+     * @param to
+     *            the new state
+     */
+    public void stateChanged(InetSocketAddress host, State from, State to);
+}
@@ -0,0 +1,193 @@
+package io.openio.sds.http;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.openio.sds.exceptions.CircuitOpenException;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+
+/**
+ * Circuit breakers of the hosts requested by an {@link OioHttp} instance,
+ * checked before getting a connection.
+ * <p>
+ * A circuit is closed while its host works. After
+ * {@link OioHttpSettings#circuitBreakerThreshold()} consecutive network
+ * failures (connection refused, timeout...), it opens: requests to the host
+ * fail fast with a {@link CircuitOpenException}, so the callers move on to
+ * another replica instead of waiting for the timeouts. After
+ * {@link OioHttpSettings#circuitBreakerOpenTime()} milliseconds, the circuit
+ * is half-open: a single trial request is let through, closing the circuit
+ * if it succeeds, opening it again otherwise.
+ */
+public class CircuitBreakers {
+
+    private static final SdsLogger logger = SdsLoggerFactory.getLogger(CircuitBreakers.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final ConcurrentHashMap<InetSocketAddress, Breaker> breakers =
+            new ConcurrentHashMap<InetSocketAddress, Breaker>();
+    private final CopyOnWriteArrayList<CircuitBreakerListener> listeners =
+            new CopyOnWriteArrayList<CircuitBreakerListener>();
+    private final OioHttpSettings settings;
+
+    CircuitBreakers(OioHttpSettings settings) {
+        this.settings = settings;
+    }
+
+    public CircuitBreakers addListener(CircuitBreakerListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    public CircuitBreakers removeListener(CircuitBreakerListener listener) {
+        listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * @param host
+     *            the host
+     * @return the state of the circuit breaker of the host
+     */
+    public State state(InetSocketAddress host) {
+        Breaker b = breakers.get(host);
+        return null == b ? State.CLOSED : b.state.get();
+    }
+
+    /**
+     * Check that a request may be sent to a host. Each successful call must
+     * be followed by a call to {@link #onSuccess(InetSocketAddress)},
+     * {@link #onFailure(InetSocketAddress)} or
+     * {@link #release(InetSocketAddress)}.
+     *
+     * @param host
+     *            the host
+     * @throws CircuitOpenException
+     *             if the circuit of the host is open
+     */
+    void acquire(InetSocketAddress host) throws CircuitOpenException {
+        if (!enabled())
+            return;
+        Breaker b = breakers.get(host);
+        if (null != b)
+            b.acquire(host);
+    }
+
+    /**
+     * The host answered the request.
+     */
+    void onSuccess(InetSocketAddress host) {
+        if (!enabled())
+            return;
+        Breaker b = breakers.get(host);
+        if (null != b)
+            b.onSuccess(host);
+    }
+
+    /**
+     * The request failed because of the network.
+     */
+    void onFailure(InetSocketAddress host) {
+        if (!enabled())
+            return;
+        breaker(host).onFailure(host);
+    }
+
+    /**
+     * The request ended without telling anything about the host, e.g. its
+     * deadline was reached before it was sent.
+     */
+    void release(InetSocketAddress host) {
+        Breaker b = breakers.get(host);
+        if (null != b)
+            b.trial.set(false);
+    }
+
+    private boolean enabled() {
+        Integer threshold = settings.circuitBreakerThreshold();
+        return null != threshold && 0 < threshold;
+    }
+
+    private Breaker breaker(InetSocketAddress host) {
+        Breaker b = breakers.get(host);
+        if (null == b) {
+            Breaker created = new Breaker();
+            b = breakers.putIfAbsent(host, created);
+            if (null == b)
+                b = created;
+        }
+        return b;
+    }
+
+    private void stateChanged(InetSocketAddress host, State from, State to) {
+        if (logger.isDebugEnabled())
+            logger.debug("Circuit breaker of " + host + ": " + from + " -> " + to);
+        for (CircuitBreakerListener listener : listeners) {
+            try {
+                listener.stateChanged(host, from, to);
+            } catch (RuntimeException e) {
+                logger.warn("Circuit breaker listener failed", e);
+            }
+        }
+    }
+
+    private class Breaker {
+
+        private final AtomicReference<State> state = new AtomicReference<State>(State.CLOSED);
+        private final AtomicInteger failures = new AtomicInteger(0);
+        /* set while the trial request of a half-open circuit is running */
+        private final AtomicBoolean trial = new AtomicBoolean(false);
+        private volatile long openedAt;
+
+        void acquire(InetSocketAddress host) {
+            State s = state.get();
+            if (State.CLOSED == s)
+                return;
+            if (State.OPEN == s) {
+                long openNanos = TimeUnit.MILLISECONDS.toNanos(settings.circuitBreakerOpenTime());
+                if (System.nanoTime() - openedAt < openNanos)
+                    throw new CircuitOpenException(host);
+                if (state.compareAndSet(State.OPEN, State.HALF_OPEN))
+                    stateChanged(host, State.OPEN, State.HALF_OPEN);
+            }
+            if (!trial.compareAndSet(false, true))
+                throw new CircuitOpenException(host);
+        }
+
+        void onSuccess(InetSocketAddress host) {
+            failures.set(0);
+            State s = state.get();
+            if (State.CLOSED != s && state.compareAndSet(s, State.CLOSED)) {
+                trial.set(false);
+                stateChanged(host, s, State.CLOSED);
+            }
+        }
+
+        void onFailure(InetSocketAddress host) {
+            State s = state.get();
+            if (State.HALF_OPEN == s) {
+                open(host, s);
+            } else if (State.CLOSED == s
+                    && failures.incrementAndGet() >= settings.circuitBreakerThreshold()) {
+                open(host, s);
+            }
+        }
+
+        private void open(InetSocketAddress host, State from) {
+            openedAt = System.nanoTime();
+            if (state.compareAndSet(from, State.OPEN)) {
+                trial.set(false);
+                stateChanged(host, from, State.OPEN);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package io.openio.sds.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+/**
+ * Buffered reader of a connection, living as long as the connection: bytes
+ * read ahead of a response are kept for the next one.
+ * <p>
+ * Not thread safe, a connection is used by one request at a time.
+ */
+class ConnectionReader extends InputStream {
+
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private final InputStream in;
+    private byte[] buf;
+    private int pos = 0;
+    private int limit = 0;
+
+    ConnectionReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[0 < bufferSize ? bufferSize : DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Returns the reader of a connection: the one living with a pooled
+     * connection, or a new one.
+     *
+     * @param sock
+     *            the connection
+     * @return the reader of the connection
+     * @throws IOException
+     *             if the input stream of the connection is not available
+     */
+    static ConnectionReader of(Socket sock) throws IOException {
+        if (sock instanceof PooledSocket)
+            return ((PooledSocket) sock).reader();
+        return new ConnectionReader(sock.getInputStream(), DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && 0 >= fill())
+            return -1;
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (0 == len)
+            return 0;
+        if (pos == limit) {
+            // large reads go straight to the destination
+            if (len >= buf.length)
+                return in.read(b, off, len);
+            if (0 >= fill())
+                return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (0 >= n)
+            return 0;
+        if (pos == limit)
+            return in.skip(n);
+        int skipped = (int) Math.min(n, limit - pos);
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffered() + in.available();
+    }
+
+    /**
+     * @return the number of bytes read from the connection and not consumed
+     *         yet
+     */
+    int buffered() {
+        return limit - pos;
+    }
+
+    /**
+     * @return {@code true} if the next line is already in the buffer, so
+     *         {@link #lineEnd()} will not block
+     */
+    boolean lineBuffered() {
+        for (int i = pos; i < limit; i++) {
+            if ('\n' == buf[i])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the end of the next line, reading more bytes from the connection
+     * if needed. The line starts at {@link #position()} in {@link #buffer()},
+     * and the caller moves the position after it once done.
+     *
+     * @return the index of the {@code '\n'} ending the line in
+     *         {@link #buffer()}
+     * @throws IOException
+     *             if the connection is closed before the end of the line, or
+     *             the line is too long
+     */
+    int lineEnd() throws IOException {
+        int from = pos;
+        while (true) {
+            for (int i = from; i < limit; i++) {
+                if ('\n' == buf[i])
+                    return i;
+            }
+            if (0 < pos) {
+                // move the beginning of the line to the start of the buffer
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            } else if (limit == buf.length) {
+                if (buf.length >= MAX_LINE_LENGTH)
+                    throw new IOException("HTTP line too long");
+                byte[] larger = new byte[Math.min(buf.length * 2, MAX_LINE_LENGTH)];
+                System.arraycopy(buf, 0, larger, 0, limit);
+                buf = larger;
+            }
+            from = limit;
+            int n = in.read(buf, limit, buf.length - limit);
+            if (-1 == n)
+                throw new EOFException("Unexpected end of stream");
+            limit += n;
+        }
+    }
+
+    /**
+     * @return the buffer, only valid until the next read
+     */
+    byte[] buffer() {
+        return buf;
+    }
+
+    /**
+     * @return the index of the next byte to read in {@link #buffer()}
+     */
+    int position() {
+        return pos;
+    }
+
+    void position(int pos) {
+        this.pos = pos;
+    }
+
+    /**
+     * Does not close the connection.
+     */
+    @Override
+    public void close() {
+    }
+
+    private int fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (0 < n)
+            limit = n;
+        return n;
+    }
+}
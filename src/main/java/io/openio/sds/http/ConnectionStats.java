@@ -0,0 +1,47 @@
+package io.openio.sds.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.openio.sds.common.MoreObjects;
+
+/**
+ * Counters about the reuse of the connections of an {@link OioHttp}
+ * client.
+ */
+public class ConnectionStats {
+
+    private final AtomicLong drained = new AtomicLong(0);
+    private final AtomicLong discarded = new AtomicLong(0);
+
+    /**
+     * @return the number of connections reused after reading and discarding
+     *         the unread end of a response body
+     */
+    public long drained() {
+        return drained.get();
+    }
+
+    /**
+     * @return the number of connections closed because the unread end of a
+     *         response body was too large to be drained
+     */
+    public long discarded() {
+        return discarded.get();
+    }
+
+    void onDrained() {
+        drained.incrementAndGet();
+    }
+
+    void onDiscarded() {
+        discarded.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("drained", drained.get())
+                .add("discarded", discarded.get())
+                .toString();
+    }
+}
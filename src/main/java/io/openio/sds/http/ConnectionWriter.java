@@ -0,0 +1,242 @@
+package io.openio.sds.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Buffered writer of a connection, living as long as the connection.
+ * Strings are encoded straight into the buffer, so writing a request head
+ * does not allocate.
+ * <p>
+ * Not thread safe, a connection is used by one request at a time.
+ */
+class ConnectionWriter {
+
+    static final int MIN_BUFFER_SIZE = 256;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+    private static final byte[] HEX_LOWER = "0123456789abcdef".getBytes();
+    private static final byte[] CRLF = { '\r', '\n' };
+    private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+    /* room for the size line of a chunk: up to 8 hex digits and CRLF */
+    private static final int CHUNK_PREFIX = 10;
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos = 0;
+
+    ConnectionWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buf = new byte[Math.max(bufferSize, MIN_BUFFER_SIZE)];
+    }
+
+    /**
+     * Forget anything buffered by a previous request which failed.
+     */
+    ConnectionWriter reset() {
+        pos = 0;
+        return this;
+    }
+
+    ConnectionWriter write(byte[] b) throws IOException {
+        return write(b, 0, b.length);
+    }
+
+    ConnectionWriter write(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - pos) {
+            flushBuffer();
+            if (len >= buf.length) {
+                out.write(b, off, len);
+                return this;
+            }
+        }
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+        return this;
+    }
+
+    ConnectionWriter write(int b) throws IOException {
+        if (pos == buf.length)
+            flushBuffer();
+        buf[pos++] = (byte) b;
+        return this;
+    }
+
+    ConnectionWriter crlf() throws IOException {
+        return write(CRLF, 0, 2);
+    }
+
+    /**
+     * Write a string encoded in UTF-8.
+     */
+    ConnectionWriter write(String s) throws IOException {
+        return write(s, 0, s.length());
+    }
+
+    /**
+     * Write part of a string encoded in UTF-8.
+     */
+    ConnectionWriter write(String s, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (0x80 > c) {
+                if (pos == buf.length)
+                    flushBuffer();
+                buf[pos++] = (byte) c;
+            } else {
+                i = writeUtf8(s, i, to, false);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write a number in decimal.
+     */
+    ConnectionWriter writeDecimal(long v) throws IOException {
+        if (0 > v) {
+            write('-');
+            v = -v;
+        }
+        if (20 > buf.length - pos)
+            flushBuffer();
+        int digits = 1;
+        for (long t = v / 10; 0 < t; t /= 10)
+            digits++;
+        for (int i = pos + digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        pos += digits;
+        return this;
+    }
+
+    /**
+     * Write a string as {@link java.net.URLEncoder} does with UTF-8.
+     */
+    ConnectionWriter writeUrlEncoded(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z')
+                    || ('0' <= c && c <= '9') || '.' == c || '-' == c
+                    || '*' == c || '_' == c) {
+                write(c);
+            } else if (' ' == c) {
+                write('+');
+            } else if (0x80 > c) {
+                percent(c);
+            } else {
+                i = writeUtf8(s, i, s.length(), true);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Copy {@code len} bytes of {@code in}, reading them straight into the
+     * buffer.
+     */
+    void transfer(InputStream in, long len) throws IOException {
+        long remaining = len;
+        while (0 < remaining) {
+            if (pos == buf.length)
+                flushBuffer();
+            int read = in.read(buf, pos, (int) Math.min(remaining, buf.length - pos));
+            if (-1 == read)
+                throw new EOFException("Unexpected end of source stream");
+            pos += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Copy {@code len} bytes of {@code in} with the chunked transfer coding,
+     * in chunks of at most {@code maxChunkSize} bytes, and write the last
+     * chunk.
+     */
+    void transferChunked(InputStream in, long len, int maxChunkSize) throws IOException {
+        long remaining = len;
+        int max = Math.min(maxChunkSize, buf.length - CHUNK_PREFIX - CRLF.length);
+        flushBuffer();
+        while (0 < remaining) {
+            int read = in.read(buf, CHUNK_PREFIX, (int) Math.min(remaining, max));
+            if (-1 == read)
+                throw new EOFException("Unexpected end of source stream");
+            if (0 == read)
+                continue;
+            remaining -= read;
+            // write the size line right before the data
+            int start = CHUNK_PREFIX - CRLF.length;
+            buf[start] = '\r';
+            buf[start + 1] = '\n';
+            for (int n = read; 0 < n; n >>>= 4)
+                buf[--start] = HEX_LOWER[n & 0xF];
+            buf[CHUNK_PREFIX + read] = '\r';
+            buf[CHUNK_PREFIX + read + 1] = '\n';
+            out.write(buf, start, CHUNK_PREFIX + read + CRLF.length - start);
+        }
+        write(LAST_CHUNK);
+    }
+
+    void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (0 < pos) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    private void percent(int b) throws IOException {
+        write('%');
+        write(HEX[(b >> 4) & 0xF]);
+        write(HEX[b & 0xF]);
+    }
+
+    /**
+     * Write the code point at index {@code i} in UTF-8, percent-encoded or
+     * not. An unpaired surrogate is written as {@code '?'}, like
+     * {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @return the index of the last char of the code point
+     */
+    private int writeUtf8(String s, int i, int to, boolean percentEncoded)
+            throws IOException {
+        char c = s.charAt(i);
+        int cp = c;
+        if (Character.isHighSurrogate(c) && i + 1 < to
+                && Character.isLowSurrogate(s.charAt(i + 1))) {
+            cp = Character.toCodePoint(c, s.charAt(i + 1));
+        } else if (Character.isSurrogate(c)) {
+            utf8Byte('?', percentEncoded);
+            return i;
+        }
+        if (0x800 > cp) {
+            utf8Byte(0xC0 | (cp >> 6), percentEncoded);
+            utf8Byte(0x80 | (cp & 0x3F), percentEncoded);
+        } else if (0x10000 > cp) {
+            utf8Byte(0xE0 | (cp >> 12), percentEncoded);
+            utf8Byte(0x80 | ((cp >> 6) & 0x3F), percentEncoded);
+            utf8Byte(0x80 | (cp & 0x3F), percentEncoded);
+        } else {
+            utf8Byte(0xF0 | (cp >> 18), percentEncoded);
+            utf8Byte(0x80 | ((cp >> 12) & 0x3F), percentEncoded);
+            utf8Byte(0x80 | ((cp >> 6) & 0x3F), percentEncoded);
+            utf8Byte(0x80 | (cp & 0x3F), percentEncoded);
+            return i + 1;
+        }
+        return i;
+    }
+
+    private void utf8Byte(int b, boolean percentEncoded) throws IOException {
+        if (percentEncoded)
+            percent(b);
+        else
+            write(b);
+    }
+}
@@ -0,0 +1,106 @@
+package io.openio.sds.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming decoder of a {@code gzip} or {@code deflate} encoded response
+ * body.
+ * <p>
+ * Nothing is read before the first read, so an empty body (e.g. the answer
+ * to a HEAD request) is not an error. A {@code deflate} body may be sent
+ * with or without its zlib wrapper, as some servers send raw deflate data.
+ */
+class ContentDecodingStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream raw;
+    private final boolean gzip;
+    private InputStream decoder;
+    private Inflater inflater;
+    private boolean empty = false;
+
+    private ContentDecodingStream(InputStream raw, boolean gzip) {
+        this.raw = raw;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Wrap a body in a decoder matching its content encoding.
+     *
+     * @param raw
+     *            the body as received
+     * @param encoding
+     *            the value of the {@code Content-Encoding} header, may be
+     *            {@code null}
+     * @return the decoded body, or {@code raw} if it is not encoded or the
+     *         encoding is not supported
+     */
+    static InputStream decode(InputStream raw, String encoding) {
+        if (null == encoding)
+            return raw;
+        encoding = encoding.trim();
+        if ("gzip".equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding))
+            return new ContentDecodingStream(raw, true);
+        if ("deflate".equalsIgnoreCase(encoding))
+            return new ContentDecodingStream(raw, false);
+        return raw;
+    }
+
+    @Override
+    public int read() throws IOException {
+        InputStream in = decoder();
+        return empty ? -1 : in.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        InputStream in = decoder();
+        return empty ? -1 : in.read(b, off, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (null == decoder || empty) ? 0 : decoder.available();
+    }
+
+    /**
+     * Release the inflater. Does not close the connection.
+     */
+    @Override
+    public void close() throws IOException {
+        if (null != decoder && !empty)
+            decoder.close();
+        if (null != inflater)
+            inflater.end();
+    }
+
+    private InputStream decoder() throws IOException {
+        if (null != decoder)
+            return decoder;
+        PushbackInputStream in = new PushbackInputStream(raw, 2);
+        int b0 = in.read();
+        if (-1 == b0) {
+            empty = true;
+            decoder = raw;
+            return decoder;
+        }
+        int b1 = in.read();
+        if (-1 != b1)
+            in.unread(b1);
+        in.unread(b0);
+        if (gzip) {
+            decoder = new GZIPInputStream(in, BUFFER_SIZE);
+        } else {
+            boolean zlib = -1 != b1 && 8 == (b0 & 0x0F) && 0 == ((b0 << 8) | b1) % 31;
+            inflater = new Inflater(!zlib);
+            decoder = new InflaterInputStream(in, inflater, BUFFER_SIZE);
+        }
+        return decoder;
+    }
+}
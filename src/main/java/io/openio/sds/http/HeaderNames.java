@@ -0,0 +1,145 @@
+package io.openio.sds.http;
+
+import java.nio.charset.Charset;
+
+import io.openio.sds.common.OioConstants;
+
+/**
+ * Interned, lower case names of the headers sent by oio-proxy and the rawx
+ * services, looked up from raw bytes without allocation.
+ */
+final class HeaderNames {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final String[] KNOWN = {
+            "connection", "content-encoding", "content-range", "date",
+            "keep-alive", "location", "server", "transfer-encoding",
+            "x-oio-content-meta-size", "x-oio-content-meta-chunk-size",
+            "x-oio-content-meta-mtime", "x-oio-content-meta-properties",
+            "x-oio-chunk-meta-content-mtime", "x-oio-chunk-meta-chunk-method",
+            "x-oio-chunk-meta-container-name",
+            OioConstants.CONTENT_LENGTH_HEADER,
+            OioConstants.CONTENT_TYPE_HEADER,
+            OioConstants.ACCOUNT_HEADER,
+            OioConstants.ACTION_MODE_HEADER,
+            OioConstants.M2_CTIME_HEADER,
+            OioConstants.M2_INIT_HEADER,
+            OioConstants.M2_USAGE_HEADER,
+            OioConstants.M2_VERSION_HEADER,
+            OioConstants.CONTAINER_SYS_NAME_HEADER,
+            OioConstants.NS_HEADER,
+            OioConstants.TYPE_HEADER,
+            OioConstants.USER_NAME_HEADER,
+            OioConstants.SCHEMA_VERSION_HEADER,
+            OioConstants.VERSION_MAIN_ADMIN_HEADER,
+            OioConstants.VERSION_MAIN_ALIASES_HEADER,
+            OioConstants.VERSION_MAIN_CHUNKS_HEADER,
+            OioConstants.VERSION_MAIN_CONTENTS_HEADER,
+            OioConstants.VERSION_MAIN_PROPERTIES_HEADER,
+            OioConstants.CONTENT_META_ID_HEADER,
+            OioConstants.CONTENT_META_CHUNK_METHOD_HEADER,
+            OioConstants.CONTENT_META_CTIME_HEADER,
+            OioConstants.CONTENT_META_DELETED_HEADER,
+            OioConstants.CONTENT_META_HASH_HEADER,
+            OioConstants.CONTENT_META_HASH_METHOD_HEADER,
+            OioConstants.CONTENT_META_LENGTH_HEADER,
+            OioConstants.CONTENT_META_MIME_TYPE_HEADER,
+            OioConstants.CONTENT_META_NAME_HEADER,
+            OioConstants.CONTENT_META_POLICY_HEADER,
+            OioConstants.CONTENT_META_VERSION_HEADER,
+            OioConstants.NS_CHUNK_SIZE_HEADER,
+            OioConstants.LIST_MARKER_HEADER,
+            OioConstants.LIST_TRUNCATED_HEADER,
+            OioConstants.OIO_REQUEST_ID_HEADER,
+            OioConstants.RANGE_HEADER,
+            OioConstants.OIO_TIMEOUT_HEADER,
+            OioConstants.CHUNK_META_CONTAINER_ID,
+            OioConstants.CHUNK_META_CONTENT_ID,
+            OioConstants.CHUNK_META_CONTENT_VERSION,
+            OioConstants.CHUNK_META_CONTENT_CHUNKSNB,
+            OioConstants.CHUNK_META_CONTENT_SIZE,
+            OioConstants.CHUNK_META_CONTENT_PATH,
+            OioConstants.CHUNK_META_CONTENT_POLICY,
+            OioConstants.CHUNK_META_CONTENT_CHUNK_METHOD,
+            OioConstants.CHUNK_META_CONTENT_MIME_TYPE,
+            OioConstants.CHUNK_META_CHUNK_ID,
+            OioConstants.CHUNK_META_CHUNK_POS,
+            OioConstants.CHUNK_META_CHUNK_HASH,
+            OioConstants.CHUNK_META_CHUNKS_NB,
+            OioConstants.CHUNK_META_CHUNK_SIZE,
+            OioConstants.CHUNK_META_FULL_PATH,
+            OioConstants.CHUNK_META_OIO_VERSION };
+
+    /* open addressing table, indexed by the hash of the lower case name */
+    private static final String[] TABLE = new String[256];
+
+    static {
+        for (String name : KNOWN) {
+            String lower = name.toLowerCase().intern();
+            int i = lower.hashCode() & (TABLE.length - 1);
+            while (null != TABLE[i] && !TABLE[i].equals(lower))
+                i = (i + 1) & (TABLE.length - 1);
+            TABLE[i] = lower;
+        }
+    }
+
+    private HeaderNames() {
+    }
+
+    /**
+     * Returns the lower case name of a header. Known names are interned and
+     * returned without allocation.
+     *
+     * @param b
+     *            the buffer holding the name
+     * @param off
+     *            the offset of the name in {@code b}
+     * @param len
+     *            the length of the name
+     * @return the lower case name
+     */
+    static String name(byte[] b, int off, int len) {
+        // same as String.hashCode() of the lower case name
+        int hash = 0;
+        for (int i = off; i < off + len; i++)
+            hash = 31 * hash + lower(b[i]);
+        int i = hash & (TABLE.length - 1);
+        String known;
+        while (null != (known = TABLE[i])) {
+            if (matches(known, b, off, len))
+                return known;
+            i = (i + 1) & (TABLE.length - 1);
+        }
+        char[] c = new char[len];
+        for (int j = 0; j < len; j++)
+            c[j] = (char) lower(b[off + j]);
+        return new String(c);
+    }
+
+    /**
+     * Decode a header value: ASCII (and ISO-8859-1) bytes are copied as is,
+     * other values are decoded as UTF-8.
+     */
+    static String value(byte[] b, int off, int len, Charset charset) {
+        for (int i = off; i < off + len; i++) {
+            if (0 > b[i])
+                return new String(b, off, len, charset);
+        }
+        return new String(b, off, len, ISO_8859_1);
+    }
+
+    private static boolean matches(String known, byte[] b, int off, int len) {
+        if (known.length() != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (known.charAt(i) != lower(b[off + i]))
+                return false;
+        }
+        return true;
+    }
+
+    private static int lower(byte b) {
+        return ('A' <= b && b <= 'Z') ? b + ('a' - 'A') : b & 0xFF;
+    }
+}
@@ -12,19 +12,15 @@ import static io.openio.sds.common.OioConstants.POST_METHOD;
 import static io.openio.sds.common.OioConstants.PUT_METHOD;
 import static io.openio.sds.common.Strings.nullOrEmpty;
 
-import java.io.BufferedOutputStream;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
-import java.net.URI;
-import java.net.URLEncoder;
-import java.util.HashMap;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -33,8 +29,11 @@ import com.google.gson.stream.JsonReader;
 
 import io.openio.sds.RequestContext;
 import io.openio.sds.common.Check;
+import io.openio.sds.common.HostSelector;
+import io.openio.sds.common.HostSelectors;
 import io.openio.sds.common.SocketProvider;
 import io.openio.sds.common.DeadlineManager;
+import io.openio.sds.exceptions.CircuitOpenException;
 import io.openio.sds.exceptions.OioException;
 import io.openio.sds.exceptions.OioSystemException;
 import io.openio.sds.logging.SdsLogger;
@@ -50,23 +49,82 @@ public class OioHttp {
 
     private static final SdsLogger logger = SdsLoggerFactory.getLogger(SdsLogger.class);
 
-    private static final String CRLF = "\r\n";
+    private static final Charset ASCII = Charset.forName("US-ASCII");
 
-    private static final byte[] CRLF_BYTES = { '\r', '\n' };
+    private static final byte[] HTTP_1_1 = " HTTP/1.1\r\n".getBytes(ASCII);
+    private static final byte[] HOST = "Host: ".getBytes(ASCII);
+    private static final byte[] HEADER_SEPARATOR = ": ".getBytes(ASCII);
+    private static final byte[] TIMEOUT = (OIO_TIMEOUT_HEADER + ": ").getBytes(ASCII);
+    private static final byte[] NO_CONTENT = (CONTENT_LENGTH_HEADER + ": 0\r\n")
+            .getBytes(ASCII);
+    private static final byte[] CHUNKED = "Transfer-Encoding: chunked\r\n"
+            .getBytes(ASCII);
+    private static final byte[] EXPECT_CONTINUE = "Expect: 100-continue\r\n".getBytes(ASCII);
 
     private OioHttpSettings settings;
 
     private SocketProvider socketProvider;
 
-    private OioHttp(OioHttpSettings settings, SocketProvider socketProvider) {
+    private HostSelector hostSelector;
+
+    private final ConnectionStats stats = new ConnectionStats();
+
+    private final CircuitBreakers circuitBreakers;
+
+    /* headers sent with every request, encoded once */
+    private volatile ConstantHeaders constantHeaders;
+
+    private OioHttp(OioHttpSettings settings, SocketProvider socketProvider,
+            HostSelector hostSelector) {
         this.settings = settings;
         this.socketProvider = socketProvider;
+        this.hostSelector = hostSelector;
+        this.circuitBreakers = new CircuitBreakers(settings);
     }
 
+    /**
+     * @param settings
+     *            the HTTP settings
+     * @param socketProvider
+     *            the provider of the connections
+     * @return a new {@code OioHttp} instance, trying the hosts of the
+     *         requests having several hosts in list order
+     */
     public static OioHttp http(OioHttpSettings settings, SocketProvider socketProvider) {
+        return http(settings, socketProvider, HostSelectors.orderedHostSelector());
+    }
+
+    /**
+     * @param settings
+     *            the HTTP settings
+     * @param socketProvider
+     *            the provider of the connections
+     * @param hostSelector
+     *            the selector of the host of the requests having several
+     *            hosts (see {@link RequestBuilder#hosts(List)}), may be
+     *            shared between several instances
+     * @return a new {@code OioHttp} instance
+     */
+    public static OioHttp http(OioHttpSettings settings, SocketProvider socketProvider,
+            HostSelector hostSelector) {
         Check.checkArgument(null != settings);
         Check.checkArgument(null != socketProvider);
-        return new OioHttp(settings, socketProvider);
+        Check.checkArgument(null != hostSelector);
+        return new OioHttp(settings, socketProvider, hostSelector);
+    }
+
+    /**
+     * @return the counters about the reuse of the connections
+     */
+    public ConnectionStats stats() {
+        return stats;
+    }
+
+    /**
+     * @return the circuit breakers of the requested hosts
+     */
+    public CircuitBreakers circuitBreakers() {
+        return circuitBreakers;
     }
 
     public RequestBuilder post(String uri) {
@@ -91,50 +149,193 @@ public class OioHttp {
 
 
     public static String timeoutMillisToStringMicros(int timeout) {
+        return String.valueOf(timeoutMillisToMicros(timeout));
+    }
+
+    private static long timeoutMillisToMicros(int timeout) {
         // oio-proxy wants microseconds, and we remove 1% for the parsing overhead.
-        return String.valueOf(timeout * 990);
+        return timeout * 990L;
+    }
+
+    private ConstantHeaders constantHeaders() {
+        ConstantHeaders h = constantHeaders;
+        boolean compression = Boolean.TRUE.equals(settings.compression());
+        if (null == h || h.userAgent != settings.userAgent() || h.compression != compression) {
+            h = new ConstantHeaders(settings.userAgent(), compression,
+                    socketProvider.reusableSocket());
+            constantHeaders = h;
+        }
+        return h;
+    }
+
+    private static class ConstantHeaders {
+
+        private final String userAgent;
+        private final boolean compression;
+        /* names and values */
+        private final String[] pairs;
+        private final byte[] bytes;
+
+        ConstantHeaders(String userAgent, boolean compression, boolean keepAlive) {
+            this.userAgent = userAgent;
+            this.compression = compression;
+            this.pairs = new String[] {
+                    "Connection", keepAlive ? "keep-alive" : "close",
+                    "Accept", "*/*",
+                    "Accept-Encoding", compression ? "gzip, deflate" : "identity",
+                    "User-Agent", userAgent };
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < pairs.length; i += 2)
+                sb.append(pairs[i]).append(": ").append(pairs[i + 1]).append("\r\n");
+            this.bytes = sb.toString().getBytes(OIO_CHARSET);
+        }
     }
 
     public class RequestBuilder {
 
         private String method;
-        private HashMap<String, String> headers = new HashMap<String, String>();
-        private HashMap<String, String> query = new HashMap<String, String>();
-        private String body;
+        /* names and values, in insertion order */
+        private String[] headers = new String[16];
+        private int headerCount = 0;
+        private String[] query = null;
+        private int queryCount = 0;
+        private byte[] body;
         private InputStream data;
         private Long len;
-        private URI uri;
+        private String url;
+        /* positions of the parts of the url */
+        private int hostStart;
+        private int hostEnd;
+        private int port;
+        private int pathStart;
+        private int pathEnd;
+        private int queryStart;
+        private int queryEnd;
+        private int timeout;
         private OioHttpResponseVerifier verifier = null;
+        /* whether the last host tried sent a response */
+        private boolean answered = false;
+        /* the connection the request is being sent on, see abort() */
+        private Socket sending = null;
+        private volatile boolean aborted = false;
+        private final Object abortLock = new Object();
         private boolean chunked;
         private List<InetSocketAddress> hosts = null;
         private RequestContext reqCtx = null;
+        private boolean idempotent;
+        private Boolean expectContinue = null;
 
         public RequestBuilder req(String method, String url) {
             this.method = method;
-            this.uri = URI.create(url);
+            this.url = url;
+            parseUrl();
+            this.idempotent = GET_METHOD.equals(method);
+            return this;
+        }
+
+        /*
+         * Locate the host, port, path and query of the url, without copying
+         * them: scheme://host[:port][/path][?query][#fragment]
+         */
+        private void parseUrl() {
+            int i = url.indexOf("://");
+            if (0 >= i)
+                throw new IllegalArgumentException("Invalid URL: " + url);
+            hostStart = i + 3;
+            int end = url.length();
+            int fragment = url.indexOf('#', hostStart);
+            if (0 <= fragment)
+                end = fragment;
+            i = hostStart;
+            if (i < end && '[' == url.charAt(i)) {
+                i = url.indexOf(']', i);
+                if (0 > i || i >= end)
+                    throw new IllegalArgumentException("Invalid URL: " + url);
+                i++;
+            }
+            while (i < end && ':' != url.charAt(i) && '/' != url.charAt(i)
+                    && '?' != url.charAt(i))
+                i++;
+            hostEnd = i;
+            if (hostEnd == hostStart)
+                throw new IllegalArgumentException("Invalid URL, no host: " + url);
+            port = 80;
+            if (i < end && ':' == url.charAt(i)) {
+                port = 0;
+                for (i++; i < end && '/' != url.charAt(i) && '?' != url.charAt(i); i++) {
+                    char c = url.charAt(i);
+                    if ('0' > c || '9' < c)
+                        throw new IllegalArgumentException("Invalid URL port: " + url);
+                    port = port * 10 + (c - '0');
+                }
+            }
+            pathStart = i;
+            while (i < end && '?' != url.charAt(i))
+                i++;
+            pathEnd = i;
+            queryStart = i < end ? i + 1 : end;
+            queryEnd = end;
+        }
+
+        /**
+         * Declare the request as idempotent, so it is sent again on a new
+         * connection if a reused pooled connection fails. GET requests are
+         * idempotent by default.
+         *
+         * @return this
+         */
+        public RequestBuilder idempotent() {
+            this.idempotent = true;
             return this;
         }
 
         public RequestBuilder header(String name, String value) {
             if (!nullOrEmpty(name) && !nullOrEmpty(value))
-                headers.put(name, value);
+                putHeader(name, value);
             return this;
         }
 
         public RequestBuilder headers(Map<String, String> headers) {
-            if (null != headers)
-                this.headers.putAll(headers);
+            if (null != headers) {
+                for (Entry<String, String> h : headers.entrySet())
+                    putHeader(h.getKey(), h.getValue());
+            }
             return this;
         }
 
         public RequestBuilder query(String name, String value) {
-            if (!nullOrEmpty(name) && !nullOrEmpty(value))
-                this.query.put(name, value);
+            if (nullOrEmpty(name) || nullOrEmpty(value))
+                return this;
+            if (null == query)
+                query = new String[8];
+            int i = indexOf(query, queryCount, name);
+            if (0 > i) {
+                if (queryCount * 2 == query.length)
+                    query = Arrays.copyOf(query, query.length * 2);
+                i = queryCount++;
+                query[2 * i] = name;
+            }
+            query[2 * i + 1] = value;
+            return this;
+        }
+
+        /**
+         * Specifies if the server is asked to accept the request before its
+         * body is sent ({@code Expect: 100-continue}), so a refused upload
+         * does not send the whole body. By default, it is only done for
+         * streamed bodies of at least
+         * {@link OioHttpSettings#expectContinueThreshold()} bytes.
+         *
+         * @param expectContinue
+         *            the value to set
+         * @return this
+         */
+        public RequestBuilder expectContinue(boolean expectContinue) {
+            this.expectContinue = expectContinue;
             return this;
         }
 
         public RequestBuilder chunked() {
-            this.headers.put("Transfer-Encoding", "chunked");
             this.chunked = true;
             return this;
         }
@@ -142,24 +343,81 @@ public class OioHttp {
         public RequestBuilder body(String body) {
             if (nullOrEmpty(body))
                 return this;
-            headers.put(CONTENT_LENGTH_HEADER, String.valueOf(body.length()));
-            headers.put(CONTENT_TYPE_HEADER, "application/json");
-            this.body = body;
+            this.body = body.getBytes(OIO_CHARSET);
+            putHeader(CONTENT_LENGTH_HEADER, String.valueOf(this.body.length));
+            putHeader(CONTENT_TYPE_HEADER, "application/json");
             return this;
         }
 
         public RequestBuilder body(InputStream data, Long size) {
             if (null == data)
                 return this;
-            headers.put(CONTENT_LENGTH_HEADER, String.valueOf(size));
-            if (!headers.containsKey(CONTENT_TYPE_HEADER)) {
-                headers.put(CONTENT_TYPE_HEADER, "application/octet-stream");
-            }
+            putHeader(CONTENT_LENGTH_HEADER, String.valueOf(size));
+            if (0 > indexOf(headers, headerCount, CONTENT_TYPE_HEADER))
+                putHeader(CONTENT_TYPE_HEADER, "application/octet-stream");
             this.data = data;
             this.len = size;
             return this;
         }
 
+        private void putHeader(String name, String value) {
+            int i = indexOf(headers, headerCount, name);
+            if (0 > i) {
+                if (headerCount * 2 == headers.length)
+                    headers = Arrays.copyOf(headers, headers.length * 2);
+                i = headerCount++;
+                headers[2 * i] = name;
+            }
+            headers[2 * i + 1] = value;
+        }
+
+        private int indexOf(String[] pairs, int count, String name) {
+            for (int i = 0; i < count; i++) {
+                if (name.equals(pairs[2 * i]))
+                    return i;
+            }
+            return -1;
+        }
+
+        /**
+         * Abort the request from another thread, e.g. an upload to a rawx
+         * which is too slow: the connection the request is being sent on is
+         * closed, which makes a write blocked on it fail, and is not reused.
+         * The request fails if it has not been sent yet.
+         */
+        public void abort() {
+            synchronized (abortLock) {
+                aborted = true;
+                if (null != sending)
+                    abort(sending);
+            }
+        }
+
+        private void abort(Socket sock) {
+            if (sock instanceof PooledSocket) {
+                ((PooledSocket) sock).abort();
+                return;
+            }
+            try {
+                sock.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close socket, possible leak", e);
+            }
+        }
+
+        /*
+         * Track the connection the request is being sent on, until the head
+         * of the response has been read, so abort() never closes a
+         * connection already released to its pool.
+         */
+        private void sending(Socket sock) {
+            synchronized (abortLock) {
+                sending = sock;
+                if (aborted && null != sock)
+                    abort(sock);
+            }
+        }
+
         public RequestBuilder verifier(OioHttpResponseVerifier verifier) {
             this.verifier = verifier;
             return this;
@@ -175,7 +433,7 @@ public class OioHttp {
         public RequestBuilder withRequestContext(RequestContext reqCtx) {
             this.reqCtx = reqCtx;
             if (reqCtx != null)
-                headers.put(OIO_REQUEST_ID_HEADER, reqCtx.requestId());
+                putHeader(OIO_REQUEST_ID_HEADER, reqCtx.requestId());
             return this;
         }
 
@@ -191,23 +449,39 @@ public class OioHttp {
 
         public OioHttpResponse execute() throws OioException {
             if (this.hosts == null || this.hosts.isEmpty()) {
-                return execute(new InetSocketAddress(uri.getHost(), uri.getPort()));
+                return execute(new InetSocketAddress(url.substring(hostStart, hostEnd), port));
             } else {
                 OioException lastExc = null;
-                // TODO: implement better fallback mechanism, with randomization
-                for (InetSocketAddress addr : this.hosts) {
+                for (InetSocketAddress addr : hostSelector.select(this.hosts)) {
+                    long start = System.nanoTime();
+                    hostSelector.onStart(addr);
+                    boolean reported = false;
                     try {
                         if (lastExc != null)
                             logger.info("Retrying on " + addr.toString());
-                        return execute(addr);
+                        OioHttpResponse resp = execute(addr);
+                        hostSelector.onSuccess(addr, System.nanoTime() - start);
+                        reported = true;
+                        return resp;
                     } catch (OioException oioe) {
                         // Retry only if the cause is network
-                        if (oioe.getCause() instanceof IOException) {
+                        if (oioe.getCause() instanceof IOException
+                                || oioe instanceof CircuitOpenException) {
+                            hostSelector.onFailure(addr);
+                            reported = true;
                             logger.warn("Failed to perform request", oioe);
                             lastExc = oioe;
                         } else {
+                            // the host did answer
+                            hostSelector.onSuccess(addr, System.nanoTime() - start);
+                            reported = true;
                             throw oioe;
                         }
+                    } finally {
+                        // e.g. a runtime exception, the request is not in
+                        // flight anymore either
+                        if (!reported)
+                            hostSelector.onFailure(addr);
                     }
                 }
                 throw new OioSystemException("HTTP request execution error", lastExc);
@@ -222,7 +496,6 @@ public class OioHttp {
          * so the server will limit itself (99% of the timeout set on the socket).
          */
         private void applyDeadline(Socket sock) throws SocketException {
-            int timeout;
             if (this.reqCtx != null) {
                 if (this.reqCtx.hasDeadline())
                     DeadlineManager.instance().checkDeadline(this.reqCtx.deadline());
@@ -236,19 +509,79 @@ public class OioHttp {
             } else {
                 timeout = sock.getSoTimeout();
             }
-            headers.put(OIO_TIMEOUT_HEADER, timeoutMillisToStringMicros(timeout));
+
         }
 
         private OioHttpResponse execute(InetSocketAddress addr) throws OioException {
-            Socket sock = null;
+            circuitBreakers.acquire(addr);
+            answered = false;
+            boolean reported = false;
+            try {
+                OioHttpResponse resp = send(addr);
+                circuitBreakers.onSuccess(addr);
+                reported = true;
+                return resp;
+            } catch (OioException e) {
+                // an aborted request says nothing about the host
+                if (e.getCause() instanceof IOException && !aborted) {
+                    circuitBreakers.onFailure(addr);
+                    reported = true;
+                }
+                throw e;
+            } finally {
+                if (!reported) {
+                    // the host did answer, even if the verifier rejected it
+                    if (answered)
+                        circuitBreakers.onSuccess(addr);
+                    else
+                        circuitBreakers.release(addr);
+                }
+            }
+        }
+
+        private OioHttpResponse send(InetSocketAddress addr) throws OioException {
+            int retries = 0;
+            while (true) {
+                Socket sock = socketProvider.getSocket(addr);
+                sending(sock);
+                try {
+                    return execute(sock);
+                } catch (IOException e) {
+                    if (!aborted && retries++ < settings.staleRetries()
+                            && staleRetryable(sock, e)) {
+                        if (logger.isDebugEnabled())
+                            logger.debug("Pooled connection to " + addr
+                                    + " failed, retrying: " + e);
+                        continue;
+                    }
+                    throw new OioSystemException("HTTP request execution error", e);
+                } finally {
+                    sending(null);
+                }
+            }
+        }
+
+        /**
+         * The server may close an idle keep-alive connection at any time: a
+         * request failing on a reused pooled socket can be sent again, if it
+         * is idempotent and its body can be sent again. A timeout means the
+         * server is slow, not gone: do not retry.
+         */
+        private boolean staleRetryable(Socket sock, IOException e) {
+            return idempotent && null == data && !(e instanceof SocketTimeoutException)
+                    && sock instanceof PooledSocket
+                    && ((PooledSocket) sock).reused();
+        }
+
+        private OioHttpResponse execute(Socket sock) throws IOException {
             try {
-                sock = socketProvider.getSocket(addr);
                 applyDeadline(sock);
-                if (chunked)
-                    sendRequestChunked(sock);
-                else
-                    sendRequest(sock);
-                OioHttpResponse resp = readResponse(sock);
+                ConnectionReader reader = ConnectionReader.of(sock);
+                boolean bodySent = sendRequest(sock, reader);
+                OioHttpResponse resp = readResponse(sock, reader);
+                answered = true;
+                if (!bodySent)
+                    resp.discardConnection();
                 try {
                     if (null != verifier)
                         verifier.verify(resp);
@@ -258,18 +591,17 @@ public class OioHttp {
                     throw e;
                 }
             } catch (IOException e) {
-                if (null != sock)
+                try {
                     try {
-                        try {
-                            sock.shutdownInput();
-                        } catch (SocketException se) {
-                            logger.debug("Socket input already shutdown");
-                        }
-                        sock.close();
-                    } catch (IOException ioe) {
-                        logger.warn("Failed to close socket, possible leak", ioe);
+                        sock.shutdownInput();
+                    } catch (SocketException se) {
+                        logger.debug("Socket input already shutdown");
                     }
-                throw new OioSystemException("HTTP request execution error", e);
+                    sock.close();
+                } catch (IOException ioe) {
+                    logger.warn("Failed to close socket, possible leak", ioe);
+                }
+                throw e;
             }
         }
 
@@ -286,99 +618,149 @@ public class OioHttp {
             }
         }
 
-        private OioHttpResponse readResponse(Socket sock) throws IOException {
-            return OioHttpResponse.build(sock, this.reqCtx);
+        private OioHttpResponse readResponse(Socket sock, ConnectionReader reader)
+                throws IOException {
+            if (!socketProvider.reusableSocket())
+                return OioHttpResponse.build(sock, reader, this.reqCtx, 0L, null);
+            return OioHttpResponse.build(sock, reader, this.reqCtx, settings.maxDrainSize(),
+                    stats);
         }
 
-        private void sendRequest(Socket sock) throws IOException {
-            headers.put("Host", uri.getHost() + ":" + uri.getPort());
-            headers.put("Connection", socketProvider.reusableSocket() ? "keep-alive" : "close");
-            headers.put("Accept", "*/*");
-            headers.put("Accept-Encoding", "gzip, deflate");
-            headers.put("User-Agent", settings.userAgent());
+        /**
+         * @return {@code false} if the server answered before the body was
+         *         sent, in which case the body has not been sent
+         */
+        private boolean sendRequest(Socket sock, ConnectionReader reader) throws IOException {
+            ConnectionWriter out = writer(sock);
+            writeHead(out);
+            if (expectsContinue()) {
+                out.flush();
+                if (!awaitContinue(sock, reader))
+                    return false;
+            }
+            if (chunked)
+                out.transferChunked(data, len, settings.sendBufferSize());
+            else if (null != data)
+                out.transfer(data, len);
+            else if (null != body)
+                out.write(body);
+            out.flush();
+            return true;
+        }
 
-            if (!headers.containsKey("Content-Length"))
-                headers.put(CONTENT_LENGTH_HEADER, "0");
+        private boolean expectsContinue() {
+            if (null == data)
+                return false;
+            if (null != expectContinue)
+                return expectContinue;
+            Long threshold = settings.expectContinueThreshold();
+            return null != threshold && 0 <= threshold && null != len && len >= threshold;
+        }
 
-            BufferedOutputStream bos = new BufferedOutputStream(sock.getOutputStream(),
-                    settings.sendBufferSize());
-            bos.write(requestHead());
-            if (null != data) {
-                stream(bos);
-            } else if (null != body) {
-                bos.write(body.getBytes(OIO_CHARSET));
-            }
-            bos.flush();
-        }
-
-        private void sendRequestChunked(Socket sock) throws IOException {
-            headers.put("Host", uri.getHost() + ":" + uri.getPort());
-            headers.put("Connection", socketProvider.reusableSocket() ? "keep-alive" : "close");
-            headers.put("Accept", "*/*");
-            headers.put("Accept-Encoding", "gzip, deflate");
-            headers.put("User-Agent", settings.userAgent());
-
-            // ensure no content-length
-            headers.remove("Content-Length");
-            BufferedOutputStream bos = new BufferedOutputStream(sock.getOutputStream(),
-                    settings.sendBufferSize());
-            byte[] requestHead = requestHead();
-            bos.write(requestHead);
-            streamChunked(bos);
-            bos.flush();
-        }
-
-        private void streamChunked(OutputStream os) throws IOException {
-            byte[] b = new byte[settings.sendBufferSize()];
-            int remaining = len.intValue();
-            while (remaining > 0) {
-                int read = data.read(b, 0, Math.min(remaining, b.length));
-                if (-1 == read)
-                    throw new EOFException("Unexpected end of source stream");
-                remaining -= read;
-                if (read > 0) {
-                    os.write((Integer.toHexString(read) + CRLF).getBytes(OIO_CHARSET));
-                    os.write(b, 0, read);
-                    os.write(CRLF_BYTES);
-                }
+        /**
+         * Wait a little for the server to accept or refuse the request before
+         * sending its body. The response is left in the reader.
+         *
+         * @return {@code true} if the body must be sent: the server sent an
+         *         interim response, or nothing before the end of the wait
+         */
+        private boolean awaitContinue(Socket sock, ConnectionReader reader) throws IOException {
+            int timeout = sock.getSoTimeout();
+            int wait = settings.expectContinueTimeout();
+            if (0 < timeout && timeout < wait)
+                wait = timeout;
+            sock.setSoTimeout(wait);
+            try {
+                int end = reader.lineEnd();
+                return OioHttpResponse.interim(reader.buffer(), reader.position(), end);
+            } catch (SocketTimeoutException e) {
+                if (logger.isDebugEnabled())
+                    logger.debug("No answer to Expect: 100-continue after " + wait
+                            + "ms, sending the body");
+                return true;
+            } finally {
+                sock.setSoTimeout(timeout);
             }
-            os.write(("0" + CRLF + CRLF).getBytes(OIO_CHARSET));
         }
 
-        private void stream(OutputStream sos) throws IOException {
-            byte[] b = new byte[settings.sendBufferSize()];
-            int remaining = len.intValue();
+        private int indexOfIgnoreCase(String name) {
+            for (int i = 0; i < headerCount; i++) {
+                if (name.equalsIgnoreCase(headers[2 * i]))
+                    return i;
+            }
+            return -1;
+        }
 
-            while (remaining > 0) {
-                int read = data.read(b, 0, Math.min(remaining, b.length));
-                if (-1 == read)
-                    throw new EOFException("Unexpected end of source stream");
-                remaining -= read;
-                sos.write(b, 0, read);
+        /*
+         * Whether this request sets one of the headers sent with every
+         * request, which must then not be sent twice
+         */
+        private boolean overridesConstant(ConstantHeaders constant) {
+            for (int i = 0; i < constant.pairs.length; i += 2) {
+                if (0 <= indexOfIgnoreCase(constant.pairs[i]))
+                    return true;
             }
+            return false;
+        }
+
+        private ConnectionWriter writer(Socket sock) throws IOException {
+            if (sock instanceof PooledSocket)
+                return ((PooledSocket) sock).writer().reset();
+            return new ConnectionWriter(sock.getOutputStream(), settings.sendBufferSize());
         }
 
-        private byte[] requestHead() throws UnsupportedEncodingException {
-            StringBuilder qbuilder = new StringBuilder(null == uri.getRawQuery() ? ""
-                    : uri.getRawQuery());
-            boolean removeTrailindAnd = 0 == qbuilder.length();
-            for (Entry<String, String> h : query.entrySet()) {
-                qbuilder.append("&").append(URLEncoder.encode(h.getKey(), "utf-8")).append("=")
-                        .append(URLEncoder.encode(h.getValue(), "utf-8"));
+        /**
+         * Write the request line and the headers: the headers sent with every
+         * request come first, unless this request sets them itself, then the
+         * headers of this request in insertion order.
+         */
+        void writeHead(ConnectionWriter out) throws IOException {
+            out.write(method).write(' ');
+            if (pathStart < pathEnd)
+                out.write(url, pathStart, pathEnd);
+            else
+                out.write('/');
+            boolean hasQuery = queryStart < queryEnd;
+            if (hasQuery)
+                out.write('?').write(url, queryStart, queryEnd);
+            for (int i = 0; i < queryCount; i++) {
+                out.write(hasQuery ? '&' : '?');
+                hasQuery = true;
+                out.writeUrlEncoded(query[2 * i]).write('=')
+                        .writeUrlEncoded(query[2 * i + 1]);
+            }
+            out.write(HTTP_1_1);
+            out.write(HOST).write(url, hostStart, hostEnd).write(':').writeDecimal(port)
+                    .crlf();
+            ConstantHeaders constant = constantHeaders();
+            if (overridesConstant(constant)) {
+                for (int i = 0; i < constant.pairs.length; i += 2) {
+                    if (0 > indexOfIgnoreCase(constant.pairs[i]))
+                        out.write(constant.pairs[i]).write(HEADER_SEPARATOR)
+                                .write(constant.pairs[i + 1]).crlf();
+                }
+            } else {
+                out.write(constant.bytes);
             }
-            String uriPath = uri.getRawPath();
-            StringBuilder req = new StringBuilder(method)
-                    .append(" ")
-                    .append(uriPath != null && !uriPath.isEmpty() ? uriPath : "/")
-                    .append(qbuilder.length() > 0 ? "?" : "")
-                    .append(qbuilder.length() > 0 ? (removeTrailindAnd ? qbuilder.substring(1)
-                            : qbuilder.toString()) : "").append(" ").append("HTTP/1.1")
-                    .append(CRLF);
-            for (Entry<String, String> h : headers.entrySet()) {
-                req.append(h.getKey()).append(": ").append(h.getValue()).append(CRLF);
+            boolean hasLength = false;
+            for (int i = 0; i < headerCount; i++) {
+                String name = headers[2 * i];
+                if (CONTENT_LENGTH_HEADER.equals(name)) {
+                    // no content length with the chunked transfer coding
+                    if (chunked)
+                        continue;
+                    hasLength = true;
+                }
+                out.write(name).write(HEADER_SEPARATOR).write(headers[2 * i + 1]).crlf();
             }
-            byte[] res = req.append(CRLF).toString().getBytes(OIO_CHARSET);
-            return res;
+            out.write(TIMEOUT).writeDecimal(timeoutMillisToMicros(timeout)).crlf();
+            if (expectsContinue())
+                out.write(EXPECT_CONTINUE);
+            if (chunked)
+                out.write(CHUNKED);
+            else if (!hasLength)
+                out.write(NO_CONTENT);
+            out.crlf();
         }
     }
 }
@@ -4,14 +4,13 @@ import io.openio.sds.RequestContext;
 import io.openio.sds.logging.SdsLogger;
 import io.openio.sds.logging.SdsLoggerFactory;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.net.Socket;
 import java.util.HashMap;
+import java.util.Map;
 
 import static io.openio.sds.common.OioConstants.OIO_CHARSET;
 import static io.openio.sds.common.Strings.nullOrEmpty;
@@ -24,13 +23,7 @@ public class OioHttpResponse {
 
     private static final SdsLogger logger = SdsLoggerFactory.getLogger(OioHttpResponse.class);
 
-    private static final int R = 1;
-    private static final int RN = 2;
-    private static final int RNR = 3;
-    private static final int RNRN = 3;
-
-    private static byte BS_R = '\r';
-    private static byte BS_N = '\n';
+    private static final String HTTP_1_1 = "HTTP/1.1";
 
     private ResponseHead head;
 
@@ -38,14 +31,84 @@ public class OioHttpResponse {
     private Socket sock;
 
     private InputStream sis;
+    private InputStream decoded;
+
+    private long maxDrainSize;
+    private ConnectionStats stats;
+    private boolean reusable = true;
 
-    private OioHttpResponse(Socket sock, RequestContext reqCtx) {
+    private OioHttpResponse(Socket sock, RequestContext reqCtx, long maxDrainSize,
+            ConnectionStats stats) {
         this.reqCtx = reqCtx;
         this.sock = sock;
+        this.maxDrainSize = maxDrainSize;
+        this.stats = stats;
     }
 
     public static OioHttpResponse build(Socket sock, RequestContext reqCtx) throws IOException {
-        return new OioHttpResponse(sock, reqCtx).responseHead();
+        return build(sock, reqCtx, 0L, null);
+    }
+
+    /**
+     * Read the head of a response.
+     *
+     * @param sock
+     *            the socket to read from
+     * @param reqCtx
+     *            the context of the request
+     * @param maxDrainSize
+     *            the max number of unread body bytes to discard when the
+     *            response is closed, to reuse the connection
+     * @param stats
+     *            the counters to update when the response is closed, may be
+     *            {@code null}
+     * @return the response
+     * @throws IOException
+     *             if the head could not be read
+     */
+    static OioHttpResponse build(Socket sock, RequestContext reqCtx, long maxDrainSize,
+            ConnectionStats stats) throws IOException {
+        return build(sock, ConnectionReader.of(sock), reqCtx, maxDrainSize, stats);
+    }
+
+    /**
+     * Read the head of a response with the reader already used for the
+     * request, e.g. to wait for a {@code 100 Continue}.
+     */
+    static OioHttpResponse build(Socket sock, ConnectionReader reader, RequestContext reqCtx,
+            long maxDrainSize, ConnectionStats stats) throws IOException {
+        return new OioHttpResponse(sock, reqCtx, maxDrainSize, stats).responseHead(reader);
+    }
+
+    /**
+     * Tell if a status line starts an interim (1xx) response, which is
+     * followed by another response.
+     *
+     * @param b
+     *            the buffer holding the line
+     * @param start
+     *            the beginning of the line
+     * @param end
+     *            the end of the line
+     * @return {@code true} for an interim response
+     * @throws IOException
+     *             if the status line is invalid
+     */
+    static boolean interim(byte[] b, int start, int end) throws IOException {
+        return interim(StatusLine.parse(b, start, trimEnd(b, start, end)).code());
+    }
+
+    private static boolean interim(int code) {
+        // 101 Switching Protocols is the last response of the connection
+        return 100 <= code && 200 > code && 101 != code;
+    }
+
+    /**
+     * Prevent the connection from being reused, e.g. because the request
+     * body has not been sent.
+     */
+    void discardConnection() {
+        this.reusable = false;
     }
 
     public HashMap<String, String> headers() {
@@ -56,6 +119,20 @@ public class OioHttpResponse {
         return head.header(key);
     }
 
+    /**
+     * Returns the value of a trailer of a chunked response, only available
+     * once the whole body has been read.
+     *
+     * @param key
+     *            the name of the trailer
+     * @return the value of the trailer, or {@code null} if it is not set
+     */
+    public String trailer(String key) {
+        if (sis instanceof ChunkedStream)
+            return ((ChunkedStream) sis).trailers().get(key.toLowerCase());
+        return null;
+    }
+
     public int code() {
         return head.code();
     }
@@ -64,8 +141,16 @@ public class OioHttpResponse {
         return head.msg();
     }
 
+    /**
+     * Returns the body of the response, decoded according to its
+     * {@code Content-Encoding}.
+     *
+     * @return the body of the response
+     */
     public InputStream body() {
-        return sis;
+        if (null == decoded)
+            decoded = ContentDecodingStream.decode(sis, header("Content-Encoding"));
+        return decoded;
     }
 
     public Long length() {
@@ -73,9 +158,26 @@ public class OioHttpResponse {
         return null == str ? 0L : Long.parseLong(str);
     }
 
+    /**
+     * Release the connection. When {@code reuse} is set, the unread end of
+     * the body is read and discarded if it is small enough, so the
+     * connection can go back to its pool; otherwise the connection is
+     * closed.
+     *
+     * @param reuse
+     *            whether the connection may be reused
+     * @return this
+     */
     public OioHttpResponse close(boolean reuse) {
+        if (null != decoded && decoded != sis) {
+            try {
+                decoded.close();
+            } catch (IOException e) {
+                logger.debug("Failed to release body decoder", e);
+            }
+        }
         try {
-            if (!reuse)
+            if (!reuse || !reusable || !keepAlive() || !drain())
                 sock.shutdownInput();
             sock.close();
         } catch (Exception e) {
@@ -92,46 +194,127 @@ public class OioHttpResponse {
         return this.reqCtx;
     }
 
-    private OioHttpResponse responseHead() throws IOException {
-        sis = new BufferedInputStream(sock.getInputStream());
-        this.head = ResponseHead.parse(readHeaders());
+    /**
+     * Read the end of the body, if it is not larger than the max drain size.
+     *
+     * @return {@code true} if the whole body has been read, so the connection
+     *         is ready for another request
+     */
+    private boolean drain() {
+        if (bodyConsumed())
+            return true;
+        boolean drained = false;
+        try {
+            if (sis instanceof Stream)
+                drained = ((Stream) sis).drain(maxDrainSize);
+            else if (sis instanceof ChunkedStream)
+                drained = ((ChunkedStream) sis).drain(maxDrainSize);
+        } catch (IOException e) {
+            logger.debug("Failed to drain response body", e);
+        }
+        if (null != stats) {
+            if (drained)
+                stats.onDrained();
+            else
+                stats.onDiscarded();
+        }
+        return drained;
+    }
+
+    private boolean bodyConsumed() {
+        if (sis instanceof Stream)
+            return ((Stream) sis).exhausted();
+        if (sis instanceof ChunkedStream)
+            return ((ChunkedStream) sis).exhausted();
+        return false;
+    }
+
+    /**
+     * @return {@code false} if the server announced it will close the
+     *         connection after this response
+     */
+    private boolean keepAlive() {
+        String connection = header("Connection");
+        return null == connection || !"close".equalsIgnoreCase(connection.trim());
+    }
+
+    private OioHttpResponse responseHead(ConnectionReader reader) throws IOException {
+        // skip the interim responses, like a late 100 Continue
+        do {
+            this.head = ResponseHead.parse(reader);
+        } while (interim(head.code()));
         if (head.chunked()) {
-            sis = new ChunkedStream(sis);
+            sis = new ChunkedStream(reader);
         } else {
-            sis = new Stream(sis, length());
+            sis = new Stream(reader, length());
         }
         return this;
     }
 
-    private String readHeaders() throws IOException {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        int state = 0;
-        while (state < RNRN)
-            state = next(bos, state);
-        read(); // read trailing \r
-        return new String(bos.toByteArray(), OIO_CHARSET);
+    /**
+     * Parse header lines from the buffer of a connection until the empty
+     * line ending them, e.g. the headers of a response head or the trailers
+     * of a chunked body.
+     *
+     * @param reader
+     *            the reader of the connection
+     * @param headers
+     *            the map to fill, with lower case header names
+     * @throws IOException
+     *             if the connection is closed before the empty line
+     */
+    static void readHeaders(ConnectionReader reader, Map<String, String> headers)
+            throws IOException {
+        while (true) {
+            int end = reader.lineEnd();
+            int start = reader.position();
+            byte[] b = reader.buffer();
+            int stop = trimEnd(b, start, end);
+            reader.position(end + 1);
+            if (stop == start)
+                return;
+            parseHeader(headers, b, start, stop);
+        }
     }
 
-    private int next(ByteArrayOutputStream bos, int state) throws IOException {
-        int b = read();
-        bos.write(b);
-        switch (state) {
-        case R:
-            return b == BS_N ? RN : b == BS_R ? R : 0;
-        case RN:
-            return b == BS_R ? RNR : 0;
-        case RNR:
-            return b == BS_N ? RNRN : b == BS_R ? R : 0;
-        default:
-            return b == BS_R ? R : 0;
-        }
+    private static void parseHeader(Map<String, String> headers, byte[] b,
+            int start, int stop) {
+        int colon = start;
+        while (colon < stop && ':' != b[colon])
+            colon++;
+        if (colon == stop)
+            return;
+        int nameStart = trimStart(b, start, colon);
+        int nameEnd = trimEnd(b, nameStart, colon);
+        int valueStart = trimStart(b, colon + 1, stop);
+        headers.put(HeaderNames.name(b, nameStart, nameEnd - nameStart),
+                HeaderNames.value(b, valueStart, stop - valueStart, OIO_CHARSET));
     }
 
-    private int read() throws IOException {
-        int b = sis.read();
-        if (-1 == b)
-            throw new IOException("Unexpected end of stream");
-        return b;
+    private static int trimStart(byte[] b, int start, int stop) {
+        while (start < stop && ' ' >= (b[start] & 0xFF))
+            start++;
+        return start;
+    }
+
+    /**
+     * @return the end of the line without its trailing whitespace (including
+     *         the {@code '\r'})
+     */
+    private static int trimEnd(byte[] b, int start, int stop) {
+        while (stop > start && ' ' >= (b[stop - 1] & 0xFF))
+            stop--;
+        return stop;
+    }
+
+    private static boolean equalsAscii(String s, byte[] b, int off, int len) {
+        if (s.length() != len)
+            return false;
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) != b[off + i])
+                return false;
+        }
+        return true;
     }
 
     public static class ResponseHead {
@@ -149,6 +332,27 @@ public class OioHttpResponse {
                     .parseHeaders();
         }
 
+        /**
+         * Parse a response head straight from the buffer of a connection,
+         * leaving the reader at the beginning of the body.
+         *
+         * @param reader
+         *            the reader of the connection
+         * @return the parsed head
+         * @throws IOException
+         *             if the head is invalid or could not be read
+         */
+        static ResponseHead parse(ConnectionReader reader) throws IOException {
+            ResponseHead head = new ResponseHead(null);
+            int end = reader.lineEnd();
+            int start = reader.position();
+            head.statusLine = StatusLine.parse(reader.buffer(), start, trimEnd(reader.buffer(),
+                    start, end));
+            reader.position(end + 1);
+            readHeaders(reader, head.headers);
+            return head;
+        }
+
         private ResponseHead parseStatusLine() throws IOException {
             this.statusLine = StatusLine.parse(reader.readLine());
             return this;
@@ -209,6 +413,35 @@ public class OioHttpResponse {
             return new StatusLine(tok[0], Integer.parseInt(tok[1].trim()), tok[2].trim());
         }
 
+        static StatusLine parse(byte[] b, int start, int stop) throws IOException {
+            start = trimStart(b, start, stop);
+            int sp1 = start;
+            while (sp1 < stop && ' ' != b[sp1])
+                sp1++;
+            int codeStart = sp1 + 1;
+            int sp2 = codeStart;
+            while (sp2 < stop && ' ' != b[sp2])
+                sp2++;
+            if (sp2 >= stop || 3 != sp2 - codeStart)
+                throw invalid(b, start, stop);
+            int code = 0;
+            for (int i = codeStart; i < sp2; i++) {
+                if ('0' > b[i] || '9' < b[i])
+                    throw invalid(b, start, stop);
+                code = code * 10 + (b[i] - '0');
+            }
+            String proto = equalsAscii(HTTP_1_1, b, start, sp1 - start)
+                    ? HTTP_1_1 : new String(b, start, sp1 - start, OIO_CHARSET);
+            int msgStart = trimStart(b, sp2 + 1, stop);
+            return new StatusLine(proto, code, HeaderNames.value(b, msgStart,
+                    stop - msgStart, OIO_CHARSET));
+        }
+
+        private static IOException invalid(byte[] b, int start, int stop) {
+            return new IOException(format("Invalid HTTP status line (%s)",
+                    new String(b, start, stop - start, OIO_CHARSET)));
+        }
+
         public String proto() {
             return this.proto;
         }
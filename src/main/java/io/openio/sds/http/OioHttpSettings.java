@@ -12,6 +12,13 @@ public class OioHttpSettings {
 	private Integer connectTimeout = 30000;
 	private Integer readTimeout = 60000;
 	private String userAgent = "oio-http";
+	private Integer staleRetries = 3;
+	private Long maxDrainSize = 65536L;
+	private Boolean compression = true;
+	private Long expectContinueThreshold = 1048576L;
+	private Integer expectContinueTimeout = 1000;
+	private Integer circuitBreakerThreshold = 5;
+	private Integer circuitBreakerOpenTime = 30000;
 
 	public OioHttpSettings() {
 	}
@@ -61,4 +68,172 @@ public class OioHttpSettings {
         return this;
     }
 
+    /**
+     * Returns the max number of times an idempotent request is sent again
+     * when it fails on a reused pooled connection
+     *
+     * @return the max number of retries on stale connections
+     */
+    public Integer staleRetries() {
+        return staleRetries;
+    }
+
+    /**
+     * Specifies the max number of times an idempotent request is sent again
+     * when it fails on a reused pooled connection, which the server may
+     * have closed while it was idle
+     *
+     * @param staleRetries
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings staleRetries(Integer staleRetries) {
+        this.staleRetries = staleRetries;
+        return this;
+    }
+
+    /**
+     * Returns the max number of unread response body bytes read and
+     * discarded on close to reuse a pooled connection
+     *
+     * @return the max drain size in bytes
+     */
+    public Long maxDrainSize() {
+        return maxDrainSize;
+    }
+
+    /**
+     * Specifies the max number of unread response body bytes read and
+     * discarded when a response is closed, so the pooled connection can be
+     * reused. Connections with a larger unread body are closed.
+     *
+     * @param maxDrainSize
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings maxDrainSize(Long maxDrainSize) {
+        this.maxDrainSize = maxDrainSize;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if compressed responses are requested
+     *
+     * @return {@code true} if compressed responses are requested
+     */
+    public Boolean compression() {
+        return compression;
+    }
+
+    /**
+     * Specifies if the server may compress its responses ({@code gzip} or
+     * {@code deflate}). Worth it for large JSON bodies, not for data which
+     * is usually stored already compressed. Compressed responses are
+     * decoded in any case.
+     *
+     * @param compression
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings compression(Boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * Returns the body size from which the server is asked to accept a
+     * request before its body is sent
+     *
+     * @return the threshold in bytes
+     */
+    public Long expectContinueThreshold() {
+        return expectContinueThreshold;
+    }
+
+    /**
+     * Specifies the size from which a streamed request body is only sent
+     * once the server has answered {@code 100 Continue} to an
+     * {@code Expect: 100-continue} header, so a refused upload costs a
+     * round trip instead of a whole body. A negative value disables it.
+     *
+     * @param expectContinueThreshold
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings expectContinueThreshold(Long expectContinueThreshold) {
+        this.expectContinueThreshold = expectContinueThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the max time in milliseconds to wait for {@code 100 Continue}
+     *
+     * @return the max time to wait for {@code 100 Continue}
+     */
+    public Integer expectContinueTimeout() {
+        return expectContinueTimeout;
+    }
+
+    /**
+     * Specifies the max time in milliseconds to wait for
+     * {@code 100 Continue} before sending the body anyway, for the servers
+     * ignoring the {@code Expect} header
+     *
+     * @param expectContinueTimeout
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings expectContinueTimeout(Integer expectContinueTimeout) {
+        this.expectContinueTimeout = expectContinueTimeout;
+        return this;
+    }
+
+    /**
+     * Returns the number of consecutive network failures after which the
+     * circuit breaker of a host opens
+     *
+     * @return the circuit breaker threshold
+     */
+    public Integer circuitBreakerThreshold() {
+        return circuitBreakerThreshold;
+    }
+
+    /**
+     * Specifies the number of consecutive network failures after which the
+     * circuit breaker of a host opens, making the requests to this host fail
+     * fast. {@code 0} disables the circuit breakers.
+     *
+     * @param circuitBreakerThreshold
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings circuitBreakerThreshold(Integer circuitBreakerThreshold) {
+        this.circuitBreakerThreshold = circuitBreakerThreshold;
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds during which an open circuit breaker
+     * rejects all the requests
+     *
+     * @return the circuit breaker open time in milliseconds
+     */
+    public Integer circuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    /**
+     * Specifies the time in milliseconds during which an open circuit
+     * breaker rejects all the requests, before letting a trial request
+     * through
+     *
+     * @param circuitBreakerOpenTime
+     *            the value to set
+     * @return this
+     */
+    public OioHttpSettings circuitBreakerOpenTime(Integer circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+        return this;
+    }
+
 }
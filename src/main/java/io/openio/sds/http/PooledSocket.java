@@ -21,20 +21,67 @@ public class PooledSocket extends Socket implements Poolable {
 
     private Pool<PooledSocket> pool;
     private AtomicBoolean pooled;
-    private long lastUsage;
+    private volatile long lastUsage;
+    private volatile boolean reused = false;
+    private final int readBufferSize;
+    private final int writeBufferSize;
+    private ConnectionReader reader;
+    private ConnectionWriter writer;
 
     PooledSocket(Pool<PooledSocket> pool) {
+        this(pool, ConnectionReader.DEFAULT_BUFFER_SIZE, ConnectionReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    PooledSocket(Pool<PooledSocket> pool, int readBufferSize, int writeBufferSize) {
         super();
         this.pool = pool;
         this.pooled = new AtomicBoolean(false);
+        this.readBufferSize = readBufferSize;
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    /**
+     * @return the buffered reader of the connection, shared by all the
+     *         responses read on it
+     * @throws IOException
+     *             if the socket is not connected
+     */
+    ConnectionReader reader() throws IOException {
+        if (null == reader)
+            reader = new ConnectionReader(getInputStream(), readBufferSize);
+        return reader;
+    }
+
+    /**
+     * @return the buffered writer of the connection, shared by all the
+     *         requests sent on it
+     * @throws IOException
+     *             if the socket is not connected
+     */
+    ConnectionWriter writer() throws IOException {
+        if (null == writer)
+            writer = new ConnectionWriter(getOutputStream(), writeBufferSize);
+        return writer;
     }
 
     @Override
     public void close() throws IOException {
-        if (!pooled.get()) {
+        // the pool flags the socket as pooled before it can be leased again
+        if (!pooled.get())
             pool.release(this);
-            pooled.set(true);
-        } 
+    }
+
+    /**
+     * Close the connection, e.g. from another thread to make a blocked
+     * write fail. It is destroyed instead of being reused once released.
+     */
+    void abort() {
+        try {
+            shutdownInput();
+        } catch (IOException e) {
+            logger.debug("Socket input already shutdown");
+        }
+        quietClose();
     }
 
     void quietClose() {
@@ -47,12 +94,22 @@ public class PooledSocket extends Socket implements Poolable {
 
     @Override
     public boolean reusable() {
-        return !this.isInputShutdown();
+        return !this.isInputShutdown() && !this.isClosed();
     }
 
     @Override
     public void lastUsage(long lastUsage) {
         this.lastUsage = lastUsage;
+        this.reused = true;
+    }
+
+    /**
+     * @return {@code true} if the socket has already been released to its
+     *         pool once, so the server may have closed the connection since
+     *         the last request
+     */
+    boolean reused() {
+        return reused;
     }
 
     @Override
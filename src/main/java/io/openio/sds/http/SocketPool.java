@@ -7,6 +7,7 @@ import java.net.InetSocketAddress;
 
 import io.openio.sds.exceptions.OioException;
 import io.openio.sds.pool.Pool;
+import io.openio.sds.pool.PoolBudget;
 import io.openio.sds.pool.PoolingSettings;
 
 /**
@@ -26,10 +27,18 @@ public class SocketPool extends Pool<PooledSocket> {
         this.target = target;
     }
 
+    SocketPool(OioHttpSettings settings, PoolingSettings pooling,
+            InetSocketAddress target, PoolBudget budget) {
+        super(pooling, false, budget);
+        this.settings = settings;
+        this.target = target;
+    }
+
     @Override
     protected PooledSocket create() {
         try {
-            PooledSocket sock = new PooledSocket(this);
+            PooledSocket sock = new PooledSocket(this, settings.receiveBufferSize(),
+                    settings.sendBufferSize());
             sock.setSendBufferSize(settings.sendBufferSize());
             sock.setReuseAddress(true);
             sock.setReceiveBufferSize(settings.receiveBufferSize());
@@ -42,6 +51,24 @@ public class SocketPool extends Pool<PooledSocket> {
         }
     }
 
+    /**
+     * Check, without waiting, that the connection is still open and that the
+     * server did not send anything while it was idle (e.g. an error before
+     * closing it). A connection closed by the server without a word is only
+     * noticed by the request sent on it, which is retried when possible (see
+     * {@link OioHttpSettings#staleRetries()}).
+     */
+    @Override
+    protected boolean validate(PooledSocket sock) {
+        if (sock.isClosed() || sock.isInputShutdown() || sock.isOutputShutdown())
+            return false;
+        try {
+            return 0 == sock.reader().available();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     @Override
     protected void destroy(PooledSocket p) {
         p.quietClose();
@@ -0,0 +1,28 @@
+package io.openio.sds.http;
+
+import java.net.InetSocketAddress;
+
+import io.openio.sds.pool.Pool;
+import io.openio.sds.pool.PoolBudget;
+import io.openio.sds.pool.PoolGroup;
+import io.openio.sds.pool.PoolingSettings;
+
+/**
+ * Group of {@link SocketPool}, one for each remote address.
+ *
+ */
+public class SocketPoolGroup extends PoolGroup<InetSocketAddress, PooledSocket> {
+
+    private OioHttpSettings settings;
+
+    public SocketPoolGroup(OioHttpSettings settings, PoolingSettings pooling) {
+        super(pooling, true);
+        this.settings = settings;
+    }
+
+    @Override
+    protected Pool<PooledSocket> createPool(InetSocketAddress target,
+            PoolingSettings pooling, PoolBudget budget) {
+        return new SocketPool(settings, pooling, target, budget);
+    }
+}
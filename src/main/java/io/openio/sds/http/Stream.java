@@ -5,8 +5,10 @@ import java.io.InputStream;
 
 public class Stream extends InputStream {
 
+	private static final int DRAIN_BUFFER_SIZE = 8192;
+
 	private InputStream is;
-	private Long remaining;
+	private long remaining;
 
 	public Stream(InputStream is, Long size) {
 		this.is = is;
@@ -18,17 +20,14 @@ public class Stream extends InputStream {
 		if (0 == remaining)
 			return -1;
 		int res = is.read();
-		remaining--;
+		if (-1 != res)
+			remaining--;
 		return res;
 	}
 
 	@Override
 	public int read(byte[] buf) throws IOException {
-		if (0 == remaining)
-			return -1;
-		int res = is.read(buf,0, Math.min(buf.length,remaining.intValue()));
-		remaining = remaining - res;
-		return res;
+		return read(buf, 0, buf.length);
 	}
 
 	@Override
@@ -36,13 +35,43 @@ public class Stream extends InputStream {
 		if (0 == remaining) {
 			return -1;
 		}
-		int res = is.read(buf, offset,Math.min(len,Math.min(buf.length-offset,remaining.intValue())));
-		remaining = remaining - res;
+		int res = is.read(buf, offset, (int) Math.min(Math.min(len, buf.length - offset),
+				remaining));
+		if (0 < res)
+			remaining = remaining - res;
 		return res;
 	}
 
+	boolean exhausted() {
+		return 0 >= remaining;
+	}
+
+	/**
+	 * Read and discard the rest of the body, if it is not larger than
+	 * {@code max} bytes.
+	 *
+	 * @param max
+	 *            the max number of bytes to discard
+	 * @return {@code true} if the whole body has been read
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	boolean drain(long max) throws IOException {
+		if (remaining > max)
+			return false;
+		byte[] buf = new byte[(int) Math.min(remaining, DRAIN_BUFFER_SIZE)];
+		while (0 < remaining) {
+			if (-1 == read(buf, 0, buf.length))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Does not close the connection, which is released (or closed) by
+	 * {@link OioHttpResponse#close(boolean)}.
+	 */
 	@Override
 	public void close() throws IOException {
-		is.close();
 	}
 }
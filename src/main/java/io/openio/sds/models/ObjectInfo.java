@@ -34,6 +34,7 @@ public class ObjectInfo {
     private RequestContext reqCtx;
 
     private transient Map<Integer, List<ChunkInfo>> sortedChunks;
+    private transient OffsetIndex offsetIndex;
 
     private static final Comparator<ChunkInfo> comparator = new Comparator<ChunkInfo>() {
 
@@ -62,12 +63,14 @@ public class ObjectInfo {
 
     public ObjectInfo chunks(List<ChunkInfo> chunks) {
         this.sortedChunks = sortChunks(chunks);
+        this.offsetIndex = null;
         this.chunks = chunks;
         return this;
     }
 
     public ObjectInfo size(Long size) {
         this.size = size;
+        this.offsetIndex = null;
         return this;
     }
 
@@ -140,6 +143,7 @@ public class ObjectInfo {
     public ObjectInfo chunkMethod(String chunkMethod) {
         this.chunkMethod = chunkMethod;
         this.ecinfo = ECInfo.fromString(chunkMethod);
+        this.offsetIndex = null;
         return this;
     }
 
@@ -169,6 +173,21 @@ public class ObjectInfo {
         return sortedChunks.get(pos).get(0).size();
     }
 
+    /**
+     * Returns the offsets of the chunk positions in the object, computed on
+     * first use.
+     *
+     * @return the offset index
+     */
+    public OffsetIndex offsetIndex() {
+        OffsetIndex index = offsetIndex;
+        if (null == index) {
+            index = OffsetIndex.of(this);
+            offsetIndex = index;
+        }
+        return index;
+    }
+
     public Map<String, String> properties() {
         return properties;
     }
@@ -186,11 +205,11 @@ public class ObjectInfo {
     	return null != ecinfo;
     }
 
-    public int metachunksize(int pos) {
+    public long metachunksize(int pos) {
         if (!isEC())
             return -1;
-        int maxmcsize = (int) (ecinfo.k() * sortedChunks.get(pos).get(0).size());
-        int remaining = (int) (size - (pos * maxmcsize));
+        long maxmcsize = ecinfo.k() * sortedChunks().get(pos).get(0).size();
+        long remaining = size - pos * maxmcsize;
         return Math.min(maxmcsize, remaining);
     }
 
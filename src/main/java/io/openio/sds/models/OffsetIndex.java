@@ -0,0 +1,139 @@
+package io.openio.sds.models;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+/**
+ * Offsets of the chunk positions of an object, to find the positions
+ * holding a range of the object with a binary search.
+ * <p>
+ * The size of a position is the size of its data in the object: the size of
+ * its chunks for replicated objects, the size of the metachunk for erasure
+ * coded ones.
+ */
+public class OffsetIndex {
+
+    /* offset of each position, then the size of the object */
+    private final long[] offsets;
+
+    /**
+     * @param sizes
+     *            the size of each position, in order
+     */
+    public OffsetIndex(long[] sizes) {
+        this.offsets = new long[sizes.length + 1];
+        for (int pos = 0; pos < sizes.length; pos++) {
+            checkArgument(0 <= sizes[pos], "Invalid chunk size");
+            offsets[pos + 1] = offsets[pos] + sizes[pos];
+        }
+    }
+
+    /**
+     * Builds the index of an object.
+     *
+     * @param oinf
+     *            the object
+     * @return the index
+     */
+    public static OffsetIndex of(ObjectInfo oinf) {
+        long[] sizes = new long[oinf.sortedChunks().size()];
+        for (int pos = 0; pos < sizes.length; pos++)
+            sizes[pos] = oinf.isEC() ? oinf.metachunksize(pos) : oinf.chunksize(pos);
+        return new OffsetIndex(sizes);
+    }
+
+    /**
+     * @return the number of positions
+     */
+    public int count() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return the size of the object
+     */
+    public long size() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * @param pos
+     *            a position, or the number of positions
+     * @return the offset in the object of the first byte of the position, or
+     *         the size of the object
+     */
+    public long offset(int pos) {
+        return offsets[pos];
+    }
+
+    /**
+     * @param pos
+     *            a position
+     * @return the size of the position
+     */
+    public long size(int pos) {
+        return offsets[pos + 1] - offsets[pos];
+    }
+
+    /**
+     * Returns the position holding a byte of the object.
+     *
+     * @param offset
+     *            the offset of the byte in the object
+     * @return the position, never an empty one
+     * @throws IllegalArgumentException
+     *             if the offset is out of the object
+     */
+    public int positionOf(long offset) {
+        checkArgument(0 <= offset && offset < size(), "Offset out of content size");
+        // the last position starting at or before the offset
+        return upperBound(offset) - 1;
+    }
+
+    /**
+     * Returns the position holding the byte before an offset, i.e. the last
+     * position of a range ending at this offset (exclusive).
+     *
+     * @param offset
+     *            the end of a range
+     * @return the position, -1 if the offset is 0
+     * @throws IllegalArgumentException
+     *             if the offset is out of the object
+     */
+    public int positionEnding(long offset) {
+        checkArgument(0 <= offset && offset <= size(), "Offset out of content size");
+        // the first position ending at or after the offset
+        return lowerBound(offset) - 1;
+    }
+
+    /*
+     * The first index whose offset is greater than the value.
+     */
+    private int upperBound(long value) {
+        int lo = 0;
+        int hi = offsets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsets[mid] <= value)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /*
+     * The first index whose offset is greater than or equal to the value.
+     */
+    private int lowerBound(long value) {
+        int lo = 0;
+        int hi = offsets.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsets[mid] < value)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
@@ -1,7 +1,7 @@
 package io.openio.sds.models;
 
 import static io.openio.sds.common.Check.checkArgument;
-import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 import static java.lang.String.format;
 
 import java.util.regex.Matcher;
@@ -43,10 +43,10 @@ public class Range {
         checkArgument(m.matches());
         if (null == m.group(1)) {
             checkArgument(null != m.group(2), "useless range");
-            return upTo(parseInt(m.group(2)));
+            return upTo(parseLong(m.group(2)));
         }
-        return (null == m.group(2)) ? from(parseInt(m.group(1)))
-                : between(parseInt(m.group(1)), parseInt(m.group(2)));
+        return (null == m.group(2)) ? from(parseLong(m.group(1)))
+                : between(parseLong(m.group(1)), parseLong(m.group(2)));
     }
 
     public long from() {
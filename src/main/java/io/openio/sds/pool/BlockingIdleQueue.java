@@ -0,0 +1,43 @@
+package io.openio.sds.pool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * FIFO {@link IdleQueue} backed by an {@link ArrayBlockingQueue}.
+ *
+ * @param <T>
+ *            the type of the pooled items
+ */
+class BlockingIdleQueue<T> implements IdleQueue<T> {
+
+    private final ArrayBlockingQueue<T> q;
+
+    BlockingIdleQueue(int capacity) {
+        this.q = new ArrayBlockingQueue<T>(capacity);
+    }
+
+    @Override
+    public boolean offer(T item) {
+        return q.offer(item);
+    }
+
+    @Override
+    public T poll() {
+        return q.poll();
+    }
+
+    @Override
+    public T peekEldest() {
+        return q.peek();
+    }
+
+    @Override
+    public T pollEldest() {
+        return q.poll();
+    }
+
+    @Override
+    public int size() {
+        return q.size();
+    }
+}
@@ -0,0 +1,41 @@
+package io.openio.sds.pool;
+
+/**
+ * Storage of the idle items of a {@link Pool}.
+ *
+ * @param <T>
+ *            the type of the pooled items
+ */
+interface IdleQueue<T> {
+
+    /**
+     * Add an idle item.
+     *
+     * @param item
+     *            the item to add
+     * @return {@code false} if the queue is full
+     */
+    boolean offer(T item);
+
+    /**
+     * @return the next item to lease, or {@code null} if there is none
+     */
+    T poll();
+
+    /**
+     * @return the item which has been idle for the longest time, left in the
+     *         queue, or {@code null} if there is none
+     */
+    T peekEldest();
+
+    /**
+     * @return the item which has been idle for the longest time, or
+     *         {@code null} if there is none
+     */
+    T pollEldest();
+
+    /**
+     * @return the number of idle items
+     */
+    int size();
+}
@@ -0,0 +1,119 @@
+package io.openio.sds.pool;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free LIFO {@link IdleQueue}: the most recently released item is
+ * leased first, so the least used items time out and get cleaned.
+ * <p>
+ * With thread affinity, each thread remembers the last item it released and
+ * tries to lease it again before looking at the shared stack. The item stays
+ * in the shared stack, so other threads (and the cleaner) can still take it:
+ * an item is handed out by whoever claims its entry first.
+ *
+ * @param <T>
+ *            the type of the pooled items
+ */
+class LifoIdleStack<T> implements IdleQueue<T> {
+
+    private final ConcurrentLinkedDeque<Entry<T>> stack = new ConcurrentLinkedDeque<Entry<T>>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    private final int capacity;
+    private final ThreadLocal<Entry<T>> affinity;
+
+    LifoIdleStack(int capacity, boolean threadAffinity) {
+        this.capacity = capacity;
+        this.affinity = threadAffinity ? new ThreadLocal<Entry<T>>() : null;
+    }
+
+    @Override
+    public boolean offer(T item) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+        Entry<T> entry = null;
+        if (null != affinity) {
+            entry = affinity.get();
+            if (null == entry || entry.item != item) {
+                entry = new Entry<T>(item);
+                affinity.set(entry);
+            }
+        } else {
+            entry = new Entry<T>(item);
+        }
+        entry.claimed.set(false);
+        // The entry may still be in the stack if it was leased from the
+        // thread-local slot: do not push it twice.
+        if (entry.stacked.compareAndSet(false, true))
+            stack.offerFirst(entry);
+        return true;
+    }
+
+    @Override
+    public T poll() {
+        if (null != affinity) {
+            Entry<T> entry = affinity.get();
+            if (null != entry && claim(entry))
+                return entry.item;
+        }
+        Entry<T> entry;
+        while (null != (entry = stack.pollFirst())) {
+            entry.stacked.set(false);
+            if (claim(entry))
+                return entry.item;
+        }
+        return null;
+    }
+
+    @Override
+    public T peekEldest() {
+        Iterator<Entry<T>> it = stack.descendingIterator();
+        while (it.hasNext()) {
+            Entry<T> entry = it.next();
+            if (!entry.claimed.get())
+                return entry.item;
+        }
+        return null;
+    }
+
+    @Override
+    public T pollEldest() {
+        Entry<T> entry;
+        while (null != (entry = stack.pollLast())) {
+            entry.stacked.set(false);
+            if (claim(entry))
+                return entry.item;
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    private boolean claim(Entry<T> entry) {
+        if (entry.claimed.compareAndSet(false, true)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static class Entry<T> {
+
+        private final T item;
+        /* false while the item is idle */
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        /* true while the entry is in the shared stack */
+        private final AtomicBoolean stacked = new AtomicBoolean(false);
+
+        Entry(T item) {
+            this.item = item;
+        }
+    }
+}
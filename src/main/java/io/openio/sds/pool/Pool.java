@@ -1,7 +1,5 @@
 package io.openio.sds.pool;
 
-import java.util.Iterator;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -10,6 +8,17 @@ import io.openio.sds.logging.SdsLogger;
 import io.openio.sds.logging.SdsLoggerFactory;
 
 /**
+ * Pool of {@link Poolable} items.
+ * <p>
+ * Idle items are kept in a FIFO blocking queue by default. When
+ * {@link PoolingSettings#lifo()} is set, they are kept in a lock-free stack
+ * instead, so the most recently released item is leased first, and with
+ * {@link PoolingSettings#threadAffinity()} a thread gets back the last item
+ * it released when it is still idle.
+ * <p>
+ * The number of items of the pool, leased or idle, is limited by
+ * {@link PoolingSettings#maxTotal()}, in a {@link PoolBudget} which may be
+ * shared with other pools.
  * 
  * @author Christopher Dedeurwaerder
  * @author Florent Vennetier
@@ -18,31 +27,103 @@ public abstract class Pool<T extends Poolable> {
 
     private static final SdsLogger logger = SdsLoggerFactory.getLogger(Pool.class);
 
-    private ArrayBlockingQueue<T> q;
+    private IdleQueue<T> q;
     private PoolingSettings settings;
     private AtomicInteger leased;
+    private PoolBudget budget;
     private Thread selfCleaner;
+    private volatile long lastActivity = monotonicMillis();
+    private volatile boolean closed = false;
 
     public Pool(PoolingSettings settings) {
         this(settings, false);
     }
 
     public Pool(PoolingSettings settings, boolean selfCleaning) {
+        this(settings, selfCleaning, new PoolBudget(settings));
+    }
+
+    /**
+     * Build a pool whose items are also accounted in {@code budget}, so
+     * several pools (e.g. the pools of a {@link PoolGroup}) can share the
+     * {@link PoolingSettings#maxTotal()} budget.
+     *
+     * @param settings
+     *            the pooling settings
+     * @param selfCleaning
+     *            whether to start a thread cleaning the idle items
+     * @param budget
+     *            the budget shared by the pools
+     */
+    protected Pool(PoolingSettings settings, boolean selfCleaning, PoolBudget budget) {
         this.settings = settings;
         this.leased = new AtomicInteger(0);
-        this.q = new ArrayBlockingQueue<T>(settings.maxForEach());
+        this.budget = budget;
+        this.q = newIdleQueue(settings);
+        budget.register(this);
         if (selfCleaning) {
             this.selfCleaner = new SelfCleaner();
             this.selfCleaner.start();
         }
     }
 
+    /**
+     * Destroy the idle items and stop the cleaning thread. Items released
+     * after the shutdown are destroyed instead of being pooled.
+     */
     public void shutdown() {
+        closed = true;
+        budget.unregister(this);
         if (null != selfCleaner)
             selfCleaner.interrupt();
-        Iterator<T> it = q.iterator();
-        while (it.hasNext())
-            destroy(it.next());
+        destroyIdle();
+    }
+
+    private static <T> IdleQueue<T> newIdleQueue(PoolingSettings settings) {
+        if (Boolean.TRUE.equals(settings.lifo()))
+            return new LifoIdleStack<T>(settings.maxForEach(),
+                    Boolean.TRUE.equals(settings.threadAffinity()));
+        return new BlockingIdleQueue<T>(settings.maxForEach());
+    }
+
+    /*
+     * Destroy an item, giving its slot back to the budget
+     */
+    private void discard(T item) {
+        try {
+            destroy(item);
+        } finally {
+            budget.closed();
+        }
+    }
+
+    /**
+     * Destroy the item which has been idle for the longest time, to make
+     * room for an item of another pool.
+     *
+     * @return {@code false} if there is no idle item
+     */
+    boolean evictEldest() {
+        T item = q.pollEldest();
+        if (null == item)
+            return false;
+        discard(item);
+        return true;
+    }
+
+    /**
+     * @return the last usage of the item which has been idle for the
+     *         longest time, {@link Long#MAX_VALUE} if there is none
+     */
+    long eldestIdleUsage() {
+        T item = q.peekEldest();
+        return null == item ? Long.MAX_VALUE : item.lastUsage();
+    }
+
+    private void destroyIdle() {
+        T item;
+        while (null != (item = q.poll()))
+            discard(item);
     }
 
     /**
@@ -58,13 +139,34 @@ public abstract class Pool<T extends Poolable> {
     }
 
     /**
-     * @return the first item of the queue that has not timed out.
+     * Check that an idle item is still usable before leasing it. Called for
+     * the items which have been idle for at least
+     * {@link PoolingSettings#validateAfterInactivity()} milliseconds.
+     *
+     * @param item
+     *            the item to check
+     * @return {@code false} if the item must be destroyed instead of leased
+     */
+    protected boolean validate(T item) {
+        return true;
+    }
+
+    private boolean valid(T item, long now) {
+        Integer delay = settings.validateAfterInactivity();
+        if (null == delay || 0 > delay || now < item.lastUsage() + delay)
+            return true;
+        return validate(item);
+    }
+
+    /**
+     * @return the first item of the queue that has not timed out, and is
+     *         still valid.
      */
     protected T leaseLoop() {
         long now = monotonicMillis();
         T item = q.poll();
-        while (item != null && this.timedOut(item, now)) {
-            destroy(item);
+        while (item != null && (this.timedOut(item, now) || !valid(item, now))) {
+            discard(item);
             item = q.poll();
         }
         return item;
@@ -72,20 +174,14 @@ public abstract class Pool<T extends Poolable> {
 
     public T lease() {
         T item = leaseLoop();
-        if (item == null) {
+        if (item == null)
             item = tryCreate();
-            if (item == null) {
-                try {
-                    item = q.poll(settings.maxWait(), TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    logger.debug("connection wait interrrupted");
-                }
-                if (item == null)
-                    throw new OioException(String.format("Unable to get pooled element"));
-            }
-        }
+        if (item == null)
+            item = await();
 
         leased.incrementAndGet();
+        budget.leased(1);
+        touch(monotonicMillis());
         item.setPooled(false);
         return item;
     }
@@ -93,14 +189,33 @@ public abstract class Pool<T extends Poolable> {
     public Pool<T> release(T item) {
         if (item.isPooled())
             return this;
+        // flag it before offering it, as it may be leased again right away
+        item.setPooled(true);
         leased.decrementAndGet();
-        item.lastUsage(monotonicMillis());
-        if (!item.reusable() || !q.offer(item)) {
-            destroy(item);
+        budget.leased(-1);
+        long now = monotonicMillis();
+        touch(now);
+        item.lastUsage(now);
+        if (closed || !item.reusable() || !q.offer(item)) {
+            discard(item);
+        } else if (closed) {
+            // shutdown happened while we were pooling the item
+            destroyIdle();
+        } else {
+            budget.signal();
         }
         return this;
     }
 
+    /*
+     * Only write the shared timestamp when it changes, to avoid bouncing its
+     * cache line between the threads on each lease and release.
+     */
+    private void touch(long now) {
+        if (now != lastActivity)
+            lastActivity = now;
+    }
+
     public int size() {
         return q.size();
     }
@@ -109,16 +224,52 @@ public abstract class Pool<T extends Poolable> {
         return leased.get();
     }
 
+    /**
+     * @return {@code true} if no item has been leased or released for more
+     *         than {@code timeout} milliseconds, and no item is currently
+     *         leased or pooled
+     */
+    public boolean idle(long timeout) {
+        return 0 == leased.get() && 0 == q.size()
+                && monotonicMillis() - lastActivity >= timeout;
+    }
+
     protected abstract T create();
 
     protected abstract void destroy(T t);
 
     private T tryCreate() {
-        return canCreate() ? create() : null;
+        if (0 >= settings.maxForEach() - leased.get() || !budget.reserve(this))
+            return null;
+        try {
+            return create();
+        } catch (RuntimeException e) {
+            budget.closed();
+            throw e;
+        }
     }
 
-    private boolean canCreate() {
-        return 0 < settings.maxForEach() - leased.get();
+    /*
+     * Wait for an item of this pool to be released, or for room in the
+     * budget, whichever pool it comes from
+     */
+    private T await() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.maxWait());
+        try {
+            while (true) {
+                long version = budget.version();
+                T item = leaseLoop();
+                if (null == item)
+                    item = tryCreate();
+                if (null != item)
+                    return item;
+                if (!budget.await(version, deadline))
+                    break;
+            }
+        } catch (InterruptedException e) {
+            logger.debug("connection wait interrrupted");
+        }
+        throw new OioException(String.format("Unable to get pooled element"));
     }
 
     /**
@@ -126,9 +277,14 @@ public abstract class Pool<T extends Poolable> {
      * out item.
      */
     void clean() {
-        T item = leaseLoop();
+        long now = monotonicMillis();
+        T item = q.pollEldest();
+        while (item != null && this.timedOut(item, now)) {
+            discard(item);
+            item = q.pollEldest();
+        }
         if (item != null)
-            destroy(item);
+            discard(item);
     }
 
     private class SelfCleaner extends Thread {
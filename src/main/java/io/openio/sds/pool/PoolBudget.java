@@ -0,0 +1,159 @@
+package io.openio.sds.pool;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@link PoolingSettings#maxTotal()} budget shared by the pools of a
+ * {@link PoolGroup}.
+ * <p>
+ * Both the leased and the idle items of all the pools are counted. When the
+ * budget is spent, a pool needing a new item closes the least recently used
+ * idle item of another pool to make room. A pool with nothing to lease waits
+ * on a condition shared by all the pools, signaled whenever an item of any
+ * of them is released or destroyed.
+ */
+public class PoolBudget {
+
+    private final PoolingSettings settings;
+    private final CopyOnWriteArrayList<Pool<?>> pools = new CopyOnWriteArrayList<Pool<?>>();
+    /* items created and not destroyed yet, leased or idle */
+    private final AtomicInteger open = new AtomicInteger(0);
+    private final AtomicInteger leased = new AtomicInteger(0);
+    /* bumped each time an item may have become available */
+    private final AtomicLong version = new AtomicLong(0);
+    private final AtomicInteger waiters = new AtomicInteger(0);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    public PoolBudget(PoolingSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * @return the number of items leased from all the pools
+     */
+    public int leased() {
+        return leased.get();
+    }
+
+    /**
+     * @return the number of items of all the pools, leased or idle
+     */
+    public int open() {
+        return open.get();
+    }
+
+    void register(Pool<?> pool) {
+        pools.addIfAbsent(pool);
+    }
+
+    void unregister(Pool<?> pool) {
+        pools.remove(pool);
+    }
+
+    void leased(int delta) {
+        leased.addAndGet(delta);
+    }
+
+    /**
+     * Take a slot for a new item of {@code pool}, closing an idle item of
+     * another pool if the budget is spent.
+     *
+     * @return {@code false} if the budget is spent by leased items
+     */
+    boolean reserve(Pool<?> pool) {
+        while (true) {
+            int o = open.get();
+            if (o < settings.maxTotal()) {
+                if (open.compareAndSet(o, o + 1))
+                    return true;
+            } else if (!evict(pool)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * An item has been destroyed, or could not be created.
+     */
+    void closed() {
+        open.decrementAndGet();
+        signal();
+    }
+
+    /**
+     * An item may have become available to lease.
+     */
+    void signal() {
+        version.incrementAndGet();
+        if (0 < waiters.get()) {
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the value to give to {@link #await(long, long)}, to be read
+     *         before looking for an item
+     */
+    long version() {
+        return version.get();
+    }
+
+    /**
+     * Wait for an item to be released or destroyed since {@code version}
+     * was read.
+     *
+     * @return {@code false} if the deadline was reached first
+     */
+    boolean await(long version, long deadlineNanos) throws InterruptedException {
+        waiters.incrementAndGet();
+        lock.lock();
+        try {
+            while (version == this.version.get()) {
+                long left = deadlineNanos - System.nanoTime();
+                if (0 >= left)
+                    return false;
+                available.await(left, TimeUnit.NANOSECONDS);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+            waiters.decrementAndGet();
+        }
+    }
+
+    /*
+     * Close the least recently used idle item of the pools other than
+     * "except"
+     */
+    private boolean evict(Pool<?> except) {
+        while (true) {
+            Pool<?> eldest = null;
+            long lastUsage = Long.MAX_VALUE;
+            for (Pool<?> pool : pools) {
+                if (pool == except)
+                    continue;
+                long usage = pool.eldestIdleUsage();
+                if (usage < lastUsage) {
+                    lastUsage = usage;
+                    eldest = pool;
+                }
+            }
+            if (null == eldest)
+                return false;
+            // another thread may have taken it meanwhile
+            if (eldest.evictEldest())
+                return true;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.openio.sds.pool;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+
+/**
+ * Group of {@link Pool}, one for each route (e.g. each remote address).
+ * <p>
+ * Pools are created on first use, and removed when they have been unused for
+ * {@link PoolingSettings#routeIdleTimeout()} milliseconds. Each of them is
+ * limited by {@link PoolingSettings#maxForEach()}, and all of them share the
+ * {@link PoolingSettings#maxTotal()} budget, in which both their leased and
+ * their idle items count (see {@link PoolBudget}). Idle items of all the
+ * pools are cleaned by a single thread.
+ *
+ * @param <K>
+ *            the type of the route
+ * @param <T>
+ *            the type of the pooled items
+ */
+public abstract class PoolGroup<K, T extends Poolable> {
+
+    private static final SdsLogger logger = SdsLoggerFactory.getLogger(PoolGroup.class);
+
+    private final ConcurrentHashMap<K, Pool<T>> pools = new ConcurrentHashMap<K, Pool<T>>();
+    private final PoolingSettings settings;
+    private final PoolBudget budget;
+    private Thread selfCleaner;
+
+    public PoolGroup(PoolingSettings settings) {
+        this(settings, false);
+    }
+
+    public PoolGroup(PoolingSettings settings, boolean selfCleaning) {
+        this.settings = settings;
+        this.budget = new PoolBudget(settings);
+        if (selfCleaning) {
+            this.selfCleaner = new SelfCleaner();
+            this.selfCleaner.start();
+        }
+    }
+
+    /**
+     * Lease an item from the pool of the specified route, creating the pool
+     * if needed.
+     *
+     * @param key
+     *            the route
+     * @return a leased item
+     */
+    public T lease(K key) {
+        return pool(key).lease();
+    }
+
+    /**
+     * Returns the pool of the specified route, creating it if needed.
+     *
+     * @param key
+     *            the route
+     * @return the pool of the route
+     */
+    public Pool<T> pool(K key) {
+        Pool<T> pool = pools.get(key);
+        if (null == pool) {
+            Pool<T> created = createPool(key, settings, budget);
+            pool = pools.putIfAbsent(key, created);
+            if (null == pool)
+                pool = created;
+            else
+                created.shutdown();
+        }
+        return pool;
+    }
+
+    public void shutdown() {
+        if (null != selfCleaner)
+            selfCleaner.interrupt();
+        for (Pool<T> pool : pools.values())
+            pool.shutdown();
+        pools.clear();
+    }
+
+    /**
+     * @return the number of routes having a pool
+     */
+    public int routes() {
+        return pools.size();
+    }
+
+    /**
+     * @return the number of idle items in all the pools
+     */
+    public int size() {
+        int size = 0;
+        for (Pool<T> pool : pools.values())
+            size += pool.size();
+        return size;
+    }
+
+    /**
+     * @return the number of items leased from all the pools
+     */
+    public int leased() {
+        return budget.leased();
+    }
+
+    /**
+     * @return the number of items of all the pools, leased or idle
+     */
+    public int open() {
+        return budget.open();
+    }
+
+    /**
+     * Create the pool of a route. The pool must not be self cleaning, and
+     * must account its items in {@code budget}.
+     *
+     * @param key
+     *            the route
+     * @param settings
+     *            the settings of the group
+     * @param budget
+     *            the budget shared by all the pools of the group
+     * @return a new pool
+     */
+    protected abstract Pool<T> createPool(K key, PoolingSettings settings,
+            PoolBudget budget);
+
+    /**
+     * Clean the timed out items of all the pools, and remove the pools which
+     * have been idle for too long.
+     */
+    void clean() {
+        for (Entry<K, Pool<T>> entry : pools.entrySet()) {
+            Pool<T> pool = entry.getValue();
+            pool.clean();
+            if (pool.idle(settings.routeIdleTimeout())
+                    && pools.remove(entry.getKey(), pool)) {
+                if (logger.isDebugEnabled())
+                    logger.debug("Removing idle pool for " + entry.getKey());
+                pool.shutdown();
+            }
+        }
+    }
+
+    private class SelfCleaner extends Thread {
+
+        SelfCleaner() {
+            super("group-cleaner");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                sleep(settings.cleanDelay() * 1000);
+                while (true) {
+                    clean();
+                    sleep(settings.cleanRate() * 1000);
+                }
+            } catch (InterruptedException e) {
+                logger.debug("Pool group cleaner thread interrupted");
+            }
+        }
+    }
+}
@@ -14,6 +14,10 @@ public class PoolingSettings {
     private Integer maxTotal = 8192;
     private Integer maxWait = 5000;
     private Integer idleTimeout = 3000;
+    private Integer validateAfterInactivity = 1000;
+    private Integer routeIdleTimeout = 60000;
+    private Boolean lifo = false;
+    private Boolean threadAffinity = false;
 
     public PoolingSettings() {
     }
@@ -104,6 +108,100 @@ public class PoolingSettings {
         return this;
     }
 
+    /**
+     * Returns the time in milliseconds after which an idle socket is checked
+     * before being leased
+     * 
+     * @return the validation delay in milliseconds
+     */
+    public Integer validateAfterInactivity() {
+        return validateAfterInactivity;
+    }
+
+    /**
+     * Specifies the time in milliseconds after which an idle socket is
+     * checked before being leased, without waiting: the socket must still be
+     * open, with no data sent by the server while it was idle. {@code 0}
+     * checks every socket, a negative value disables the check.
+     * 
+     * @param validateAfterInactivity
+     *            the value to set
+     * @return this
+     */
+    public PoolingSettings validateAfterInactivity(Integer validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+        return this;
+    }
+
+    /**
+     * Returns the time in milliseconds after which the pool of an unused
+     * route is removed from its pool group
+     * 
+     * @return the route idle timeout in milliseconds
+     */
+    public Integer routeIdleTimeout() {
+        return routeIdleTimeout;
+    }
+
+    /**
+     * Specifies the time in milliseconds after which the pool of an unused
+     * route is removed from its pool group
+     * 
+     * @param routeIdleTimeout
+     *            the value to set
+     * @return this
+     */
+    public PoolingSettings routeIdleTimeout(Integer routeIdleTimeout) {
+        this.routeIdleTimeout = routeIdleTimeout;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if the most recently released socket is leased
+     * first, {@code false} if the least recently released one is
+     * 
+     * @return {@code true} if idle sockets are leased in LIFO order
+     */
+    public Boolean lifo() {
+        return lifo;
+    }
+
+    /**
+     * Specifies if idle sockets are kept in a lock-free stack and leased in
+     * LIFO order, letting the unused ones time out
+     * 
+     * @param lifo
+     *            the value to set
+     * @return this
+     */
+    public PoolingSettings lifo(Boolean lifo) {
+        this.lifo = lifo;
+        return this;
+    }
+
+    /**
+     * Returns {@code true} if a thread first tries to lease the last socket
+     * it released
+     * 
+     * @return {@code true} if thread affinity is enabled
+     */
+    public Boolean threadAffinity() {
+        return threadAffinity;
+    }
+
+    /**
+     * Specifies if a thread first tries to lease the last socket it
+     * released. Only used with {@link #lifo(Boolean)}.
+     * 
+     * @param threadAffinity
+     *            the value to set
+     * @return this
+     */
+    public PoolingSettings threadAffinity(Boolean threadAffinity) {
+        this.threadAffinity = threadAffinity;
+        return this;
+    }
+
     /**
      * Returns the max leased socket allowed per route
      * 
@@ -128,14 +226,16 @@ public class PoolingSettings {
     /**
      * Returns the max leased socket allowed in total
      * 
-     * @return the max leased socket allowed in total
+     * @return the max socket allowed in total, leased or idle
      */
     public Integer maxTotal() {
         return maxTotal;
     }
 
     /**
-     * Specifies the max leased socket allowed in total
+     * Specifies the max socket allowed in total, leased or idle. When it is
+     * reached, the least recently used idle socket is closed to open a new
+     * one to another host.
      * 
      * @param maxTotal the value to set
      * @return this
@@ -602,7 +602,7 @@ public class ProxyClient {
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container()),
                         Strings.urlEncode(url.object())))
                 .body(gson().toJson(new BeansRequest().size(size)))
-                .hosts(hosts)
+                .hosts(hosts).idempotent()
                 .header(ACTION_MODE_HEADER,
                         settings.autocreate() ? OioConstants.AUTOCREATE_ACTION_MODE : null)
                 .withRequestContext(reqCtx).verifier(OBJECT_VERIFIER).execute();
@@ -881,7 +881,7 @@ public class ProxyClient {
         if (clear)
             request.query(FLUSH_PARAM, "1");
         request.verifier(CONTAINER_VERIFIER)
-                .withRequestContext(reqCtx).hosts(hosts).body(root)
+                .withRequestContext(reqCtx).hosts(hosts).idempotent().body(root)
                 .execute().close();
     }
 
@@ -921,7 +921,7 @@ public class ProxyClient {
         OioHttpResponse resp = http
                 .post(format(CONTAINER_GET_PROP, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container())))
-                .hosts(hosts).verifier(CONTAINER_VERIFIER).withRequestContext(reqCtx).execute();
+                .hosts(hosts).idempotent().verifier(CONTAINER_VERIFIER).withRequestContext(reqCtx).execute();
         try {
             Map<String, Map<String, String>> res = JsonUtils.jsonToMapMap(resp.body());
             return res.get("properties");
@@ -969,7 +969,7 @@ public class ProxyClient {
         http.post(
                 format(CONTAINER_DEL_PROP, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container())))
-                .body(gson().toJson(keys)).hosts(hosts).verifier(CONTAINER_VERIFIER)
+                .body(gson().toJson(keys)).hosts(hosts).idempotent().verifier(CONTAINER_VERIFIER)
                 .withRequestContext(reqCtx).execute().close();
     }
 
@@ -1010,7 +1010,7 @@ public class ProxyClient {
         http.post(
                 format(CONTAINER_DEL_PROP, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container())))
-                .body(gson().toJson(keys)).hosts(hosts).verifier(CONTAINER_VERIFIER)
+                .body(gson().toJson(keys)).hosts(hosts).idempotent().verifier(CONTAINER_VERIFIER)
                 .withRequestContext(reqCtx).execute().close();
     }
 
@@ -1093,7 +1093,7 @@ public class ProxyClient {
         if (clear)
             request.query(FLUSH_PARAM, "1");
         request.verifier(OBJECT_VERIFIER)
-                .withRequestContext(reqCtx).hosts(hosts).body(body)
+                .withRequestContext(reqCtx).hosts(hosts).idempotent().body(body)
                 .execute().close();
     }
 
@@ -1137,7 +1137,7 @@ public class ProxyClient {
         OioHttpResponse resp = http
                 .post(format(OBJECT_GET_PROP, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container()),
-                        Strings.urlEncode(url.object()))).hosts(hosts).verifier(OBJECT_VERIFIER)
+                        Strings.urlEncode(url.object()))).hosts(hosts).idempotent().verifier(OBJECT_VERIFIER)
                 .withRequestContext(reqCtx).execute();
         try {
             Map<String, Map<String, String>> rootMap = JsonUtils.jsonToMapMap(resp.body());
@@ -1190,7 +1190,7 @@ public class ProxyClient {
         http.post(
                 format(OBJECT_DEL_PROP, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container()),
-                        Strings.urlEncode(url.object()))).hosts(hosts).body(body)
+                        Strings.urlEncode(url.object()))).hosts(hosts).idempotent().body(body)
                 .verifier(CONTAINER_VERIFIER).withRequestContext(reqCtx).execute().close();
     }
 
@@ -1237,7 +1237,7 @@ public class ProxyClient {
         http.post(
                 format(OBJECT_DEL_PROP, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()), Strings.urlEncode(url.container()),
-                        Strings.urlEncode(url.object()))).hosts(hosts).body(body)
+                        Strings.urlEncode(url.object()))).hosts(hosts).idempotent().body(body)
                 .verifier(CONTAINER_VERIFIER).withRequestContext(reqCtx).execute().close();
     }
 
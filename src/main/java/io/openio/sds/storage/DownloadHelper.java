@@ -1,66 +1,56 @@
 package io.openio.sds.storage;
 
+import static io.openio.sds.common.Check.checkArgument;
 import static io.openio.sds.models.Range.between;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OffsetIndex;
 import io.openio.sds.models.Range;
 
 public class DownloadHelper {
 
+	/**
+	 * Returns the chunk positions to download for a range of an object, in
+	 * order, with the range to download in each of them.
+	 *
+	 * @param oinf
+	 *            the object
+	 * @param range
+	 *            the range of the object, its end excluded, {@code null} for
+	 *            the whole object
+	 * @return the targets
+	 */
 	public static List<Target> loadTargets(ObjectInfo oinf, Range range) {
-
-		LinkedList<Target> targets = new LinkedList<Target>();
-
+		Map<Integer, List<ChunkInfo>> chunks = oinf.sortedChunks();
 		if (null == range) {
-			for (int i = 0; i < oinf.sortedChunks().size(); i++) {
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(i)));
-			}
-		} else {
-			ObjectOffset begin = findOffset(oinf, range.from());
-			ObjectOffset end = findOffset(oinf, range.to());
-			if (end.pos() == begin.pos()) {
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(begin.pos()))
-				        .setRange(between(begin.offset(), end.offset())));
-			} else {
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(begin.pos()))
-				        .setRange(between(begin.offset(),
-				                oinf.chunksize(begin.pos()).intValue()
-				                        - 1)));
-				for (int extrapos = begin.pos() + 1; extrapos < end
-				        .pos(); extrapos++) {
-					targets.addFirst(new Target()
-					        .setChunk(oinf.sortedChunks().get(extrapos))
-					        .setRange(between(0,
-					                oinf.chunksize(extrapos).intValue())));
-				}
-
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(end.pos()))
-				        .setRange(between(0, end.offset())));
-			}
+			List<Target> targets = new ArrayList<Target>(chunks.size());
+			for (int pos = 0; pos < chunks.size(); pos++)
+				targets.add(new Target().setChunk(chunks.get(pos)));
+			return targets;
 		}
-		Collections.reverse(targets);
-		return targets;
-	}
-
-	private static ObjectOffset findOffset(ObjectInfo oinf, long offset) {
-		if (-1 == offset)
-			return new ObjectOffset()
-			        .pos(oinf.nbchunks() - 1)
-			        .offset(oinf.chunksize(oinf.nbchunks() - 1).intValue() - 1);
-		for (int pos = 0; pos < oinf.nbchunks(); pos++) {
-			long size = oinf.chunksize(pos);
-			if (offset <= size)
-				return new ObjectOffset().pos(pos).offset(offset);
-			offset -= size;
+		OffsetIndex index = oinf.offsetIndex();
+		long from = range.from();
+		long to = 0 > range.to() ? index.size() : Math.min(range.to(), index.size());
+		checkArgument(from <= index.size(), "Range begin out of content size");
+		if (from >= to)
+			return new ArrayList<Target>(0);
+		int first = index.positionOf(from);
+		int last = index.positionEnding(to);
+		List<Target> targets = new ArrayList<Target>(last - first + 1);
+		for (int pos = first; pos <= last; pos++) {
+			long start = index.offset(pos);
+			if (0 == index.size(pos))
+				continue;
+			targets.add(new Target()
+			        .setChunk(chunks.get(pos))
+			        .setRange(between(Math.max(from, start) - start,
+			                Math.min(to, index.offset(pos + 1)) - start)));
 		}
-		throw new IllegalArgumentException("Range begin out of content size");
+		return targets;
 	}
 }
@@ -0,0 +1,258 @@
+package io.openio.sds.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.openio.sds.common.FanOut;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.storage.rawx.StreamWrapper;
+
+/**
+ * Uploads the positions of an object, several at a time, so a position
+ * waiting for its slowest chunk does not hold the next ones back.
+ * <p>
+ * A {@link SeekableSource} is read from each position's offset at the same
+ * time, while the calling thread computes the MD5 of the object by reading
+ * it in order. A plain stream is read in order by the calling thread, which
+ * computes the MD5 on the way: each position is read ahead into a buffer
+ * while the previous ones are still being uploaded, the buffers of the
+ * positions in flight sharing a memory budget.
+ */
+public abstract class ParallelUpload {
+
+    private static final SdsLogger logger = SdsLoggerFactory.getLogger(ParallelUpload.class);
+
+    private static final int READ_AHEAD_SLOT_SIZE = 64 * 1024;
+
+    private final long[] sizes;
+    private final long[] offsets;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    /**
+     * @param sizes
+     *            the size of each position
+     * @param parallelism
+     *            the maximum number of positions uploaded at the same time
+     * @param executor
+     *            the threads reading the positions
+     * @param timeoutMillis
+     *            how long an upload waits for data read ahead
+     */
+    protected ParallelUpload(long[] sizes, int parallelism, ExecutorService executor,
+            long timeoutMillis) {
+        this.sizes = sizes;
+        this.offsets = new long[sizes.length];
+        for (int pos = 1; pos < sizes.length; pos++)
+            offsets[pos] = offsets[pos - 1] + sizes[pos - 1];
+        this.parallelism = Math.max(1, parallelism);
+        this.executor = executor;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Upload a position.
+     *
+     * @param pos
+     *            the position
+     * @param data
+     *            the data of the position, at least as long as the position
+     * @throws OioException
+     *             if the position could not be uploaded
+     */
+    protected abstract void upload(int pos, InputStream data);
+
+    /**
+     * Upload the positions from a source read at each position's offset.
+     *
+     * @param source
+     *            the data of the object
+     * @return the MD5 of the object, or {@code null} if not available
+     * @throws OioException
+     *             if a position could not be uploaded
+     */
+    public byte[] run(final SeekableSource source) {
+        final AtomicInteger next = new AtomicInteger(0);
+        final AtomicReference<OioException> failure = new AtomicReference<OioException>();
+        Runnable worker = new Runnable() {
+
+            @Override
+            public void run() {
+                int pos;
+                while (null == failure.get()
+                        && (pos = next.getAndIncrement()) < sizes.length) {
+                    InputStream in = null;
+                    try {
+                        in = source.open(offsets[pos]);
+                        upload(pos, in);
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, new OioException(
+                                "Failed to read the data of pos " + pos, e));
+                    } catch (OioException e) {
+                        failure.compareAndSet(null, e);
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, new OioException(
+                                "Failed to upload chunk at pos " + pos, e));
+                    } finally {
+                        closeQuietly(in);
+                    }
+                }
+            }
+        };
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int i = 0; i < Math.min(parallelism, sizes.length); i++) {
+            try {
+                workers.add(executor.submit(worker));
+            } catch (RejectedExecutionException e) {
+                logger.debug("No thread available for parallel upload");
+                break;
+            }
+        }
+        byte[] md5 = null;
+        try {
+            long size = sizes.length == 0 ? 0 : offsets[sizes.length - 1] + sizes[sizes.length - 1];
+            md5 = source.md5(size);
+        } catch (IOException e) {
+            failure.compareAndSet(null, new OioException("Failed to read the data to upload", e));
+        }
+        // the calling thread uploads too if no other one is available
+        if (workers.isEmpty())
+            worker.run();
+        try {
+            for (Future<?> f : workers)
+                f.get();
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new OioException("Interrupted while uploading object", e));
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, new OioException("Object upload failed", e.getCause()));
+        }
+        if (null != failure.get())
+            throw failure.get();
+        return md5;
+    }
+
+    /**
+     * Upload the positions from a stream read in order.
+     *
+     * @param data
+     *            the data of the object
+     * @param budget
+     *            the number of bytes read ahead for the positions in flight
+     * @return the MD5 of the object, or {@code null} if not available
+     * @throws OioException
+     *             if a position could not be uploaded or the stream could not
+     *             be read
+     */
+    public byte[] run(InputStream data, long budget) {
+        StreamWrapper wrapper = new StreamWrapper(data);
+        int slots = (int) Math.max(2L, Math.min(Integer.MAX_VALUE,
+                budget / parallelism / READ_AHEAD_SLOT_SIZE));
+        ArrayDeque<InFlight> inflight = new ArrayDeque<InFlight>(parallelism);
+        try {
+            for (int pos = 0; pos < sizes.length; pos++) {
+                InFlight p = start(pos, slots);
+                if (null == p) {
+                    upload(pos, wrapper);
+                    continue;
+                }
+                inflight.add(p);
+                try {
+                    p.fanout.feed(wrapper, sizes[pos]);
+                } catch (IOException e) {
+                    throw new OioException("Stream read error", e);
+                }
+                if (inflight.size() >= parallelism)
+                    inflight.poll().join();
+            }
+            while (!inflight.isEmpty())
+                inflight.poll().join();
+        } finally {
+            for (InFlight p : inflight)
+                p.cancel();
+        }
+        return wrapper.md5();
+    }
+
+    /*
+     * Start the upload of a position read ahead, null to upload it from the
+     * calling thread
+     */
+    private InFlight start(final int pos, int slots) {
+        if (0 == sizes[pos])
+            return null;
+        final FanOut fanout = new FanOut(1, slots,
+                (int) Math.min(READ_AHEAD_SLOT_SIZE, sizes[pos]), timeoutMillis);
+        try {
+            Future<?> f = executor.submit(new Runnable() {
+
+                @Override
+                public void run() {
+                    InputStream in = fanout.reader(0);
+                    try {
+                        upload(pos, in);
+                    } finally {
+                        closeQuietly(in);
+                    }
+                }
+            });
+            return new InFlight(pos, fanout, f);
+        } catch (RejectedExecutionException e) {
+            logger.debug("No thread available for parallel upload");
+            return null;
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (null == in)
+            return;
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close upload source", e);
+        }
+    }
+
+    private static class InFlight {
+
+        private final int pos;
+        private final FanOut fanout;
+        private final Future<?> future;
+
+        InFlight(int pos, FanOut fanout, Future<?> future) {
+            this.pos = pos;
+            this.fanout = fanout;
+            this.future = future;
+        }
+
+        void join() {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OioException("Interrupted while uploading object", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof OioException)
+                    throw (OioException) e.getCause();
+                throw new OioException("Failed to upload chunk at pos " + pos, e.getCause());
+            }
+        }
+
+        void cancel() {
+            fanout.abort();
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.openio.sds.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import io.openio.sds.storage.rawx.StreamWrapper;
+
+/**
+ * Data to upload which can be read from any offset, so the positions of an
+ * object are read and uploaded at the same time.
+ */
+public abstract class SeekableSource {
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param file
+     *            the file to upload
+     * @return the source
+     */
+    public static SeekableSource of(final File file) {
+        return new SeekableSource() {
+            @Override
+            public InputStream open(long offset) throws IOException {
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    in.getChannel().position(offset);
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+                return in;
+            }
+        };
+    }
+
+    /**
+     * @param data
+     *            the data to upload
+     * @return the source
+     */
+    public static SeekableSource of(final byte[] data) {
+        return new SeekableSource() {
+            @Override
+            public InputStream open(long offset) {
+                int off = (int) Math.min(offset, data.length);
+                return new ByteArrayInputStream(data, off, data.length - off);
+            }
+        };
+    }
+
+    /**
+     * Read a file with positional reads, which do not change its position
+     * and may run at the same time.
+     *
+     * @param channel
+     *            the file to upload, from its start, not closed
+     * @return the source
+     */
+    public static SeekableSource of(final FileChannel channel) {
+        return new SeekableSource() {
+            @Override
+            public InputStream open(final long offset) {
+                return new InputStream() {
+                    private long position = offset;
+
+                    @Override
+                    public int read() throws IOException {
+                        byte[] b = new byte[1];
+                        int read = read(b, 0, 1);
+                        return -1 == read ? -1 : b[0] & 0xFF;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int read = channel.read(ByteBuffer.wrap(b, off, len), position);
+                        if (0 < read)
+                            position += read;
+                        return read;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @param buffer
+     *            the data to upload, between its position and its limit,
+     *            which are not changed
+     * @return the source
+     */
+    public static SeekableSource of(final ByteBuffer buffer) {
+        return new SeekableSource() {
+            @Override
+            public InputStream open(long offset) {
+                final ByteBuffer b = buffer.duplicate();
+                b.position(b.position() + (int) Math.min(offset, b.remaining()));
+                return new InputStream() {
+                    @Override
+                    public int read() {
+                        return b.hasRemaining() ? b.get() & 0xFF : -1;
+                    }
+
+                    @Override
+                    public int read(byte[] dst, int off, int len) {
+                        if (!b.hasRemaining())
+                            return -1;
+                        int n = Math.min(len, b.remaining());
+                        b.get(dst, off, n);
+                        return n;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Open a stream of the data from an offset.
+     *
+     * @param offset
+     *            the offset in the data
+     * @return the stream, to close
+     * @throws IOException
+     *             if the data cannot be read
+     */
+    public abstract InputStream open(long offset) throws IOException;
+
+    /**
+     * Compute the MD5 of the start of the data, reading it in order.
+     *
+     * @param size
+     *            the number of bytes to hash
+     * @return the MD5, or {@code null} if not available
+     * @throws IOException
+     *             if the data cannot be read or is shorter than {@code size}
+     */
+    public byte[] md5(long size) throws IOException {
+        StreamWrapper in = new StreamWrapper(open(0));
+        try {
+            byte[] buf = new byte[(int) Math.min(HASH_BUFFER_SIZE, Math.max(1L, size))];
+            long done = 0;
+            while (done < size) {
+                int read = in.read(buf, 0, (int) Math.min(buf.length, size - done));
+                if (-1 == read)
+                    throw new EOFException("Unexpected end of stream");
+                done += read;
+            }
+        } finally {
+            in.close();
+        }
+        return in.md5();
+    }
+}
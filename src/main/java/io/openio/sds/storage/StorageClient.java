@@ -25,6 +25,8 @@ public interface StorageClient {
 
     public ObjectInfo uploadChunks(ObjectInfo oinf, byte[] data, RequestContext reqCtx);
 
+    public ObjectInfo uploadChunks(ObjectInfo oinf, SeekableSource data, RequestContext reqCtx);
+
     public InputStream downloadObject(ObjectInfo oinf);
 
     public InputStream downloadObject(ObjectInfo oinf, Range range);
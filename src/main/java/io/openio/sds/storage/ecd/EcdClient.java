@@ -23,6 +23,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import io.openio.sds.RequestContext;
 import io.openio.sds.common.Hex;
@@ -37,6 +42,8 @@ import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.Range;
 import io.openio.sds.storage.DownloadHelper;
+import io.openio.sds.storage.ParallelUpload;
+import io.openio.sds.storage.SeekableSource;
 import io.openio.sds.storage.StorageClient;
 import io.openio.sds.storage.Target;
 import io.openio.sds.storage.rawx.RawxClient;
@@ -45,6 +52,9 @@ import io.openio.sds.storage.rawx.StreamWrapper;
 
 public class EcdClient implements StorageClient {
 
+	private static final int MAX_WORKERS = 100;
+	private static final int IDLE_THREAD_KEEP_ALIVE = 30; // in seconds
+
 	private static final SdsLogger logger = SdsLoggerFactory
 	        .getLogger(RawxClient.class);
 
@@ -52,6 +62,7 @@ public class EcdClient implements StorageClient {
 	private final RawxSettings settings;
 	private final String ecdUrl;
 	private final List<InetSocketAddress> ecdHosts;
+	private ExecutorService uploaders;
 
 	public EcdClient(OioHttp http, RawxSettings settings, List<InetSocketAddress> ecdHosts) {
 		this.http = http;
@@ -69,24 +80,58 @@ public class EcdClient implements StorageClient {
 	@Override
 	public ObjectInfo uploadChunks(ObjectInfo oinf, InputStream data,
 	        RequestContext reqCtx) {
+		if (parallel(oinf)) {
+			byte[] md5 = positions(oinf, reqCtx).run(data,
+			        null == settings.uploadBudget() ? 0L : settings.uploadBudget());
+			return oinf.hash(Hex.toHex(md5));
+		}
 		StreamWrapper wrapper = new StreamWrapper(data);
 		long remaining = oinf.size();
 		for (int pos = 0; pos < oinf.sortedChunks().size(); pos++) {
 			long csize = Math.min(remaining, oinf.metachunksize(pos));
 			if (csize == 0 && pos != 0)
 				throw new OioException("Too many chunks prepared");
-			StreamWrapper chunkwrapper = new StreamWrapper(wrapper);
-			uploadPosition(oinf, pos, csize, chunkwrapper, reqCtx);
-			String hash = Hex.toHex(chunkwrapper.md5());
-			for(ChunkInfo ci : oinf.sortedChunks().get(pos)) {
-				ci.size(csize);
-				ci.hash(hash);
-			}
+			uploadMetachunk(oinf, pos, csize, wrapper, reqCtx);
 			remaining -= csize;
 		}
 		return oinf.hash(Hex.toHex(wrapper.md5()));
 	}
 
+	/**
+	 * Uploads the chunks of the specified {@code ObjectInfo}, reading the
+	 * data of up to {@link RawxSettings#uploadParallelism()} positions at
+	 * the same time
+	 *
+	 * @param oinf
+	 *            the ObjectInfo to deal with
+	 * @param data
+	 *            the data to upload
+	 * @param reqCtx
+	 *            Common parameters to all requests
+	 * @return oinf
+	 */
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, SeekableSource data,
+	        RequestContext reqCtx) {
+		if (parallel(oinf))
+			return oinf.hash(Hex.toHex(positions(oinf, reqCtx).run(data)));
+		InputStream in = null;
+		try {
+			in = data.open(0);
+			return uploadChunks(oinf, in, reqCtx);
+		} catch (IOException e) {
+			throw new OioException("Failed to read the data to upload", e);
+		} finally {
+			if (null != in) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					logger.warn("Fail to close Inputstream, possible leak", e);
+				}
+			}
+		}
+	}
+
 	@Override
 	public ObjectInfo uploadChunks(ObjectInfo oinf, File data) {
 		return uploadChunks(oinf, data, new RequestContext());
@@ -94,6 +139,10 @@ public class EcdClient implements StorageClient {
 
 	@Override
 	public ObjectInfo uploadChunks(ObjectInfo oinf, File data, RequestContext reqCtx) {
+		if (parallel(oinf)) {
+			checkArgument(data.isFile(), "File not found");
+			return uploadChunks(oinf, SeekableSource.of(data), reqCtx);
+		}
 		try {
 			FileInputStream fin = new FileInputStream(data);
 			try {
@@ -118,6 +167,8 @@ public class EcdClient implements StorageClient {
 
 	@Override
 	public ObjectInfo uploadChunks(ObjectInfo oinf, byte[] data, RequestContext reqCtx) {
+		if (parallel(oinf))
+			return uploadChunks(oinf, SeekableSource.of(data), reqCtx);
 		return uploadChunks(oinf, new ByteArrayInputStream(data), reqCtx);
 
 	}
@@ -142,12 +193,81 @@ public class EcdClient implements StorageClient {
     public InputStream downloadObject(ObjectInfo oinf, Range range, RequestContext reqCtx) {
         checkArgument(null != oinf);
         List<Target> targets = DownloadHelper.loadTargets(oinf, range);
-        return new EcdInputStream(ecdUrl, targets, oinf.chunkMethod(), http, reqCtx)
+        EcdInputStream in = new EcdInputStream(ecdUrl, targets, oinf.chunkMethod(), http, reqCtx)
                 .alternativeHosts(ecdHosts);
+        if (null == range) {
+            long[] sizes = new long[targets.size()];
+            for (int pos = 0; pos < sizes.length; pos++)
+                sizes[pos] = oinf.metachunksize(pos);
+            in.targetSizes(sizes);
+        }
+        return in;
     }
 
 	/* --- INTERNALS --- */
 
+	private boolean parallel(ObjectInfo oinf) {
+		return null != settings.uploadParallelism() && 1 < settings.uploadParallelism()
+		        && 1 < oinf.sortedChunks().size();
+	}
+
+	private ParallelUpload positions(final ObjectInfo oinf, final RequestContext reqCtx) {
+		final long[] sizes = new long[oinf.sortedChunks().size()];
+		long remaining = oinf.size();
+		for (int pos = 0; pos < sizes.length; pos++) {
+			sizes[pos] = Math.min(remaining, oinf.metachunksize(pos));
+			if (sizes[pos] == 0 && pos != 0)
+				throw new OioException("Too many chunks prepared");
+			remaining -= sizes[pos];
+		}
+		return new ParallelUpload(sizes, settings.uploadParallelism(), uploaders(),
+		        settings.http().readTimeout()) {
+
+			@Override
+			protected void upload(int pos, InputStream data) {
+				uploadMetachunk(oinf, pos, sizes[pos], data, reqCtx);
+			}
+		};
+	}
+
+	/*
+	 * Upload a position and set the size and the hash of its chunks
+	 */
+	private void uploadMetachunk(ObjectInfo oinf, int pos, long size, InputStream data,
+	        RequestContext reqCtx) {
+		StreamWrapper chunkwrapper = new StreamWrapper(data);
+		uploadPosition(oinf, pos, size, chunkwrapper, reqCtx);
+		String hash = Hex.toHex(chunkwrapper.md5());
+		for (ChunkInfo ci : oinf.sortedChunks().get(pos)) {
+			ci.size(size);
+			ci.hash(hash);
+		}
+	}
+
+	/*
+	 * The threads uploading the positions of an object at the same time,
+	 * only started for the first parallel upload. Nothing else runs on them,
+	 * so a position never waits for a thread held by another one.
+	 */
+	private synchronized ExecutorService uploaders() {
+		if (null == uploaders) {
+			uploaders = new ThreadPoolExecutor(0, MAX_WORKERS,
+			        IDLE_THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+			        new SynchronousQueue<Runnable>(),
+			        new ThreadFactory() {
+
+				        @Override
+				        public Thread newThread(Runnable r) {
+					        Thread t = new Thread(r);
+					        t.setName("EcdClient-Uploader");
+					        t.setDaemon(true);
+					        return t;
+				        }
+			        });
+		}
+		return uploaders;
+	}
+
 	private ObjectInfo uploadPosition(final ObjectInfo oinf,
 	        final int pos, final Long size, InputStream data,
 	        final RequestContext reqCtx) {
@@ -190,7 +310,7 @@ public class EcdClient implements StorageClient {
 		// TODO chunks hash
 
 		builder.execute()
-		        .close(false);
+		        .close();
 		return oinf;
 	}
 }
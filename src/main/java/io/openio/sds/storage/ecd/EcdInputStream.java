@@ -17,6 +17,7 @@ import io.openio.sds.http.OioHttpResponse;
 import io.openio.sds.logging.SdsLogger;
 import io.openio.sds.logging.SdsLoggerFactory;
 import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
 import io.openio.sds.storage.Target;
 
 /**
@@ -29,6 +30,9 @@ public class EcdInputStream extends InputStream {
 
 	private static final SdsLogger logger = SdsLoggerFactory
 	        .getLogger(EcdInputStream.class);
+	// skipping less than this is cheaper by reading than by a new request
+	private static final long SKIP_READ_THRESHOLD = 64 * 1024;
+	private static final int SKIP_BUFFER_SIZE = 8192;
 
 	private OioHttp http;
 	private List<Target> targets;
@@ -39,6 +43,10 @@ public class EcdInputStream extends InputStream {
 	private List<InetSocketAddress> ecdHosts = null;
 	private String chunkMethod;
 	private boolean eof = false;
+	/* bytes read from the current target */
+	private long consumed = 0;
+	private long[] sizes = null;
+	private byte[] skipBuffer;
 
 	public EcdInputStream(String ecdUrl,
 	        List<Target> targets,
@@ -57,6 +65,19 @@ public class EcdInputStream extends InputStream {
 	    return this;
 	}
 
+	/**
+	 * Specifies the decoded size of each target without range, so that
+	 * {@link #skip(long)} does not download the targets skipped entirely.
+	 *
+	 * @param sizes
+	 *            the size of each target, in order
+	 * @return this
+	 */
+	public EcdInputStream targetSizes(long[] sizes) {
+		this.sizes = sizes;
+		return this;
+	}
+
 	@Override
 	public void close() {
 		if (null != current)
@@ -100,12 +121,82 @@ public class EcdInputStream extends InputStream {
 				current = null;
 			} else {
 				totRead += Math.max(0, read);
+				consumed += Math.max(0, read);
 			}
 		}
 		return totRead;
 	}
 
+	/**
+	 * Skip the data without downloading it when the size of the targets is
+	 * known: the current target is requested again from the new offset, and
+	 * the targets skipped entirely are not requested. Small skips are read,
+	 * which is cheaper than a new request.
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && pos <= targets.size()) {
+			long left = n - skipped;
+			if (left > SKIP_READ_THRESHOLD) {
+				if (null != current && !eof) {
+					long size = size(pos - 1);
+					if (0 <= size) {
+						long k = Math.min(left, size - consumed);
+						current.close(false);
+						current = null;
+						if (k < size - consumed) {
+							pos--;
+							next(consumed + k);
+						}
+						skipped += k;
+						continue;
+					}
+				} else if (pos < targets.size()) {
+					long size = size(pos);
+					if (0 <= size) {
+						if (left >= size) {
+							pos++;
+							skipped += size;
+						} else {
+							next(left);
+							skipped += left;
+						}
+						continue;
+					}
+				}
+			}
+			if (null == skipBuffer)
+				skipBuffer = new byte[SKIP_BUFFER_SIZE];
+			int read = read(skipBuffer, 0, (int) Math.min(left, skipBuffer.length));
+			if (-1 == read)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	/*
+	 * The size of a target, -1 if unknown.
+	 */
+	private long size(int index) {
+		Range range = targets.get(index).getRange();
+		if (null != range && 0 <= range.to())
+			return range.to() - range.from();
+		if (null == sizes)
+			return -1;
+		return sizes[index] - (null == range ? 0 : range.from());
+	}
+
 	private void next() {
+		next(0L);
+	}
+
+	/*
+	 * Request the next target, skipping the specified number of bytes of
+	 * its range.
+	 */
+	private void next(long offset) {
 		if (logger.isDebugEnabled())
 			logger.debug("dl from " + ecdUrl);
 
@@ -125,16 +216,24 @@ public class EcdInputStream extends InputStream {
 			builder.header(OioConstants.CHUNK_META_CHUNK_SIZE,
 			        targets.get(pos).getChunk().get(0).size().toString());
 
-			if (null != targets.get(pos).getRange()) {
+			Range range = targets.get(pos).getRange();
+			if (0 < offset) {
+				long from = (null == range ? 0L : range.from()) + offset;
+				range = null == range || 0 > range.to()
+				        ? Range.from(from)
+				        : Range.between(from, range.to());
+			}
+			if (null != range) {
 				if(logger.isTraceEnabled())
-					logger.trace("Setting range : " + targets.get(pos).getRange().headerValue());
+					logger.trace("Setting range : " + range.headerValue());
 				builder.header(OioConstants.RANGE_HEADER,
-				        targets.get(pos).getRange().headerValue());
+				        range.headerValue());
 			}
 
 			current = builder.execute();
 
 			eof = false;
+			consumed = offset;
 			pos++;
 		} catch (OioException e) {
 			logger.warn(String.format(
@@ -0,0 +1,60 @@
+package io.openio.sds.storage.rawx;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used blocks of chunk data, bounded in bytes.
+ * <p>
+ * Chunks are never modified, so a block stays valid as long as its chunk
+ * exists.
+ */
+class BlockCache {
+
+    private final long capacity;
+    private final LinkedHashMap<String, byte[]> blocks =
+            new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * @param capacity
+     *            the maximum number of bytes kept, {@code 0} to keep nothing
+     */
+    BlockCache(long capacity) {
+        this.capacity = Math.max(0L, capacity);
+    }
+
+    /**
+     * @param key
+     *            the identifier of the block
+     * @return the block, or {@code null} if it is not cached
+     */
+    synchronized byte[] get(String key) {
+        return blocks.get(key);
+    }
+
+    /**
+     * Keep a block, evicting the least recently used ones to make room.
+     * Blocks larger than the capacity are not kept.
+     */
+    synchronized void put(String key, byte[] block) {
+        if (block.length > capacity)
+            return;
+        byte[] previous = blocks.put(key, block);
+        size += block.length - (null == previous ? 0 : previous.length);
+        Iterator<Map.Entry<String, byte[]>> it = blocks.entrySet().iterator();
+        while (size > capacity && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            size -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * @return the number of bytes kept
+     */
+    synchronized long size() {
+        return size;
+    }
+}
@@ -0,0 +1,56 @@
+package io.openio.sds.storage.rawx;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.openio.sds.common.LatencyTracker;
+
+/**
+ * When to send a chunk download to another replica, and the threads to do
+ * it with.
+ */
+class HedgePolicy {
+
+    /* answers to observe before deriving the delay from them */
+    static final int MIN_SAMPLES = 20;
+
+    private final ExecutorService executor;
+    private final RawxSettings settings;
+    private final LatencyTracker latencies = new LatencyTracker(1024);
+
+    HedgePolicy(ExecutorService executor, RawxSettings settings) {
+        this.executor = executor;
+        this.settings = settings;
+    }
+
+    boolean enabled() {
+        Integer delay = settings.hedgeDelay();
+        return null != delay && 0 <= delay;
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * @return the time in milliseconds to wait for an answer before asking
+     *         another replica, or -1 to wait for the answer
+     */
+    long delayMillis() {
+        Integer delay = settings.hedgeDelay();
+        if (null == delay || 0 > delay)
+            return -1;
+        if (0 < delay)
+            return delay;
+        if (latencies.count() < MIN_SAMPLES)
+            return -1;
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(latencies.percentile(0.95)));
+    }
+
+    /**
+     * Record the time taken by a rawx to answer a chunk download.
+     */
+    void answered(long nanos) {
+        latencies.record(nanos);
+    }
+}
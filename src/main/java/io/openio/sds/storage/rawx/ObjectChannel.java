@@ -0,0 +1,164 @@
+package io.openio.sds.storage.rawx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Collections;
+import java.util.List;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OffsetIndex;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.Target;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+/**
+ * Read-only {@link SeekableByteChannel} over a replicated object.
+ * <p>
+ * The object is read by blocks aligned in their chunk, each block being
+ * downloaded with a ranged request, from another replica if needed. The
+ * blocks go through a {@link BlockCache}, so reading the same parts again
+ * (e.g. the footer of a file) does not download them again.
+ */
+class ObjectChannel implements SeekableByteChannel {
+
+    private final ObjectInfo oinf;
+    private final OioHttp http;
+    private final HedgePolicy hedging;
+    private final BlockCache cache;
+    private final RequestContext reqCtx;
+    private final int blockSize;
+    private final OffsetIndex index;
+    /* cache key prefix of each chunk */
+    private final String[] keys;
+    private long position = 0;
+    private boolean open = true;
+
+    ObjectChannel(ObjectInfo oinf, OioHttp http, HedgePolicy hedging, BlockCache cache,
+            int blockSize, RequestContext reqCtx) {
+        checkArgument(0 < blockSize, "blockSize must be positive");
+        this.oinf = oinf;
+        this.http = http;
+        this.hedging = hedging;
+        this.cache = cache;
+        this.blockSize = blockSize;
+        this.reqCtx = reqCtx;
+        this.index = oinf.offsetIndex();
+        this.keys = new String[index.count()];
+        for (int pos = 0; pos < keys.length; pos++)
+            keys[pos] = key(oinf.sortedChunks().get(pos));
+    }
+
+    /*
+     * The replicas are listed in any order, the smallest URL identifies the
+     * chunk.
+     */
+    private static String key(List<ChunkInfo> chunks) {
+        String key = chunks.get(0).url();
+        for (ChunkInfo ci : chunks)
+            if (ci.url().compareTo(key) < 0)
+                key = ci.url();
+        return key + "#";
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size())
+            return -1;
+        int read = 0;
+        while (dst.hasRemaining() && position < size()) {
+            int pos = index.positionOf(position);
+            long inChunk = position - index.offset(pos);
+            long k = inChunk / blockSize;
+            byte[] block = block(pos, k);
+            int off = (int) (inChunk - k * blockSize);
+            int n = Math.min(dst.remaining(), block.length - off);
+            dst.put(block, off, n);
+            position += n;
+            read += n;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        checkArgument(0 <= newPosition, "position must not be negative");
+        ensureOpen();
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return index.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+
+    private byte[] block(int pos, long k) throws IOException {
+        String key = keys[pos] + k;
+        byte[] block = cache.get(key);
+        if (null != block)
+            return block;
+        long from = k * blockSize;
+        long to = Math.min(from + blockSize, index.size(pos));
+        block = new byte[(int) (to - from)];
+        Target t = new Target()
+                .setChunk(oinf.sortedChunks().get(pos))
+                .setRange(Range.between(from, to));
+        ObjectInputStream in = new ObjectInputStream(Collections.singletonList(t), http,
+                reqCtx).hedging(hedging);
+        try {
+            int filled = 0;
+            while (filled < block.length) {
+                int n = in.read(block, filled, block.length - filled);
+                if (-1 == n)
+                    throw new IOException("Unexpected end of chunk at pos " + pos);
+                filled += n;
+            }
+        } catch (OioException e) {
+            throw new IOException("Failed to read chunk at pos " + pos, e);
+        } finally {
+            in.close();
+        }
+        cache.put(key, block);
+        return block;
+    }
+}
@@ -9,11 +9,24 @@ import io.openio.sds.http.OioHttpResponse;
 import io.openio.sds.logging.SdsLogger;
 import io.openio.sds.logging.SdsLoggerFactory;
 import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
 import io.openio.sds.storage.Target;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.openio.sds.common.OioConstants.OIO_REQUEST_ID_HEADER;
 import static io.openio.sds.http.Verifiers.RAWX_VERIFIER;
@@ -21,6 +34,18 @@ import static java.lang.String.format;
 
 /**
  * For replicated policies only
+ * <p>
+ * When the connection to a rawx breaks in the middle of a chunk, the
+ * download resumes from another replica, with a {@code Range} header
+ * starting at the first byte not delivered yet.
+ * <p>
+ * The next chunks may be prefetched: their download starts in the
+ * background, and the beginning of their data is buffered, while the
+ * current chunk is read.
+ * <p>
+ * Large chunks may be striped: their range is split into stripes, read
+ * from the replicas in turn, several stripes being downloaded at the same
+ * time by prefetching.
  *
  * @author Christopher Dedeurwaerder
  */
@@ -28,6 +53,9 @@ public class ObjectInputStream extends InputStream {
 
 	private static final SdsLogger logger = SdsLoggerFactory
 			.getLogger(ObjectInputStream.class);
+	// skipping less than this is cheaper by reading than by a new request
+	private static final long SKIP_READ_THRESHOLD = 64 * 1024;
+	private static final int SKIP_BUFFER_SIZE = 8192;
 
 	private OioHttp http;
 	private List<Target> targets;
@@ -35,7 +63,20 @@ public class ObjectInputStream extends InputStream {
 	private long currentRemaining;
 	private ChunkInfo currentChunk;
 	private OioHttpResponse current;
+	private InputStream body;
+	private Target currentTarget;
+	private int currentReplica;
+	private long currentSize;
+	/* consecutive resumes which did not deliver anything */
+	private int failovers = 0;
+	private byte[] skipBuffer;
 	private RequestContext reqCtx;
+	private HedgePolicy hedging = null;
+	private ExecutorService prefetcher = null;
+	private int prefetchDepth = 0;
+	private int prefetchBudget = 0;
+	/* downloads of the targets following the current one, in order */
+	private final ArrayDeque<Prefetch> prefetched = new ArrayDeque<Prefetch>();
 
 	public ObjectInputStream(List<Target> targets, OioHttp http, RequestContext reqCtx) {
 		this.targets = targets;
@@ -47,6 +88,10 @@ public class ObjectInputStream extends InputStream {
 	public void close() {
 		if (null != current)
 			current.close();
+		current = null;
+		Prefetch p;
+		while (null != (p = prefetched.poll()))
+			p.abandon();
 		pos = targets.size() + 1;
 	}
 
@@ -72,25 +117,34 @@ public class ObjectInputStream extends InputStream {
 			if (null == current || 0 >= currentRemaining) {
 				if (pos >= targets.size())
 					return 0 == totRead ? -1 : totRead;
-				next(0);
+				next();
 			}
 
-			int read = current.body().read(buf, offset + totRead,
-					Math.min(remaining(),
-							Math.min(length - totRead,
-									buf.length - offset + totRead)));
+			int read;
+			try {
+				read = body.read(buf, offset + totRead,
+						Math.min(remaining(),
+								Math.min(length - totRead,
+										buf.length - offset + totRead)));
+			} catch (IOException e) {
+				resume(e);
+				continue;
+			}
 
 			if (currentRemaining != 0) {
 				if (-1 == read) {
-					throw new IOException(
+					resume(new EOFException(
 							format(
 									"Error during download, unexpected end of chunk stream (url: %s, read: %d, size: %d)",
 									currentChunk.url(),
-									currentChunk.size() - currentRemaining,
-									currentChunk.size()));
+									currentSize - currentRemaining,
+									currentSize)));
+					continue;
 				}
 
 				currentRemaining -= read;
+				if (0 < read)
+					failovers = 0;
 			}
 			if (0 == currentRemaining) {
 				current.close();
@@ -105,33 +159,590 @@ public class ObjectInputStream extends InputStream {
 		return currentRemaining > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) currentRemaining;
 	}
 
-	private void next(int offset) {
+	/**
+	 * Send the chunk downloads through the specified policy: when a rawx is
+	 * slow to answer, the next replica is asked too.
+	 *
+	 * @param hedging
+	 *            the policy, may be {@code null}
+	 * @return this
+	 */
+	ObjectInputStream hedging(HedgePolicy hedging) {
+		this.hedging = hedging;
+		return this;
+	}
+
+	/**
+	 * Download the next chunks in the background while the current one is
+	 * read.
+	 *
+	 * @param executor
+	 *            the threads to download with
+	 * @param depth
+	 *            the number of chunks to download ahead, {@code 0} to disable
+	 *            prefetching
+	 * @param budget
+	 *            the number of bytes of the prefetched chunks to buffer,
+	 *            shared between them
+	 * @return this
+	 */
+	ObjectInputStream prefetching(ExecutorService executor, int depth, int budget) {
+		this.prefetcher = executor;
+		this.prefetchDepth = Math.max(0, depth);
+		this.prefetchBudget = Math.max(0, budget);
+		return this;
+	}
+
+	/**
+	 * Split the chunks larger than the stripe size into stripes, read from
+	 * the replicas in turn. Must be called after
+	 * {@link #prefetching(ExecutorService, int, int)}, whose depth and budget
+	 * are raised so that a stripe per replica is downloaded at the same time.
+	 *
+	 * @param stripeSize
+	 *            the size of the stripes in bytes
+	 * @return this
+	 */
+	ObjectInputStream striping(int stripeSize) {
+		if (0 >= stripeSize)
+			return this;
+		List<Target> striped = new ArrayList<Target>();
+		int replicas = 1;
+		for (Target t : targets) {
+			List<ChunkInfo> chunks = t.getChunk();
+			long from = null == t.getRange() ? 0L : t.getRange().from();
+			long size = expectedSize(t, chunks.get(0));
+			if (2 > chunks.size() || size <= stripeSize) {
+				striped.add(t);
+				continue;
+			}
+			replicas = Math.max(replicas, chunks.size());
+			for (long off = 0, k = 0; off < size; off += stripeSize, k++) {
+				// each stripe starts on the next replica
+				List<ChunkInfo> rotated = new ArrayList<ChunkInfo>(chunks.size());
+				for (int i = 0; i < chunks.size(); i++)
+					rotated.add(chunks.get((int) ((k + i) % chunks.size())));
+				striped.add(new Target()
+						.setChunk(rotated)
+						.setRange(Range.between(from + off,
+								from + Math.min(off + stripeSize, size))));
+			}
+		}
+		targets = striped;
+		if (null != prefetcher && 1 < replicas) {
+			prefetchDepth = Math.max(prefetchDepth, replicas - 1);
+			prefetchBudget = (int) Math.min(Integer.MAX_VALUE,
+					Math.max(prefetchBudget, (long) prefetchDepth * stripeSize));
+		}
+		return this;
+	}
+
+	/*
+	 * Request a chunk, skipping the bytes of the target range which have
+	 * already been delivered.
+	 */
+	private RequestBuilder request(ChunkInfo chunk, Target t, long delivered) {
+		RequestBuilder builder = http.get(chunk.finalUrl())
+				.verifier(RAWX_VERIFIER)
+				.withRequestContext(this.reqCtx);
+		Range range = t.getRange();
+		if (0 < delivered) {
+			long from = (null == range ? 0L : range.from()) + delivered;
+			range = null == range || 0 > range.to()
+					? Range.from(from)
+					: Range.between(from, range.to());
+		}
+		if (null != range)
+			builder.header(OioConstants.RANGE_HEADER, range.headerValue());
+		return builder;
+	}
+
+	/*
+	 * Download a chunk from the specified offset in the target range. A
+	 * rawx ignoring the range sends the whole chunk, whose bytes before the
+	 * range and the offset are skipped then.
+	 */
+	private OioHttpResponse execute(ChunkInfo chunk, Target t, long delivered) {
+		OioHttpResponse resp = request(chunk, t, delivered).execute();
+		long skip = (null == t.getRange() ? 0L : t.getRange().from()) + delivered;
+		if (0 < skip && 206 != resp.code()) {
+			try {
+				skipFully(resp.body(), skip);
+			} catch (IOException e) {
+				resp.close(false);
+				throw new OioException("Failed to skip " + skip + " bytes of "
+						+ chunk.finalUrl(), e);
+			}
+		}
+		return resp;
+	}
+
+	private void use(OioHttpResponse resp, ChunkInfo chunk, int replica, Target t) {
+		current = resp;
+		body = resp.body();
+		currentChunk = chunk;
+		currentReplica = replica;
+		currentTarget = t;
+		currentSize = expectedSize(t, chunk);
+		currentRemaining = currentSize;
+		failovers = 0;
+		pos++;
+	}
+
+	private static long expectedSize(Target t, ChunkInfo chunk) {
+		return null != t.getRange()
+				? t.getRange().to() - t.getRange().from()
+				: chunk.size();
+	}
+
+	/**
+	 * Replace the broken download of the current chunk by a download of
+	 * its missing part from another replica. The replicas are tried in
+	 * order, starting after the broken one and ending with it.
+	 *
+	 * @param cause
+	 *            the download error
+	 * @throws IOException
+	 *             if no replica could resume the download
+	 */
+	private void resume(IOException cause) throws IOException {
+		current.close(false);
+		current = null;
+		List<ChunkInfo> chunks = currentTarget.getChunk();
+		long delivered = currentSize - currentRemaining;
+		if (++failovers > chunks.size())
+			throw new IOException(format(
+					"Error during download, chunk at pos %d failed %d times without progress",
+					pos - 1, failovers), cause);
+		logger.warn(format("Download of %s broken after %d bytes, resuming",
+				currentChunk.finalUrl(), delivered), cause);
+		if (!reopen(currentReplica + 1, delivered))
+			throw new IOException(format(
+					"Error during download, no replica left to resume chunk at pos %d after %d bytes",
+					pos - 1, delivered), cause);
+	}
+
+	/**
+	 * Download the current chunk from the specified offset, trying each
+	 * replica in turn.
+	 *
+	 * @param first
+	 *            the index of the first replica to try
+	 * @param delivered
+	 *            the offset in the range of the current target
+	 * @return {@code false} if no replica answered
+	 */
+	private boolean reopen(int first, long delivered) {
+		List<ChunkInfo> chunks = currentTarget.getChunk();
+		for (int i = 0; i < chunks.size(); i++) {
+			int replica = (first + i) % chunks.size();
+			ChunkInfo chunk = chunks.get(replica);
+			if (logger.isDebugEnabled())
+				logger.debug("download from " + chunk.finalUrl() + " at " + delivered);
+			try {
+				OioHttpResponse resp = execute(chunk, currentTarget, delivered);
+				current = resp;
+				body = resp.body();
+				currentChunk = chunk;
+				currentReplica = replica;
+				return true;
+			} catch (OioException e) {
+				logger.warn("Error while trying to download from " + chunk.finalUrl(), e);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Skip the data without downloading it when possible: the current chunk
+	 * is requested again from the new offset, and the chunks skipped
+	 * entirely are not requested. Small skips are read, which is cheaper
+	 * than a new request.
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && pos <= targets.size()) {
+			long left = n - skipped;
+			if (left > SKIP_READ_THRESHOLD) {
+				if (null != current && 0 < currentRemaining) {
+					long k = Math.min(left, currentRemaining);
+					current.close(false);
+					current = null;
+					if (k < currentRemaining
+							&& !reopen(currentReplica, currentSize - currentRemaining + k))
+						throw new IOException(format(
+								"Error during download, no replica left to skip in chunk at pos %d",
+								pos - 1));
+					currentRemaining -= k;
+					skipped += k;
+					continue;
+				}
+				if (pos >= targets.size())
+					break;
+				Target t = targets.get(pos);
+				long size = expectedSize(t, t.getChunk().get(0));
+				if (left >= size) {
+					Prefetch p = prefetched.poll();
+					if (null != p)
+						p.abandon();
+					pos++;
+					skipped += size;
+					continue;
+				}
+				if (prefetched.isEmpty()) {
+					Attempt a = open(t, pos, left);
+					use(a.resp, a.chunk, a.replica, t);
+					currentRemaining -= left;
+					skipped += left;
+					prefetch();
+					continue;
+				}
+				// already being downloaded, skip in the prefetched data
+				next();
+				continue;
+			}
+			if (null == skipBuffer)
+				skipBuffer = new byte[SKIP_BUFFER_SIZE];
+			int read = read(skipBuffer, 0, (int) Math.min(left, skipBuffer.length));
+			if (-1 == read)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		byte[] b = new byte[(int) Math.min(8192L, Math.max(1L, n))];
+		while (0 < n) {
+			int read = in.read(b, 0, (int) Math.min(b.length, n));
+			if (-1 == read)
+				throw new EOFException("Unexpected end of chunk stream while skipping");
+			n -= read;
+		}
+	}
+
+	private void next() {
+		Prefetch p = prefetched.poll();
+		if (null != p) {
+			Attempt a = p.await();
+			use(a.resp, a.chunk, a.replica, targets.get(pos));
+			body = p.body();
+		} else {
+			open();
+		}
+		prefetch();
+	}
+
+	private void open() {
+		if (null != hedging && hedging.enabled()) {
+			try {
+				nextHedged();
+				return;
+			} catch (RejectedExecutionException e) {
+				logger.debug("No thread available for hedged read, downloading sequentially");
+			}
+		}
 		Target t = targets.get(pos);
-		currentChunk = t.getChunk().get(offset);
-		if (logger.isDebugEnabled())
-			logger.debug("download from " + currentChunk.finalUrl());
+		Attempt a = open(t, pos, 0L);
+		use(a.resp, a.chunk, a.replica, t);
+	}
+
+	/*
+	 * Download a chunk from its first working replica, skipping the
+	 * specified number of bytes of the target range.
+	 */
+	private Attempt open(Target t, int index, long offset) {
+		List<ChunkInfo> chunks = t.getChunk();
+		for (int replica = 0;; replica++) {
+			ChunkInfo chunk = chunks.get(replica);
+			if (logger.isDebugEnabled())
+				logger.debug("download from " + chunk.finalUrl());
+			try {
+				return new Attempt(chunk, replica, execute(chunk, t, offset));
+			} catch (OioException e) {
+				if (replica + 1 >= chunks.size())
+					throw new OioException(
+							"Definitely failed to download chunk at pos " + index, e);
+				logger.warn("Error while trying to download " + chunk.url(), e);
+			}
+		}
+	}
+
+	/*
+	 * Start the download of the targets following the current one, up to
+	 * the prefetch depth.
+	 */
+	private void prefetch() {
+		if (null == prefetcher || 0 >= prefetchDepth)
+			return;
+		int budget = prefetchBudget / prefetchDepth;
+		for (int i = pos + prefetched.size(); prefetched.size() < prefetchDepth
+				&& i < targets.size(); i++) {
+			Prefetch p = new Prefetch(targets.get(i), i, budget);
+			try {
+				p.future = prefetcher.submit(p);
+			} catch (RejectedExecutionException e) {
+				logger.debug("No thread available for prefetching");
+				return;
+			}
+			prefetched.add(p);
+		}
+	}
+
+	/**
+	 * Download the current chunk from its first replica, also asking the
+	 * next replica when the answer takes longer than the hedge delay, or
+	 * when a download fails. The first answer is used, the other one is
+	 * closed (returning its connection to the pool if its body is small
+	 * enough to be drained).
+	 *
+	 * @throws RejectedExecutionException
+	 *             if the first download could not be started
+	 */
+	private void nextHedged() {
+		final Target t = targets.get(pos);
+		List<ChunkInfo> chunks = t.getChunk();
+		CompletionService<Attempt> cs = new ExecutorCompletionService<Attempt>(
+				hedging.executor());
+		final AtomicBoolean claimed = new AtomicBoolean(false);
+		int next = 0;
+		int inflight = 0;
+		OioException last = null;
+		submit(cs, chunks.get(next), next, t, claimed);
+		next++;
+		inflight++;
+		try {
+			while (0 < inflight) {
+				Future<Attempt> f = null;
+				long delay = hedging.delayMillis();
+				if (1 == inflight && next < chunks.size() && 0 <= delay) {
+					f = cs.poll(delay, TimeUnit.MILLISECONDS);
+					if (null == f) {
+						if (logger.isDebugEnabled())
+							logger.debug("No answer after " + delay + "ms, also downloading from "
+									+ chunks.get(next).finalUrl());
+						if (submitQuietly(cs, chunks.get(next), next, t, claimed)) {
+							next++;
+							inflight++;
+						}
+						continue;
+					}
+				} else {
+					f = cs.take();
+				}
+				inflight--;
+				try {
+					Attempt a = f.get();
+					if (null != a) {
+						use(a.resp, a.chunk, a.replica, t);
+						return;
+					}
+				} catch (ExecutionException e) {
+					last = e.getCause() instanceof OioException
+							? (OioException) e.getCause()
+							: new OioException("Chunk download failed", e.getCause());
+					logger.warn("Error while trying to download chunk at pos " + pos, last);
+					if (next < chunks.size() && submitQuietly(cs, chunks.get(next), next, t, claimed)) {
+						next++;
+						inflight++;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// the downloads still running will close their answer, but one of
+			// them may already have won the race
+			if (!claimed.compareAndSet(false, true))
+				abandon(cs, inflight);
+			throw new OioException("Interrupted while downloading chunk at pos " + pos, e);
+		}
+		throw new OioException("Definitely failed to download chunk at pos " + pos, last);
+	}
+
+	private void submit(CompletionService<Attempt> cs, final ChunkInfo chunk,
+			final int replica, final Target t, final AtomicBoolean claimed) {
+		cs.submit(new Callable<Attempt>() {
+
+			@Override
+			public Attempt call() {
+				if (logger.isDebugEnabled())
+					logger.debug("download from " + chunk.finalUrl());
+				long start = System.nanoTime();
+				OioHttpResponse resp = execute(chunk, t, 0L);
+				hedging.answered(System.nanoTime() - start);
+				if (!claimed.compareAndSet(false, true)) {
+					// another replica answered first
+					resp.close();
+					return null;
+				}
+				return new Attempt(chunk, replica, resp);
+			}
+		});
+	}
+
+	private boolean submitQuietly(CompletionService<Attempt> cs, ChunkInfo chunk, int replica,
+			Target t, AtomicBoolean claimed) {
 		try {
-			RequestBuilder builder = http.get(currentChunk.finalUrl())
-					.verifier(RAWX_VERIFIER)
-					.withRequestContext(this.reqCtx);
-
-			if (null != targets.get(pos).getRange())
-				builder.header(OioConstants.RANGE_HEADER,
-						targets.get(pos).getRange().headerValue());
-
-			current = builder.execute();
-
-			currentRemaining = null != targets.get(pos).getRange()
-					? t.getRange().to() - t.getRange().from()
-					: currentChunk.size().intValue();
-			pos++;
-		} catch (OioException e) {
-			if (offset + 1 >= targets.get(pos).getChunk().size())
-				throw new OioException(
-						"Definitely failed to download chunk at pos " + pos, e);
-			logger.warn("Error while trying to download " + currentChunk.url(),
-					e);
-			next(offset + 1);
+			submit(cs, chunk, replica, t, claimed);
+			return true;
+		} catch (RejectedExecutionException e) {
+			logger.debug("No thread available for hedged read");
+			return false;
+		}
+	}
+
+	/*
+	 * Close the answer which won the race while we were interrupted. Its
+	 * download has claimed it and is about to return it, so wait for it
+	 * among the downloads in flight.
+	 */
+	private void abandon(CompletionService<Attempt> cs, int inflight) {
+		boolean interrupted = false;
+		while (0 < inflight) {
+			Future<Attempt> f;
+			try {
+				f = cs.take();
+			} catch (InterruptedException e) {
+				interrupted = true;
+				continue;
+			}
+			inflight--;
+			try {
+				Attempt a = f.get();
+				if (null != a) {
+					a.resp.close();
+					break;
+				}
+			} catch (Exception e) {
+				// failed download, nothing to close
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Download of a target in the background, buffering the beginning of
+	 * its data.
+	 */
+	private class Prefetch implements Callable<Attempt> {
+
+		private final Target target;
+		private final int index;
+		private final int budget;
+		private Future<Attempt> future;
+		private byte[] buf;
+		private int filled = 0;
+		private IOException failure;
+		/* guarded by this */
+		private boolean abandoned = false;
+		private boolean finished = false;
+		private Attempt attempt;
+
+		Prefetch(Target target, int index, int budget) {
+			this.target = target;
+			this.index = index;
+			this.budget = budget;
+		}
+
+		@Override
+		public Attempt call() {
+			Attempt a = null;
+			try {
+				a = open(target, index, 0L);
+				buf = new byte[(int) Math.max(0L,
+						Math.min(budget, expectedSize(target, a.chunk)))];
+				InputStream in = a.resp.body();
+				while (filled < buf.length && !abandoned()) {
+					int n = in.read(buf, filled, buf.length - filled);
+					if (-1 == n)
+						break;
+					filled += n;
+				}
+			} catch (IOException e) {
+				// reported once the buffered data has been read
+				failure = e;
+			} finally {
+				synchronized (this) {
+					finished = true;
+					attempt = a;
+					if (abandoned && null != a)
+						a.resp.close(false);
+				}
+			}
+			return a;
+		}
+
+		private synchronized boolean abandoned() {
+			return abandoned;
+		}
+
+		/**
+		 * Wait for the download.
+		 */
+		Attempt await() {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				abandon();
+				throw new OioException("Interrupted while downloading chunk at pos " + index, e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof OioException)
+					throw (OioException) e.getCause();
+				throw new OioException("Chunk download failed", e.getCause());
+			}
+		}
+
+		/**
+		 * @return the data of the chunk, the buffered part first
+		 */
+		InputStream body() {
+			final InputStream rest = attempt.resp.body();
+			return new InputStream() {
+				private int read = 0;
+
+				@Override
+				public int read() throws IOException {
+					byte[] b = new byte[1];
+					int n = read(b, 0, 1);
+					return -1 == n ? -1 : b[0] & 0xFF;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					if (read < filled) {
+						int n = Math.min(len, filled - read);
+						System.arraycopy(buf, read, b, off, n);
+						read += n;
+						return n;
+					}
+					if (null != failure)
+						throw failure;
+					return rest.read(b, off, len);
+				}
+			};
+		}
+
+		void abandon() {
+			future.cancel(false);
+			synchronized (this) {
+				abandoned = true;
+				if (finished && null != attempt)
+					attempt.resp.close(false);
+			}
+		}
+	}
+
+	private static class Attempt {
+
+		private final ChunkInfo chunk;
+		private final int replica;
+		private final OioHttpResponse resp;
+
+		Attempt(ChunkInfo chunk, int replica, OioHttpResponse resp) {
+			this.chunk = chunk;
+			this.replica = replica;
+			this.resp = resp;
 		}
 	}
 
@@ -1,7 +1,7 @@
 package io.openio.sds.storage.rawx;
 
 import io.openio.sds.RequestContext;
-import io.openio.sds.common.FeedableInputStream;
+import io.openio.sds.common.FanOut;
 import io.openio.sds.common.Hex;
 import io.openio.sds.common.Strings;
 import io.openio.sds.exceptions.OioException;
@@ -11,22 +11,30 @@ import io.openio.sds.logging.SdsLogger;
 import io.openio.sds.logging.SdsLoggerFactory;
 import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OffsetIndex;
 import io.openio.sds.models.Range;
 import io.openio.sds.storage.DownloadHelper;
+import io.openio.sds.storage.ParallelUpload;
+import io.openio.sds.storage.SeekableSource;
 import io.openio.sds.storage.StorageClient;
 import io.openio.sds.storage.Target;
 
 import java.io.ByteArrayInputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
@@ -34,6 +42,8 @@ import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static io.openio.sds.common.Check.checkArgument;
 import static io.openio.sds.common.IdGen.requestId;
@@ -54,7 +64,6 @@ import static io.openio.sds.common.OioConstants.CHUNK_META_OIO_VERSION;
 import static io.openio.sds.common.OioConstants.OIO_REQUEST_ID_HEADER;
 import static io.openio.sds.http.Verifiers.RAWX_VERIFIER;
 import static java.lang.String.format;
-import static java.nio.ByteBuffer.wrap;
 
 /**
  * @author Christopher Dedeurwaerder
@@ -67,15 +76,33 @@ public class RawxClient implements StorageClient {
 	private static final int MIN_WORKERS = 1;
 	private static final int MAX_WORKERS = 100;
 	private static final int IDLE_THREAD_KEEP_ALIVE = 30; // in seconds
+	private static final int DOWNLOAD_BUFFER_SIZE = 128 * 1024;
+	private static final int FANOUT_SLOTS = 5;
 
 	final OioHttp http;
 	private final ExecutorService executors;
 	private final RawxSettings settings;
+	private final ExecutorService readers;
+	private final ExecutorService uploaders;
+	private final HedgePolicy hedgePolicy;
+	private final BlockCache blockCache;
 
 	public RawxClient(OioHttp http, RawxSettings settings) {
 		this.http = http;
 		this.settings = settings;
-		this.executors = new ThreadPoolExecutor(MIN_WORKERS,
+		this.executors = workers("RawxClient-Worker", false);
+		// not sharing the upload threads, see getActiveUploadCount()
+		this.readers = workers("RawxClient-Reader", true);
+		// positions uploaded in parallel wait for their replica uploads,
+		// which must not compete with them for threads
+		this.uploaders = workers("RawxClient-Uploader", true);
+		this.hedgePolicy = new HedgePolicy(readers, settings);
+		this.blockCache = new BlockCache(
+				null == settings.blockCacheSize() ? 0L : settings.blockCacheSize());
+	}
+
+	private static ExecutorService workers(final String name, final boolean daemon) {
+		return new ThreadPoolExecutor(MIN_WORKERS,
 				MAX_WORKERS,
 				IDLE_THREAD_KEEP_ALIVE,
 				TimeUnit.SECONDS,
@@ -85,7 +112,8 @@ public class RawxClient implements StorageClient {
 					@Override
 					public Thread newThread(Runnable r) {
 						Thread t = new Thread(r);
-						t.setName("RawxClient-Worker");
+						t.setName(name);
+						t.setDaemon(daemon);
 						return t;
 					}
 				});
@@ -124,6 +152,11 @@ public class RawxClient implements StorageClient {
 	 */
 	public ObjectInfo uploadChunks(ObjectInfo oinf,
 								   InputStream data, RequestContext reqCtx) {
+		if (parallel(oinf)) {
+			byte[] md5 = positions(oinf, reqCtx).run(data,
+					null == settings.uploadBudget() ? 0L : settings.uploadBudget());
+			return oinf.hash(Hex.toHex(md5));
+		}
 		StreamWrapper wrapper = new StreamWrapper(data);
 		long remaining = oinf.size();
 		for (int pos = 0; pos < oinf.nbchunks(); pos++) {
@@ -156,7 +189,10 @@ public class RawxClient implements StorageClient {
 	 * @return oinf
 	 */
 	public ObjectInfo uploadChunks(ObjectInfo oinf, File data, RequestContext reqCtx) {
-
+		if (parallel(oinf)) {
+			checkArgument(data.isFile(), "File not found");
+			return uploadChunks(oinf, SeekableSource.of(data), reqCtx);
+		}
 		try {
 			FileInputStream fin = new FileInputStream(data);
 			try {
@@ -179,9 +215,42 @@ public class RawxClient implements StorageClient {
 
 	public ObjectInfo uploadChunks(
 			ObjectInfo oinf, byte[] data, RequestContext reqCtx) {
+		if (parallel(oinf))
+			return uploadChunks(oinf, SeekableSource.of(data), reqCtx);
 		return uploadChunks(oinf, new ByteArrayInputStream(data), reqCtx);
 	}
 
+	/**
+	 * Uploads the chunks of the specified {@code ObjectInfo}, reading the
+	 * data of up to {@link RawxSettings#uploadParallelism()} positions at
+	 * the same time
+	 *
+	 * @param oinf  the ObjectInfo to deal with
+	 * @param data  the data to upload
+	 * @param reqCtx Common parameters to all requests
+	 * @return oinf
+	 */
+	public ObjectInfo uploadChunks(ObjectInfo oinf, SeekableSource data,
+								   RequestContext reqCtx) {
+		if (parallel(oinf))
+			return oinf.hash(Hex.toHex(positions(oinf, reqCtx).run(data)));
+		InputStream in = null;
+		try {
+			in = data.open(0);
+			return uploadChunks(oinf, in, reqCtx);
+		} catch (IOException e) {
+			throw new OioException("Failed to read the data to upload", e);
+		} finally {
+			if (null != in) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					logger.warn("Failed to close Inputstream, possible leak", e);
+				}
+			}
+		}
+	}
+
 	public InputStream downloadObject(ObjectInfo oinf) {
 		return downloadObject(oinf, new RequestContext());
 	}
@@ -197,7 +266,129 @@ public class RawxClient implements StorageClient {
 	public InputStream downloadObject(ObjectInfo oinf, Range range, RequestContext reqCtx) {
 		checkArgument(null != oinf);
 		List<Target> targets = DownloadHelper.loadTargets(oinf, range);
-		return new ObjectInputStream(targets, http, reqCtx);
+		return new ObjectInputStream(targets, http, reqCtx)
+				.hedging(hedgePolicy)
+				.prefetching(readers,
+						null == settings.prefetchDepth() ? 0 : settings.prefetchDepth(),
+						null == settings.prefetchBudget() ? 0 : settings.prefetchBudget())
+				.striping(null == settings.stripeSize() ? 0 : settings.stripeSize());
+	}
+
+	/**
+	 * Open a read-only channel over an object, for random access. The
+	 * object is downloaded by blocks of {@link RawxSettings#blockSize()}
+	 * bytes, cached by this client.
+	 *
+	 * @param oinf
+	 *            the object to read
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return the channel
+	 */
+	public SeekableByteChannel openObject(ObjectInfo oinf, RequestContext reqCtx) {
+		checkArgument(null != oinf);
+		checkArgument(null != settings.blockSize() && 0 < settings.blockSize(),
+				"Invalid block size");
+		return new ObjectChannel(oinf, http, hedgePolicy, blockCache, settings.blockSize(),
+				reqCtx);
+	}
+
+	/**
+	 * Download an object into a file, several chunks at a time. Each chunk
+	 * is written at its offset in the object, so the file must be at least
+	 * as large as the object or growable.
+	 *
+	 * @param oinf
+	 *            the object to download
+	 * @param channel
+	 *            the file to write the object into, not closed
+	 * @param parallelism
+	 *            the maximum number of chunks downloaded at the same time
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @throws OioException
+	 *             if a chunk could not be downloaded or written, or does not
+	 *             have its expected size
+	 */
+	public void downloadObject(ObjectInfo oinf, final FileChannel channel,
+			int parallelism, final RequestContext reqCtx) {
+		checkArgument(null != oinf);
+		checkArgument(null != channel, "channel cannot be null");
+		checkArgument(0 < parallelism, "parallelism must be positive");
+		final List<Target> targets = DownloadHelper.loadTargets(oinf, null);
+		final OffsetIndex index = oinf.offsetIndex();
+		final AtomicInteger next = new AtomicInteger(0);
+		final AtomicReference<OioException> failure = new AtomicReference<OioException>();
+		Runnable worker = new Runnable() {
+
+			@Override
+			public void run() {
+				int pos;
+				while (null == failure.get()
+						&& (pos = next.getAndIncrement()) < targets.size()) {
+					try {
+						downloadTarget(targets.get(pos), pos, index.offset(pos), channel, reqCtx);
+					} catch (OioException e) {
+						failure.compareAndSet(null, e);
+					} catch (RuntimeException e) {
+						failure.compareAndSet(null, new OioException(
+								"Failed to download chunk at pos " + pos, e));
+					}
+				}
+			}
+		};
+		// the calling thread is a worker too
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int i = 1; i < Math.min(parallelism, targets.size()); i++) {
+			try {
+				workers.add(readers.submit(worker));
+			} catch (RejectedExecutionException e) {
+				logger.debug("No thread available for parallel download");
+				break;
+			}
+		}
+		worker.run();
+		try {
+			for (Future<?> f : workers)
+				f.get();
+		} catch (InterruptedException e) {
+			failure.compareAndSet(null,
+					new OioException("Interrupted while downloading object", e));
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			failure.compareAndSet(null,
+					new OioException("Object download failed", e.getCause()));
+		}
+		if (null != failure.get())
+			throw failure.get();
+	}
+
+	private void downloadTarget(Target t, int pos, long offset, FileChannel channel,
+			RequestContext reqCtx) {
+		long size = t.getChunk().get(0).size();
+		ObjectInputStream in = new ObjectInputStream(Collections.singletonList(t), http,
+				reqCtx).hedging(hedgePolicy);
+		ByteBuffer buf = ByteBuffer.allocate(DOWNLOAD_BUFFER_SIZE);
+		long written = 0;
+		try {
+			int read;
+			while (-1 != (read = in.read(buf.array(), 0, buf.capacity()))) {
+				buf.limit(read);
+				while (buf.hasRemaining())
+					written += channel.write(buf, offset + written);
+				buf.clear();
+			}
+		} catch (IOException e) {
+			throw new OioException("Failed to download chunk at pos " + pos, e);
+		} catch (OioException e) {
+			// the stream only knows the position among its own targets
+			throw new OioException("Failed to download chunk at pos " + pos, e);
+		} finally {
+			in.close();
+		}
+		if (written != size)
+			throw new OioException(format("Chunk at pos %d: %d bytes downloaded, %d expected",
+					pos, written, size));
 	}
 
 	public void deleteChunks(List<ChunkInfo> l) {
@@ -209,6 +400,7 @@ public class RawxClient implements StorageClient {
 		// no verifier, suppress exceptions
 		try {
 			http.delete(ci.finalUrl())
+					.idempotent()
 					.execute()
 					.close();
 		} catch (OioException e) {
@@ -219,14 +411,66 @@ public class RawxClient implements StorageClient {
 
 	/* --- INTERNALS --- */
 
+	private boolean parallel(ObjectInfo oinf) {
+		return null != settings.uploadParallelism() && 1 < settings.uploadParallelism()
+				&& 1 < oinf.nbchunks();
+	}
+
+	private ParallelUpload positions(final ObjectInfo oinf, final RequestContext reqCtx) {
+		final long[] sizes = positionSizes(oinf);
+		return new ParallelUpload(sizes, settings.uploadParallelism(), uploaders,
+				settings.http().readTimeout()) {
+
+			@Override
+			protected void upload(int pos, InputStream data) {
+				uploadPosition(oinf, pos, sizes[pos], data, reqCtx);
+			}
+		};
+	}
+
+	private static long[] positionSizes(ObjectInfo oinf) {
+		long[] sizes = new long[oinf.nbchunks()];
+		long remaining = oinf.size();
+		for (int pos = 0; pos < sizes.length; pos++) {
+			sizes[pos] = Math.min(remaining, oinf.chunksize(pos));
+			if (sizes[pos] == 0 && pos != 0)
+				throw new OioException("Too many chunks prepared");
+			remaining -= sizes[pos];
+		}
+		return sizes;
+	}
+
 	private ObjectInfo uploadPosition(final ObjectInfo oinf, final int pos, final Long size,
 									  InputStream data, final RequestContext reqCtx) {
 		List<ChunkInfo> cil = oinf.sortedChunks().get(pos);
-		final List<FeedableInputStream> gens = size == 0 ? null : feedableBodies(cil.size(), size);
+		final FanOut fanout = size == 0 ? null : fanout(cil.size(), size);
+		CompletionService<UploadResult> uploads =
+				new ExecutorCompletionService<UploadResult>(executors);
 		List<Future<UploadResult>> futures = new ArrayList<Future<UploadResult>>();
+		// built here to be aborted from this thread, see abandon()
+		final List<RequestBuilder> requests = new ArrayList<RequestBuilder>();
 		for (int i = 0; i < cil.size(); i++) {
 			final ChunkInfo ci = cil.get(i);
-			final FeedableInputStream in = null == gens ? null : gens.get(i);
+			final InputStream in = null == fanout ? null : fanout.reader(i);
+			final RequestBuilder builder = http
+					.put(ci.finalUrl())
+					.header(CHUNK_META_CONTAINER_ID, oinf.url().cid())
+					.header(CHUNK_META_CONTENT_ID, oinf.oid())
+					.header(CHUNK_META_CONTENT_VERSION, String.valueOf(oinf.version()))
+					.header(CHUNK_META_CONTENT_POLICY, oinf.policy())
+					.header(CHUNK_META_CONTENT_MIME_TYPE, oinf.mtype())
+					.header(CHUNK_META_CONTENT_CHUNK_METHOD, oinf.chunkMethod())
+					.header(CHUNK_META_CONTENT_CHUNKSNB,
+							String.valueOf(oinf.nbchunks()))
+					.header(CHUNK_META_CONTENT_SIZE, String.valueOf(oinf.size()))
+					.header(CHUNK_META_CONTENT_PATH, Strings.quote(oinf.url().object()))
+					.header(CHUNK_META_CHUNK_ID, ci.id())
+					.header(CHUNK_META_CHUNK_POS, ci.pos().toString())
+					.header(CHUNK_META_FULL_PATH, oinf.fullpath())
+					.header(CHUNK_META_OIO_VERSION, "4")
+					.verifier(RAWX_VERIFIER)
+					.withRequestContext(reqCtx);
+			requests.add(builder);
 
 			Callable<UploadResult> uploader = new Callable<UploadResult>() {
 
@@ -234,32 +478,23 @@ public class RawxClient implements StorageClient {
 				public UploadResult call() {
 					UploadResult result = new UploadResult(ci);
 					try {
-						RequestBuilder builder = http
-								.put(ci.finalUrl())
-								.header(CHUNK_META_CONTAINER_ID, oinf.url().cid())
-								.header(CHUNK_META_CONTENT_ID, oinf.oid())
-								.header(CHUNK_META_CONTENT_VERSION, String.valueOf(oinf.version()))
-								.header(CHUNK_META_CONTENT_POLICY, oinf.policy())
-								.header(CHUNK_META_CONTENT_MIME_TYPE, oinf.mtype())
-								.header(CHUNK_META_CONTENT_CHUNK_METHOD, oinf.chunkMethod())
-								.header(CHUNK_META_CONTENT_CHUNKSNB,
-										String.valueOf(oinf.nbchunks()))
-								.header(CHUNK_META_CONTENT_SIZE, String.valueOf(oinf.size()))
-								.header(CHUNK_META_CONTENT_PATH, Strings.quote(oinf.url().object()))
-								.header(CHUNK_META_CHUNK_ID, ci.id())
-								.header(CHUNK_META_CHUNK_POS, ci.pos().toString())
-								.header(CHUNK_META_FULL_PATH, oinf.fullpath())
-								.header(CHUNK_META_OIO_VERSION, "4")
-								.verifier(RAWX_VERIFIER)
-								.withRequestContext(reqCtx);
-						if (null == gens)
+						if (null == fanout)
 							builder.body("");
 						else
 							builder.body(in, size);
-						ci.size(size);
-						ci.hash(builder.execute().close(false).header(CHUNK_META_CHUNK_HASH));
+						// the chunk itself is only updated once the upload is kept
+						result.hash(builder.execute().close().header(CHUNK_META_CHUNK_HASH));
 					} catch (OioException e) {
 						result.exception(e);
+					} finally {
+						// the body may not have been read, e.g. if the rawx refused it
+						if (null != in) {
+							try {
+								in.close();
+							} catch (IOException e) {
+								logger.warn(e);
+							}
+						}
 					}
 					return result;
 				}
@@ -268,7 +503,7 @@ public class RawxClient implements StorageClient {
 			try {
 				while (true) {
 					try {
-						Future<UploadResult> upload = executors.submit(uploader);
+						Future<UploadResult> upload = uploads.submit(uploader);
 						futures.add(upload);
 						break;
 					} catch (RejectedExecutionException ree) {
@@ -288,25 +523,57 @@ public class RawxClient implements StorageClient {
 					}
 				}
 			} catch (RuntimeException e) {
-				try {
-					in.close();
-				} catch (IOException e1) {
-					logger.warn(e1);
-				}
+				if (null != fanout)
+					fanout.abort();
 				throw e;
 			}
 		}
-		consume(data, size, gens, futures);
+		if (null != fanout)
+			consume(data, size, fanout, futures);
 
 		try {
 			ArrayList<UploadResult> successes = new ArrayList<UploadResult>();
-			for (Future<UploadResult> f : futures) {
+			boolean[] done = new boolean[futures.size()];
+			int quorum = quorum(cil.size());
+			long timeout = null == settings.stragglerTimeout() ? -1L
+					: TimeUnit.MILLISECONDS.toNanos(settings.stragglerTimeout());
+			// once the quorum is written, the other replicas get a deadline
+			boolean quorumReached = false;
+			long deadline = 0L;
+			for (int answers = 0; answers < futures.size(); answers++) {
+				Future<UploadResult> f;
+				if (!quorumReached) {
+					f = uploads.take();
+				} else {
+					f = uploads.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+					if (null == f)
+						break;
+				}
+				int i = futures.indexOf(f);
+				done[i] = true;
 				UploadResult result = f.get();
 
 				if (null != result.exception()) {
-					logger.warn(format("Failed to upload chunk %s", result.chunkInfo()), result.exception());
+					if (null != fanout && fanout.shed(i))
+						logger.warn(format("Chunk %s abandoned, too far behind the other replicas",
+								result.chunkInfo()), result.exception());
+					else
+						logger.warn(format("Failed to upload chunk %s", result.chunkInfo()), result.exception());
 				} else {
+					result.chunkInfo().size(size).hash(result.hash());
 					successes.add(result);
+					if (settings.quorumWrite() && 0 <= timeout && !quorumReached
+							&& successes.size() >= quorum) {
+						quorumReached = true;
+						deadline = System.nanoTime() + timeout;
+					}
+				}
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				if (!done[i]) {
+					abandon(i, fanout, requests.get(i), futures.get(i));
+					logger.warn(format("Chunk %s abandoned, not written %s ms after the quorum",
+							cil.get(i), settings.stragglerTimeout()));
 				}
 			}
 			if (!settings.quorumWrite()) {
@@ -314,7 +581,6 @@ public class RawxClient implements StorageClient {
 					throw new OioException(format("Failed to write chunks at position %s", pos));
 				}
 			} else {
-				int quorum = (cil.size() + 1) / 2;
 				if (successes.size() < quorum) {
 					throw new OioException(format("Quorum not reached write chunks at position %s", pos));
 				}
@@ -327,51 +593,55 @@ public class RawxClient implements StorageClient {
 		return oinf;
 	}
 
-	private void consume(InputStream data, Long size,
-						 List<FeedableInputStream> gens,
+	/*
+	 * Stop the upload of a replica still running after the quorum: its
+	 * reader fails, and its connection is closed in case it is blocked
+	 * writing to a slow rawx, which an interruption does not stop.
+	 */
+	private static void abandon(int i, FanOut fanout, RequestBuilder request,
+			Future<UploadResult> upload) {
+		if (null != fanout)
+			fanout.abandon(i);
+		request.abort();
+		upload.cancel(true);
+	}
+
+	private void consume(InputStream data, Long size, FanOut fanout,
 						 List<Future<UploadResult>> futures) {
-		int done = 0;
-		while (done < size) {
-			byte[] b = new byte[Math.min(size.intValue() - done,
-					settings.http().receiveBufferSize())];
-			try {
-				done += fill(b, data);
-				for (FeedableInputStream in : gens) {
-					in.feed(wrap(b), done >= size);
-				}
-			} catch (IOException e) {
-				// Cancel the tasks
-				int notTerminated = 0;
-				for (Future<UploadResult> f : futures) {
-					if (!f.isDone())
-						notTerminated++;
-					f.cancel(true);
-				}
-				String message = "Stream read error";
-				if (notTerminated > 0)
-					message += " (" + notTerminated + " upload jobs cancelled)";
-				throw new OioException(message, e);
+		try {
+			fanout.feed(data, size);
+		} catch (IOException e) {
+			fanout.abort();
+			// Cancel the tasks
+			int notTerminated = 0;
+			for (Future<UploadResult> f : futures) {
+				if (!f.isDone())
+					notTerminated++;
+				f.cancel(true);
 			}
+			String message = "Stream read error";
+			if (notTerminated > 0)
+				message += " (" + notTerminated + " upload jobs cancelled)";
+			throw new OioException(message, e);
 		}
 	}
 
-	private int fill(byte[] b, InputStream data) throws IOException {
-		int done = 0;
-		int read = 0;
-		while (done < b.length) {
-			read = data.read(b, done, b.length - done);
-			if (-1 == read)
-				throw new EOFException("Unexpected end of stream");
-			done += read;
-		}
-		return done;
+	/*
+	 * The buffers shared by the uploads of the replicas of a position. When
+	 * writing with a quorum, they hold up to the straggler lag, and the
+	 * replicas falling further behind are shed.
+	 */
+	private FanOut fanout(int count, long size) {
+		int slotSize = (int) Math.min(size, settings.http().receiveBufferSize());
+		Long lag = settings.stragglerLag();
+		if (!settings.quorumWrite() || null == lag || 0 >= lag)
+			return new FanOut(count, FANOUT_SLOTS, slotSize, settings.http().readTimeout());
+		int slots = (int) Math.max(FANOUT_SLOTS, Math.min(Integer.MAX_VALUE, lag / slotSize));
+		return new FanOut(count, slots, slotSize, settings.http().readTimeout())
+				.quorum(quorum(count));
 	}
 
-	private List<FeedableInputStream> feedableBodies(int count,
-													 long size) {
-		ArrayList<FeedableInputStream> res = new ArrayList<FeedableInputStream>();
-		for (int i = 0; i < count; i++)
-			res.add(new FeedableInputStream(5, settings.http().readTimeout() / 5, 5));
-		return res;
+	private static int quorum(int replicas) {
+		return (replicas + 1) / 2;
 	}
 }
@@ -1,15 +1,28 @@
 package io.openio.sds.storage.rawx;
 
 import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.pool.PoolingSettings;
 
 /**
  * @author Christopher Dedeurwaerder
  */
 public class RawxSettings {
 
-	private OioHttpSettings http = new OioHttpSettings();
+	// chunk data is rarely worth compressing on the fly
+	private OioHttpSettings http = new OioHttpSettings().compression(false);
+	private PoolingSettings pooling = new PoolingSettings();
 
 	private boolean quorumWrite = false;
+	private Integer hedgeDelay = -1;
+	private Integer prefetchDepth = 0;
+	private Integer prefetchBudget = 8 * 1024 * 1024;
+	private Integer stripeSize = 0;
+	private Integer blockSize = 1024 * 1024;
+	private Long blockCacheSize = 32L * 1024 * 1024;
+	private Integer uploadParallelism = 1;
+	private Long uploadBudget = 64L * 1024 * 1024;
+	private Long stragglerLag = 4L * 1024 * 1024;
+	private Integer stragglerTimeout = 5000;
 
 	public RawxSettings() {
 	}
@@ -23,6 +36,15 @@ public class RawxSettings {
 		return this;
 	}
 
+	public PoolingSettings pooling() {
+		return pooling;
+	}
+
+	public RawxSettings pooling(PoolingSettings pooling) {
+		this.pooling = pooling;
+		return this;
+	}
+
 	public RawxSettings quorumWrite(boolean quorum) {
 		this.quorumWrite = quorum;
 		return this;
@@ -31,4 +53,252 @@ public class RawxSettings {
 	public boolean quorumWrite() {
 		return quorumWrite;
 	}
-}
\ No newline at end of file
+	/**
+	 * Returns the delay in milliseconds after which a chunk download is
+	 * also requested from the next replica
+	 *
+	 * @return the hedge delay in milliseconds
+	 */
+	public Integer hedgeDelay() {
+		return hedgeDelay;
+	}
+
+	/**
+	 * Specifies the delay in milliseconds after which, if the rawx serving a
+	 * chunk has not answered yet, the same request is sent to the next
+	 * replica, the first answer being used. {@code 0} derives the delay from
+	 * the 95th percentile of the observed answer times, a negative value
+	 * disables hedged reads.
+	 *
+	 * @param hedgeDelay
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings hedgeDelay(Integer hedgeDelay) {
+		this.hedgeDelay = hedgeDelay;
+		return this;
+	}
+
+	/**
+	 * Returns the number of chunks downloaded in the background while
+	 * reading an object
+	 *
+	 * @return the prefetch depth
+	 */
+	public Integer prefetchDepth() {
+		return prefetchDepth;
+	}
+
+	/**
+	 * Specifies the number of chunks following the one being read whose
+	 * download is started in the background, so there is no wait for the
+	 * rawx to answer at the chunk boundaries. Each prefetched chunk takes a
+	 * thread and a connection to its rawx. {@code 0}, the default, disables
+	 * prefetching.
+	 *
+	 * @param prefetchDepth
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings prefetchDepth(Integer prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes of prefetched chunks buffered for each
+	 * object being read
+	 *
+	 * @return the prefetch budget in bytes
+	 */
+	public Integer prefetchBudget() {
+		return prefetchBudget;
+	}
+
+	/**
+	 * Specifies the number of bytes of the prefetched chunks buffered for
+	 * each object being read, shared between the prefetched chunks. The rest
+	 * of their data is read from the connection when needed.
+	 *
+	 * @param prefetchBudget
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings prefetchBudget(Integer prefetchBudget) {
+		this.prefetchBudget = prefetchBudget;
+		return this;
+	}
+
+	/**
+	 * Returns the size of the stripes large chunks are read by
+	 *
+	 * @return the stripe size in bytes
+	 */
+	public Integer stripeSize() {
+		return stripeSize;
+	}
+
+	/**
+	 * Specifies the size of the stripes the replicated chunks larger than it
+	 * are split into. The stripes are read from the replicas in turn, one
+	 * per replica at the same time, so a chunk is read faster than a single
+	 * rawx can send it. This buffers up to a stripe per replica for each
+	 * object being read. {@code 0} disables striping.
+	 *
+	 * @param stripeSize
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings stripeSize(Integer stripeSize) {
+		this.stripeSize = stripeSize;
+		return this;
+	}
+
+	/**
+	 * Returns the size of the blocks object channels read by
+	 *
+	 * @return the block size in bytes
+	 */
+	public Integer blockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Specifies the size of the blocks the channels opened by
+	 * {@link RawxClient#openObject(io.openio.sds.models.ObjectInfo, io.openio.sds.RequestContext)}
+	 * download and cache. Blocks are aligned in their chunk.
+	 *
+	 * @param blockSize
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings blockSize(Integer blockSize) {
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * Returns the maximum number of bytes of the block cache
+	 *
+	 * @return the block cache size in bytes
+	 */
+	public Long blockCacheSize() {
+		return blockCacheSize;
+	}
+
+	/**
+	 * Specifies the maximum number of bytes of the blocks kept by a client
+	 * for its object channels, the least recently used blocks being evicted
+	 * first. {@code 0} disables the cache.
+	 *
+	 * @param blockCacheSize
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings blockCacheSize(Long blockCacheSize) {
+		this.blockCacheSize = blockCacheSize;
+		return this;
+	}
+
+	/**
+	 * Returns the number of positions of an object uploaded at the same time
+	 *
+	 * @return the upload parallelism
+	 */
+	public Integer uploadParallelism() {
+		return uploadParallelism;
+	}
+
+	/**
+	 * Specifies the number of positions of an object uploaded at the same
+	 * time, so a position waiting for its slowest chunk does not delay the
+	 * next ones. Files and arrays are read at each position's offset, other
+	 * streams are read ahead within {@link #uploadBudget()}. {@code 1}
+	 * uploads the positions one after the other.
+	 *
+	 * @param uploadParallelism
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings uploadParallelism(Integer uploadParallelism) {
+		this.uploadParallelism = uploadParallelism;
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes read ahead from a stream for each object
+	 * being uploaded by several positions at a time
+	 *
+	 * @return the upload budget in bytes
+	 */
+	public Long uploadBudget() {
+		return uploadBudget;
+	}
+
+	/**
+	 * Specifies the number of bytes of a stream read ahead for each object
+	 * uploaded by several positions at a time, shared between the positions
+	 * in flight. A position is read from the stream as fast as its slowest
+	 * chunk is uploaded once its part of the budget is full.
+	 *
+	 * @param uploadBudget
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings uploadBudget(Long uploadBudget) {
+		this.uploadBudget = uploadBudget;
+		return this;
+	}
+
+	/**
+	 * Returns the number of bytes a replica may fall behind the others
+	 * before being abandoned, when writing with a quorum
+	 *
+	 * @return the straggler lag in bytes
+	 */
+	public Long stragglerLag() {
+		return stragglerLag;
+	}
+
+	/**
+	 * Specifies the number of bytes a replica may fall behind the others
+	 * before being abandoned, when writing with a quorum (see
+	 * {@link #quorumWrite(boolean)}). The data of a chunk is buffered for
+	 * its replicas up to this lag; once a replica is further behind, and a
+	 * quorum of replicas is ahead of it, its upload fails so it no longer
+	 * slows the others down. {@code 0} or less waits for all the replicas.
+	 *
+	 * @param stragglerLag
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings stragglerLag(Long stragglerLag) {
+		this.stragglerLag = stragglerLag;
+		return this;
+	}
+
+	/**
+	 * Returns how long the other replicas of a chunk are waited for once a
+	 * quorum of them is written
+	 *
+	 * @return the straggler timeout in milliseconds
+	 */
+	public Integer stragglerTimeout() {
+		return stragglerTimeout;
+	}
+
+	/**
+	 * Specifies how long, in milliseconds, the other replicas of a chunk are
+	 * waited for once a quorum of them is written, when writing with a
+	 * quorum (see {@link #quorumWrite(boolean)}). The replicas still running
+	 * afterwards are abandoned. A negative value waits for all the replicas.
+	 *
+	 * @param stragglerTimeout
+	 *            the value to set
+	 * @return this
+	 */
+	public RawxSettings stragglerTimeout(Integer stragglerTimeout) {
+		this.stragglerTimeout = stragglerTimeout;
+		return this;
+	}
+}
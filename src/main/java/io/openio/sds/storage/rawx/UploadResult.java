@@ -6,6 +6,7 @@ import io.openio.sds.models.ChunkInfo;
 public class UploadResult {
 	ChunkInfo chunkInfo;
 	OioException exception;
+	String hash;
 
 	public UploadResult(ChunkInfo ci) {
 		chunkInfo = ci;
@@ -22,4 +23,17 @@ public class UploadResult {
 	public OioException exception() {
 		return exception;
 	}
+
+	/**
+	 * @param hash
+	 *            the hash of the chunk computed by the rawx, to set on the
+	 *            chunk once the upload is known to be kept
+	 */
+	public void hash(String hash) {
+		this.hash = hash;
+	}
+
+	public String hash() {
+		return hash;
+	}
 }
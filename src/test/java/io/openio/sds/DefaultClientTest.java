@@ -0,0 +1,72 @@
+package io.openio.sds;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+
+public class DefaultClientTest {
+
+    private static final byte[] DATA = "0123456789".getBytes();
+
+    private File file;
+
+    private RespondingSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) {
+            byte[] head = ("HTTP/1.1 200 OK\r\nContent-Length: " + DATA.length + "\r\n\r\n")
+                    .getBytes();
+            byte[] resp = Arrays.copyOf(head, head.length + DATA.length);
+            System.arraycopy(DATA, 0, resp, head.length, DATA.length);
+            return new ByteArrayInputStream(resp);
+        }
+    });
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("oio-download", ".bin");
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    @Test
+    public void downloadTruncatesTheChannel() throws IOException {
+        Files.write(file.toPath(), new byte[3 * DATA.length]);
+        ObjectInfo oinf = new ObjectInfo().size((long) DATA.length)
+                .chunks(Arrays.asList(new ChunkInfo().pos(Position.simple(0))
+                        .size((long) DATA.length).url("http://127.0.0.1:6001/0")))
+                .withRequestContext(new RequestContext());
+        RawxClient rawx = new RawxClient(OioHttp.http(new OioHttpSettings(), provider),
+                new RawxSettings());
+        DefaultClient client = new DefaultClient(null, rawx);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            client.downloadObject(oinf, channel, 2);
+        }
+        assertArrayEquals(DATA, Files.readAllBytes(file.toPath()));
+    }
+}
@@ -0,0 +1,204 @@
+package io.openio.sds;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.models.Range;
+
+/**
+ * Fake server answering each connection from the request written on it.
+ * <p>
+ * The request is captured until the client reads the connection, then
+ * handed to a {@link Responder} which builds the response. Connections are
+ * not reused.
+ */
+public class RespondingSocketProvider extends AbstractSocketProvider {
+
+    public interface Responder {
+
+        /**
+         * @param addr
+         *            the address the request was sent to
+         * @param request
+         *            the bytes written on the connection so far
+         * @return the response to read
+         * @throws IOException
+         *             to fail the read of the response
+         */
+        InputStream respond(InetSocketAddress addr, byte[] request) throws IOException;
+    }
+
+    private static final Pattern RANGE = Pattern.compile("Range: bytes=(\\d+-\\d*)\r\n");
+
+    private final Responder responder;
+
+    public RespondingSocketProvider(Responder responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * A response which breaks the connection after {@code n} bytes.
+     *
+     * @param response
+     *            the whole response
+     * @param n
+     *            the number of bytes sent before the connection breaks
+     * @return the response stream
+     */
+    public static InputStream brokenAfter(byte[] response, final int n) {
+        final InputStream in = new ByteArrayInputStream(response);
+        return new InputStream() {
+            private int left = n;
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (0 == left)
+                    throw new IOException("Connection reset");
+                int read = in.read(b, off, Math.min(len, left));
+                if (0 < read)
+                    left -= read;
+                return read;
+            }
+        };
+    }
+
+    /**
+     * The Range header of a request.
+     *
+     * @param request
+     *            the request
+     * @return the range asked, or {@code null} if the request has none
+     */
+    public static Range range(byte[] request) {
+        Matcher m = RANGE.matcher(new String(request, StandardCharsets.US_ASCII));
+        return m.find() ? Range.parse(m.group(1)) : null;
+    }
+
+    /**
+     * A rawx response serving a chunk, or the part of it asked by the Range
+     * header of the request.
+     *
+     * @param request
+     *            the request
+     * @param chunk
+     *            the whole chunk
+     * @return the response stream
+     */
+    public static InputStream chunk(byte[] request, byte[] chunk) {
+        return chunk(range(request), chunk, -1);
+    }
+
+    /**
+     * A rawx response serving a range of a chunk.
+     *
+     * @param range
+     *            the range to serve, {@code null} for the whole chunk
+     * @param chunk
+     *            the whole chunk
+     * @param breakAfter
+     *            the number of body bytes sent before the connection breaks,
+     *            {@code -1} to send them all
+     * @return the response stream
+     */
+    public static InputStream chunk(Range range, byte[] chunk, int breakAfter) {
+        int from = 0;
+        int to = chunk.length - 1;
+        if (null != range) {
+            from = (int) range.from();
+            if (0 <= range.to())
+                to = (int) Math.min(to, range.to());
+        }
+        byte[] head = ((null == range ? "HTTP/1.1 200 OK\r\n"
+                : "HTTP/1.1 206 Partial Content\r\n")
+                + "Content-Length: " + (to - from + 1) + "\r\n\r\n").getBytes();
+        byte[] resp = Arrays.copyOf(head, head.length + to - from + 1);
+        System.arraycopy(chunk, from, resp, head.length, to - from + 1);
+        return 0 <= breakAfter ? brokenAfter(resp, head.length + breakAfter)
+                : new ByteArrayInputStream(resp);
+    }
+
+    /**
+     * Returns the stream the client writes the request to, closed with the
+     * socket. Override it to look at the request while it is written, or to
+     * slow the writes down.
+     *
+     * @param addr
+     *            the address the request is sent to
+     * @param request
+     *            the stream to copy what the responder should see to
+     * @return the stream the client writes to
+     */
+    protected OutputStream output(InetSocketAddress addr, ByteArrayOutputStream request) {
+        return request;
+    }
+
+    @Override
+    public Socket getSocket(String host, int port) {
+        return getSocket(new InetSocketAddress(host, port));
+    }
+
+    @Override
+    public Socket getSocket(final InetSocketAddress addr) {
+        final ByteArrayOutputStream req = new ByteArrayOutputStream();
+        InputStream in = new InputStream() {
+            private InputStream resp;
+
+            @Override
+            public int read() throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (null == resp)
+                    resp = responder.respond(addr, req.toByteArray());
+                return resp.read(b, off, len);
+            }
+        };
+        final OutputStream out = output(addr, req);
+        Socket sock = mock(Socket.class);
+        try {
+            when(sock.getOutputStream()).thenReturn(out);
+            when(sock.getInputStream()).thenReturn(in);
+            // like a real socket, closing it closes its streams
+            doAnswer(new Answer<Void>() {
+
+                @Override
+                public Void answer(InvocationOnMock invocation) throws IOException {
+                    out.close();
+                    return null;
+                }
+            }).when(sock).close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sock;
+    }
+
+    @Override
+    public boolean reusableSocket() {
+        return false;
+    }
+}
@@ -52,6 +52,23 @@ public class TestHelper {
         return res;
     }
 
+    /**
+     * Byte {@code i} of the generated test data.
+     */
+    public static byte value(long i) {
+        return (byte) (i % 251);
+    }
+
+    /**
+     * {@code size} bytes of the generated test data, from {@code offset}.
+     */
+    public static byte[] data(long offset, int size) {
+        byte[] res = new byte[size];
+        for (int i = 0; i < size; i++)
+            res[i] = value(offset + i);
+        return res;
+    }
+
     /**
      * Load configuration from "sds.conf" file found either in "$HOME/.oio/" or
      * "/etc/oio/".
@@ -114,4 +131,17 @@ public class TestHelper {
         }
         return out.toByteArray();
     }
+
+    /**
+     * Read a stream to its end through a small buffer, then close it.
+     */
+    public static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[bufferSize];
+        int n;
+        while (-1 != (n = in.read(buf)))
+            out.write(buf, 0, n);
+        in.close();
+        return out.toByteArray();
+    }
 }
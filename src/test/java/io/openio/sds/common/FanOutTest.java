@@ -0,0 +1,196 @@
+package io.openio.sds.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class FanOutTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private Future<byte[]> readAll(final InputStream in, final int bufferSize) {
+        return executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buf = new byte[bufferSize];
+                int n;
+                while (-1 != (n = in.read(buf, 0, buf.length)))
+                    out.write(buf, 0, n);
+                in.close();
+                return out.toByteArray();
+            }
+        });
+    }
+
+    private static void produce(FanOut fanout, byte[] data) throws IOException {
+        int done = 0;
+        while (done < data.length) {
+            byte[] b = fanout.acquire();
+            int len = Math.min(b.length, data.length - done);
+            System.arraycopy(data, done, b, 0, len);
+            done += len;
+            fanout.publish(len, done == data.length);
+        }
+    }
+
+    @Test
+    public void everyReaderGetsTheWholeStream() throws Exception {
+        byte[] data = new byte[100000];
+        new Random().nextBytes(data);
+        FanOut fanout = new FanOut(3, 4, 1000, 10000);
+        List<Future<byte[]>> readers = new ArrayList<Future<byte[]>>();
+        // reads spanning several buffers, and smaller than a buffer
+        readers.add(readAll(fanout.reader(0), 8192));
+        readers.add(readAll(fanout.reader(1), 300));
+        readers.add(readAll(fanout.reader(2), 1000));
+        produce(fanout, data);
+        for (Future<byte[]> f : readers)
+            assertArrayEquals(data, f.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void closedReaderDoesNotHoldTheProducer() throws Exception {
+        byte[] data = new byte[10000];
+        FanOut fanout = new FanOut(2, 2, 100, 10000);
+        Future<byte[]> reader = readAll(fanout.reader(0), 100);
+        byte[] b = fanout.acquire();
+        fanout.publish(b.length, false);
+        // a reader stopping in the middle of a buffer
+        InputStream lazy = fanout.reader(1);
+        assertEquals(0, lazy.read());
+        lazy.close();
+        produce(fanout, data);
+        assertEquals(10100, reader.get(10, TimeUnit.SECONDS).length);
+        try {
+            lazy.read();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void abortFailsTheReaders() throws Exception {
+        FanOut fanout = new FanOut(2, 2, 100, 10000);
+        Future<byte[]> reader = readAll(fanout.reader(0), 100);
+        fanout.publish(fanout.acquire().length, false);
+        fanout.abort();
+        try {
+            reader.get(10, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void abandonedReaderFailsWhileWaiting() throws Exception {
+        FanOut fanout = new FanOut(1, 2, 100, 10000);
+        Future<byte[]> reader = readAll(fanout.reader(0), 100);
+        fanout.publish(fanout.acquire().length, false);
+        fanout.abandon(0);
+        try {
+            reader.get(1, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().contains("shed"));
+        }
+        assertTrue(fanout.shed(0));
+        // the producer does not wait for it anymore
+        produce(fanout, new byte[1000]);
+    }
+
+    @Test
+    public void laggardIsShedOnceQuorumIsAhead() throws Exception {
+        byte[] data = new byte[10000];
+        new Random().nextBytes(data);
+        FanOut fanout = new FanOut(3, 4, 100, 10000).quorum(2);
+        Future<byte[]> r0 = readAll(fanout.reader(0), 100);
+        Future<byte[]> r1 = readAll(fanout.reader(1), 300);
+        InputStream laggard = fanout.reader(2);
+        produce(fanout, data);
+        assertArrayEquals(data, r0.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(data, r1.get(10, TimeUnit.SECONDS));
+        assertFalse(fanout.shed(0));
+        assertFalse(fanout.shed(1));
+        assertTrue(fanout.shed(2));
+        try {
+            laggard.read();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("shed"));
+        }
+    }
+
+    @Test
+    public void noShedWithoutQuorumAhead() throws Exception {
+        final FanOut fanout = new FanOut(3, 2, 100, 10000).quorum(2);
+        Future<byte[]> reader = readAll(fanout.reader(0), 100);
+        Future<?> producer = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                produce(fanout, new byte[10000]);
+                return null;
+            }
+        });
+        try {
+            producer.get(200, TimeUnit.MILLISECONDS);
+            fail("Expected the producer to wait for the quorum");
+        } catch (TimeoutException e) {
+            // a single reader ahead, two late
+        }
+        assertFalse(fanout.shed(1));
+        assertFalse(fanout.shed(2));
+        fanout.abort();
+        producer.get(10, TimeUnit.SECONDS);
+        try {
+            reader.get(10, TimeUnit.SECONDS);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readerTimesOut() throws IOException {
+        new FanOut(1, 2, 100, 50).reader(0).read(new byte[10], 0, 10);
+    }
+
+    @Test
+    public void endOfStream() throws IOException {
+        FanOut fanout = new FanOut(1, 2, 100, 10000);
+        byte[] b = fanout.acquire();
+        b[0] = 42;
+        fanout.publish(1, true);
+        InputStream in = fanout.reader(0);
+        assertEquals(1, in.available());
+        assertEquals(42, in.read());
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(new byte[10], 0, 10));
+    }
+}
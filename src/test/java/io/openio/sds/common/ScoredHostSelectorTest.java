@@ -0,0 +1,111 @@
+package io.openio.sds.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ScoredHostSelectorTest {
+
+    private static final InetSocketAddress H1 = new InetSocketAddress("127.0.0.1", 6001);
+    private static final InetSocketAddress H2 = new InetSocketAddress("127.0.0.1", 6002);
+    private static final InetSocketAddress H3 = new InetSocketAddress("127.0.0.1", 6003);
+    private static final List<InetSocketAddress> HOSTS = Arrays.asList(H1, H2, H3);
+
+    private ScoredHostSelector selector = new ScoredHostSelector(3, 60000L);
+
+    private void answer(InetSocketAddress host, long latencyMillis) {
+        selector.onStart(host);
+        selector.onSuccess(host, latencyMillis * 1000000L);
+    }
+
+    private void fail(InetSocketAddress host) {
+        selector.onStart(host);
+        selector.onFailure(host);
+    }
+
+    @Test
+    public void allHostsReturned() {
+        List<InetSocketAddress> order = selector.select(HOSTS);
+        assertEquals(3, order.size());
+        assertEquals(new HashSet<InetSocketAddress>(HOSTS),
+                new HashSet<InetSocketAddress>(order));
+    }
+
+    @Test
+    public void spreadOverHealthyHosts() {
+        Map<InetSocketAddress, Integer> firsts = new HashMap<InetSocketAddress, Integer>();
+        for (int i = 0; i < 3000; i++) {
+            InetSocketAddress first = selector.select(HOSTS).get(0);
+            Integer n = firsts.get(first);
+            firsts.put(first, null == n ? 1 : n + 1);
+        }
+        for (InetSocketAddress host : HOSTS)
+            assertTrue(firsts.get(host) > 500);
+    }
+
+    @Test
+    public void slowHostAvoided() {
+        for (int i = 0; i < 10; i++) {
+            answer(H1, 200);
+            answer(H2, 2);
+            answer(H3, 3);
+        }
+        for (int i = 0; i < 1000; i++) {
+            List<InetSocketAddress> order = selector.select(HOSTS);
+            assertNotEquals(H1, order.get(0));
+            assertEquals(H1, order.get(2));
+        }
+    }
+
+    @Test
+    public void busyHostAvoided() {
+        answer(H1, 2);
+        answer(H2, 2);
+        for (int i = 0; i < 10; i++)
+            selector.onStart(H1);
+        List<InetSocketAddress> hosts = Arrays.asList(H1, H2);
+        for (int i = 0; i < 100; i++)
+            assertEquals(H2, selector.select(hosts).get(0));
+    }
+
+    @Test
+    public void failingHostEjected() {
+        fail(H1);
+        fail(H1);
+        assertFalse(selector.ejected(H1));
+        fail(H1);
+        assertTrue(selector.ejected(H1));
+        for (int i = 0; i < 100; i++)
+            assertEquals(H1, selector.select(HOSTS).get(2));
+        answer(H1, 1);
+        assertFalse(selector.ejected(H1));
+    }
+
+    @Test
+    public void ejectionExpires() throws InterruptedException {
+        selector = new ScoredHostSelector(1, 50L);
+        fail(H1);
+        assertTrue(selector.ejected(H1));
+        Thread.sleep(100);
+        assertFalse(selector.ejected(H1));
+        // still suspect: a single failure ejects it again
+        fail(H1);
+        assertTrue(selector.ejected(H1));
+    }
+
+    @Test
+    public void orderedSelector() {
+        HostSelector ordered = HostSelectors.orderedHostSelector();
+        assertEquals(HOSTS, ordered.select(HOSTS));
+    }
+}
@@ -0,0 +1,119 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+public class ChunkedStreamTest {
+
+    private static ChunkedStream chunked(String body) throws IOException {
+        return new ChunkedStream(new ByteArrayInputStream(body.getBytes("US-ASCII")));
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[64];
+        int n;
+        while (-1 != (n = in.read(buf)))
+            out.write(buf, 0, n);
+        return out.toString("US-ASCII");
+    }
+
+    @Test
+    public void severalChunksInOneRead() throws IOException {
+        ChunkedStream in = chunked("4\r\n1234\r\n3\r\n567\r\n5\r\n89abc\r\n0\r\n\r\n");
+        byte[] buf = new byte[64];
+        assertEquals(12, in.read(buf));
+        assertEquals("123456789abc", new String(buf, 0, 12, "US-ASCII"));
+        assertEquals(-1, in.read(buf));
+        assertTrue(in.exhausted());
+    }
+
+    @Test
+    public void singleBytes() throws IOException {
+        ChunkedStream in = chunked("2\r\nab\r\n1\r\nc\r\n0\r\n\r\n");
+        assertEquals('a', in.read());
+        assertEquals('b', in.read());
+        assertEquals('c', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void extensionsAndTrailers() throws IOException {
+        ChunkedStream in = chunked("A;name=value\r\n0123456789\r\n"
+                + "0 ; last\r\nX-Trailer: done\r\nContent-MD5 : abc\r\n\r\n");
+        assertEquals("0123456789", readAll(in));
+        assertEquals("done", in.trailers().get("x-trailer"));
+        assertEquals("abc", in.trailers().get("content-md5"));
+    }
+
+    @Test
+    public void slowConnection() throws IOException {
+        final byte[] body = "3\r\nabc\r\n10\r\n0123456789abcdef\r\n0\r\n\r\n"
+                .getBytes("US-ASCII");
+        // deliver one byte per read, as a slow connection would
+        InputStream slow = new InputStream() {
+            private int pos = 0;
+
+            @Override
+            public int read() {
+                return pos < body.length ? body[pos++] : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos == body.length)
+                    return -1;
+                b[off] = body[pos++];
+                return 1;
+            }
+        };
+        assertEquals("abc0123456789abcdef", readAll(new ChunkedStream(slow)));
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedData() throws IOException {
+        readAll(chunked("10\r\n0123"));
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedSizeLine() throws IOException {
+        readAll(chunked("4\r\n0123\r\n1"));
+    }
+
+    @Test(expected = EOFException.class)
+    public void missingTrailerEnd() throws IOException {
+        readAll(chunked("4\r\n0123\r\n0\r\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidSize() throws IOException {
+        readAll(chunked("xyz\r\n0123\r\n0\r\n\r\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingCrlf() throws IOException {
+        readAll(chunked("4\r\n012345\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    public void trailerOnResponse() throws IOException {
+        ConnectionReader reader = new ConnectionReader(new ByteArrayInputStream(
+                ("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "2\r\nok\r\n0\r\nX-oio-chunk-meta-chunk-hash: 00FF\r\n\r\n")
+                                .getBytes("US-ASCII")), 0);
+        OioHttpResponse.ResponseHead head = OioHttpResponse.ResponseHead.parse(reader);
+        assertTrue(head.chunked());
+        ChunkedStream in = new ChunkedStream(reader);
+        assertEquals("ok", readAll(in));
+        assertEquals("00FF", in.trailers().get("x-oio-chunk-meta-chunk-hash"));
+        assertEquals(0, reader.buffered());
+    }
+}
@@ -0,0 +1,163 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.common.HostSelectors;
+import io.openio.sds.exceptions.CircuitOpenException;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.CircuitBreakers.State;
+
+public class CircuitBreakerTest {
+
+    private static final InetSocketAddress DOWN = new InetSocketAddress("127.0.0.1", 6001);
+    private static final InetSocketAddress UP = new InetSocketAddress("127.0.0.1", 6002);
+
+    private volatile boolean downIsUp = false;
+    private volatile String status = "200 OK";
+    private int connections = 0;
+    private List<String> transitions = new ArrayList<String>();
+
+    /*
+     * Refuses the connections to DOWN, answers "status" on UP.
+     */
+    private AbstractSocketProvider provider = new AbstractSocketProvider() {
+
+        @Override
+        public Socket getSocket(String host, int port) {
+            return getSocket(new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket getSocket(InetSocketAddress addr) {
+            connections++;
+            if (DOWN.equals(addr) && !downIsUp)
+                throw new OioException("Unable to get connection to " + addr,
+                        new ConnectException("Connection refused"));
+            Socket sock = mock(Socket.class);
+            try {
+                when(sock.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+                when(sock.getInputStream()).thenReturn(new ByteArrayInputStream(
+                        ("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n\r\n").getBytes()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return sock;
+        }
+
+        @Override
+        public boolean reusableSocket() {
+            return false;
+        }
+    };
+
+    private OioHttp http(int openTime) {
+        OioHttpSettings settings = new OioHttpSettings().circuitBreakerThreshold(2)
+                .circuitBreakerOpenTime(openTime);
+        OioHttp http = OioHttp.http(settings, provider, HostSelectors.orderedHostSelector());
+        http.circuitBreakers().addListener(new CircuitBreakerListener() {
+            @Override
+            public void stateChanged(InetSocketAddress host, State from, State to) {
+                transitions.add(host.getPort() + ":" + from + "->" + to);
+            }
+        });
+        return http;
+    }
+
+    private void failingGet(OioHttp http, Class<? extends OioException> expected) {
+        try {
+            http.get("http://127.0.0.1:6001/chunk").execute();
+            fail("The request should have failed");
+        } catch (OioException e) {
+            assertEquals(expected, e.getClass());
+        }
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        OioHttp http = http(60000);
+        failingGet(http, OioException.class);
+        assertEquals(State.CLOSED, http.circuitBreakers().state(DOWN));
+        failingGet(http, OioException.class);
+        assertEquals(State.OPEN, http.circuitBreakers().state(DOWN));
+        failingGet(http, CircuitOpenException.class);
+        assertEquals(2, connections);
+        assertEquals(Arrays.asList("6001:CLOSED->OPEN"), transitions);
+    }
+
+    @Test
+    public void halfOpenTrial() throws InterruptedException {
+        OioHttp http = http(50);
+        failingGet(http, OioException.class);
+        failingGet(http, OioException.class);
+        Thread.sleep(100);
+        // failed trial
+        failingGet(http, OioException.class);
+        assertEquals(State.OPEN, http.circuitBreakers().state(DOWN));
+        Thread.sleep(100);
+        downIsUp = true;
+        assertEquals(200, http.get("http://127.0.0.1:6001/chunk").execute().code());
+        assertEquals(State.CLOSED, http.circuitBreakers().state(DOWN));
+        assertEquals(Arrays.asList("6001:CLOSED->OPEN", "6001:OPEN->HALF_OPEN",
+                "6001:HALF_OPEN->OPEN", "6001:OPEN->HALF_OPEN", "6001:HALF_OPEN->CLOSED"),
+                transitions);
+    }
+
+    @Test
+    public void rejectedAnswerClosesTheCircuit() throws InterruptedException {
+        OioHttp http = http(50);
+        failingGet(http, OioException.class);
+        failingGet(http, OioException.class);
+        Thread.sleep(100);
+        downIsUp = true;
+        status = "503 Unavailable";
+        try {
+            http.get("http://127.0.0.1:6001/chunk").verifier(Verifiers.RAWX_VERIFIER).execute();
+            fail("The request should have failed");
+        } catch (OioException e) {
+            assertFalse(e instanceof CircuitOpenException);
+        }
+        // the host answered, whatever the answer
+        assertEquals(State.CLOSED, http.circuitBreakers().state(DOWN));
+        assertEquals(Arrays.asList("6001:CLOSED->OPEN", "6001:OPEN->HALF_OPEN",
+                "6001:HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    public void failoverWithoutConnecting() {
+        OioHttp http = http(60000);
+        failingGet(http, OioException.class);
+        failingGet(http, OioException.class);
+        connections = 0;
+        OioHttpResponse resp = http.get("http://127.0.0.1:6001/chunk")
+                .hosts(Arrays.asList(DOWN, UP)).execute();
+        assertEquals(200, resp.code());
+        assertEquals(1, connections);
+    }
+
+    @Test
+    public void disabled() {
+        OioHttpSettings settings = new OioHttpSettings().circuitBreakerThreshold(0);
+        OioHttp http = OioHttp.http(settings, provider);
+        for (int i = 0; i < 5; i++)
+            failingGet(http, OioException.class);
+        assertEquals(State.CLOSED, http.circuitBreakers().state(DOWN));
+        assertEquals(5, connections);
+    }
+}
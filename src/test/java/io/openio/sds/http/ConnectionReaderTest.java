@@ -0,0 +1,61 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import io.openio.sds.TestHelper;
+
+public class ConnectionReaderTest {
+
+    @Test
+    public void readAheadKept() throws IOException {
+        ConnectionReader reader = new ConnectionReader(new ByteArrayInputStream(
+                ("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\none"
+                        + "HTTP/1.1 201 Created\r\nContent-Length: 3\r\n\r\ntwo")
+                                .getBytes()),
+                8192);
+        PooledSocket sock = mock(PooledSocket.class);
+        when(sock.reader()).thenReturn(reader);
+
+        OioHttpResponse first = OioHttpResponse.build(sock, null);
+        assertEquals(200, first.code());
+        assertEquals("one", new String(TestHelper.toByteArray(first.body())));
+        first.close();
+        // the whole input has been buffered by the first response
+        assertEquals(0, reader.available() - reader.buffered());
+
+        OioHttpResponse second = OioHttpResponse.build(sock, null);
+        assertEquals(201, second.code());
+        assertEquals("two", new String(TestHelper.toByteArray(second.body())));
+        second.close();
+        verify(sock, never()).shutdownInput();
+        verify(sock, never()).getInputStream();
+    }
+
+    @Test
+    public void largeReadBypassesBuffer() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        ConnectionReader reader = new ConnectionReader(new ByteArrayInputStream(data), 16);
+        assertEquals(0, reader.read());
+        byte[] buf = new byte[64];
+        // only the buffered bytes
+        assertEquals(15, reader.read(buf, 0, buf.length));
+        assertEquals(15, buf[14]);
+        // straight from the connection
+        assertEquals(64, reader.read(buf, 0, buf.length));
+        assertEquals(16, buf[0]);
+        assertEquals(0, reader.buffered());
+        assertEquals(20, reader.read(buf, 0, buf.length));
+        assertEquals(-1, reader.read());
+    }
+}
@@ -0,0 +1,74 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+
+import org.junit.Test;
+
+public class ConnectionWriterTest {
+
+    private static final String[] SAMPLES = { "", "simple", "a b+c&d=e/f?g",
+            "~!*()'._-", "\u00e9t\u00e9 \u20ac", "\ud83d\ude00 smile", "%41",
+            // unpaired surrogates
+            "a\ud800b", "\udc00", "x\ud83d", "\ude00\ud83d" };
+
+    private ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private ConnectionWriter writer = new ConnectionWriter(out, 16);
+
+    @Test
+    public void urlEncoded() throws IOException {
+        for (String s : SAMPLES) {
+            out.reset();
+            writer.writeUrlEncoded(s).flush();
+            assertEquals(URLEncoder.encode(s, "UTF-8"), out.toString("US-ASCII"));
+        }
+    }
+
+    @Test
+    public void utf8() throws IOException {
+        for (String s : SAMPLES) {
+            out.reset();
+            writer.write(s).flush();
+            assertArrayEquals(s.getBytes("UTF-8"), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void surrogatePairCutByTheRange() throws IOException {
+        writer.write("a\ud83d\ude00", 0, 2).flush();
+        assertEquals("a?", out.toString("US-ASCII"));
+    }
+
+    @Test
+    public void decimal() throws IOException {
+        writer.writeDecimal(0).write(' ').writeDecimal(-42).write(' ')
+                .writeDecimal(Long.MAX_VALUE).flush();
+        assertEquals("0 -42 " + Long.MAX_VALUE, out.toString("US-ASCII"));
+    }
+
+    @Test
+    public void transfer() throws IOException {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) i;
+        writer.write("head").transfer(new ByteArrayInputStream(data), 600);
+        writer.flush();
+        byte[] res = out.toByteArray();
+        assertEquals(604, res.length);
+        assertEquals(data[599], res[603]);
+    }
+
+    @Test
+    public void transferChunked() throws IOException {
+        byte[] data = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes("US-ASCII");
+        writer.transferChunked(new ByteArrayInputStream(data), 30, 20);
+        writer.flush();
+        assertEquals("14\r\n0123456789abcdefghij\r\na\r\nklmnopqrst\r\n0\r\n\r\n",
+                out.toString("US-ASCII"));
+    }
+}
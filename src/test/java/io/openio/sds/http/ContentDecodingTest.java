@@ -0,0 +1,146 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+import io.openio.sds.TestSocketProvider;
+
+public class ContentDecodingTest {
+
+    private static final String JSON;
+
+    static {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++)
+            sb.append("{\"name\":\"object-").append(i).append("\",\"size\":1024},");
+        JSON = sb.append("{}]").toString();
+    }
+
+    private static byte[] gzip(String s) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gz = new GZIPOutputStream(out);
+        gz.write(s.getBytes("UTF-8"));
+        gz.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(String s, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream def = new DeflaterOutputStream(out,
+                new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap));
+        def.write(s.getBytes("UTF-8"));
+        def.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] response(String headers, byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(("HTTP/1.1 200 OK\r\n" + headers + "Content-Length: " + body.length
+                + "\r\n\r\n").getBytes("US-ASCII"));
+        out.write(body);
+        return out.toByteArray();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        int n;
+        while (-1 != (n = in.read(buf)))
+            out.write(buf, 0, n);
+        return out.toString("UTF-8");
+    }
+
+    private static OioHttpResponse build(Socket sock, byte[] data) throws IOException {
+        when(sock.getInputStream()).thenReturn(new ByteArrayInputStream(data));
+        return OioHttpResponse.build(sock, null, 65536, null);
+    }
+
+    @Test
+    public void gzipBody() throws IOException {
+        Socket sock = mock(Socket.class);
+        byte[] body = gzip(JSON);
+        assertTrue(body.length < JSON.length() / 4);
+        OioHttpResponse resp = build(sock, response("Content-Encoding: gzip\r\n", body));
+        assertEquals(JSON, readAll(resp.body()));
+        resp.close();
+        verify(sock, never()).shutdownInput();
+    }
+
+    @Test
+    public void deflateBody() throws IOException {
+        for (boolean nowrap : new boolean[] { false, true }) {
+            Socket sock = mock(Socket.class);
+            OioHttpResponse resp = build(sock,
+                    response("Content-Encoding: deflate\r\n", deflate(JSON, nowrap)));
+            assertEquals(JSON, readAll(resp.body()));
+            resp.close();
+        }
+    }
+
+    @Test
+    public void chunkedGzipBody() throws IOException {
+        byte[] body = gzip(JSON);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\nTransfer-Encoding: chunked\r\n\r\n"
+                .getBytes("US-ASCII"));
+        for (int off = 0; off < body.length; off += 100) {
+            int len = Math.min(100, body.length - off);
+            out.write((Integer.toHexString(len) + "\r\n").getBytes("US-ASCII"));
+            out.write(body, off, len);
+            out.write("\r\n".getBytes("US-ASCII"));
+        }
+        out.write("0\r\n\r\n".getBytes("US-ASCII"));
+        OioHttpResponse resp = build(mock(Socket.class), out.toByteArray());
+        assertEquals(JSON, readAll(resp.body()));
+    }
+
+    @Test
+    public void emptyEncodedBody() throws IOException {
+        OioHttpResponse resp = build(mock(Socket.class),
+                response("Content-Encoding: gzip\r\n", new byte[0]));
+        assertEquals(-1, resp.body().read());
+        resp.close();
+    }
+
+    @Test
+    public void unknownEncoding() throws IOException {
+        OioHttpResponse resp = build(mock(Socket.class),
+                response("Content-Encoding: br\r\n", "raw".getBytes("US-ASCII")));
+        assertEquals("raw", readAll(resp.body()));
+    }
+
+    @Test
+    public void acceptEncoding() {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(new ByteArrayInputStream("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n"
+                .getBytes()));
+        inputs.add(new ByteArrayInputStream("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n"
+                .getBytes()));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        OioHttpSettings settings = new OioHttpSettings();
+        OioHttp http = OioHttp.http(settings, socketProvider);
+        http.get("http://127.0.0.1:8080/").execute().close();
+        settings.compression(false);
+        http.get("http://127.0.0.1:8080/").execute().close();
+        List<ByteArrayOutputStream> outputs = socketProvider.outputs();
+        assertTrue(outputs.get(0).toString().contains("Accept-Encoding: gzip, deflate\r\n"));
+        assertTrue(outputs.get(1).toString().contains("Accept-Encoding: identity\r\n"));
+    }
+}
@@ -0,0 +1,101 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import org.junit.Test;
+
+public class DrainTest {
+
+    private ConnectionStats stats = new ConnectionStats();
+
+    private OioHttpResponse response(Socket sock, ByteArrayInputStream in,
+            long maxDrainSize) throws IOException {
+        when(sock.getInputStream()).thenReturn(in);
+        return OioHttpResponse.build(sock, null, maxDrainSize, stats);
+    }
+
+    @Test
+    public void drainSmallBody() throws IOException {
+        Socket sock = mock(Socket.class);
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                "HTTP/1.1 200 OK\r\nContent-Length: 8\r\n\r\n12345678".getBytes());
+        OioHttpResponse resp = response(sock, in, 16);
+        assertEquals('1', resp.body().read());
+        resp.close();
+        verify(sock, never()).shutdownInput();
+        verify(sock).close();
+        assertEquals(0, in.available());
+        assertEquals(1, stats.drained());
+        assertEquals(0, stats.discarded());
+    }
+
+    @Test
+    public void discardLargeBody() throws IOException {
+        Socket sock = mock(Socket.class);
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                "HTTP/1.1 200 OK\r\nContent-Length: 8\r\n\r\n12345678".getBytes());
+        OioHttpResponse resp = response(sock, in, 4);
+        resp.close();
+        verify(sock).shutdownInput();
+        assertEquals(0, stats.drained());
+        assertEquals(1, stats.discarded());
+    }
+
+    @Test
+    public void drainChunkedBody() throws IOException {
+        Socket sock = mock(Socket.class);
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                ("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "4\r\n1234\r\n4\r\n5678\r\n0\r\n\r\n").getBytes());
+        OioHttpResponse resp = response(sock, in, 16);
+        assertEquals('1', resp.body().read());
+        resp.close();
+        verify(sock, never()).shutdownInput();
+        assertEquals(0, in.available());
+        assertEquals(1, stats.drained());
+    }
+
+    @Test
+    public void discardLargeChunkedBody() throws IOException {
+        Socket sock = mock(Socket.class);
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                ("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + "4\r\n1234\r\n4\r\n5678\r\n0\r\n\r\n").getBytes());
+        OioHttpResponse resp = response(sock, in, 2);
+        resp.close();
+        verify(sock).shutdownInput();
+        assertEquals(1, stats.discarded());
+    }
+
+    @Test
+    public void noDrainWithoutReuse() throws IOException {
+        Socket sock = mock(Socket.class);
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                "HTTP/1.1 200 OK\r\nContent-Length: 8\r\n\r\n12345678".getBytes());
+        OioHttpResponse resp = response(sock, in, 16);
+        resp.close(false);
+        verify(sock).shutdownInput();
+        assertEquals(0, stats.drained());
+        assertEquals(0, stats.discarded());
+    }
+
+    @Test
+    public void bodyCloseKeepsConnection() throws IOException {
+        Socket sock = mock(Socket.class);
+        ByteArrayInputStream in = new ByteArrayInputStream(
+                "HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\n1234".getBytes());
+        OioHttpResponse resp = response(sock, in, 16);
+        resp.body().close();
+        verify(sock, never()).close();
+        resp.close();
+        verify(sock).close();
+    }
+}
@@ -0,0 +1,172 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.common.SocketProviders;
+
+/**
+ * Uploads with {@code Expect: 100-continue}, against a server accepting the
+ * body, refusing it, or ignoring the header.
+ */
+public class ExpectContinueTest {
+
+    private static final int BODY_SIZE = 100000;
+
+    private ServerSocket server;
+    private String url;
+    private volatile String mode;
+    private volatile String head;
+    private volatile long received;
+    private CountDownLatch served = new CountDownLatch(1);
+
+    @Before
+    public void before() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        url = "http://127.0.0.1:" + server.getLocalPort() + "/chunk";
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Socket sock = server.accept();
+                    try {
+                        serve(sock);
+                    } finally {
+                        sock.close();
+                        served.countDown();
+                    }
+                } catch (IOException e) {
+                    // server closed
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    private void serve(Socket sock) throws IOException {
+        InputStream in = new BufferedInputStream(sock.getInputStream());
+        OutputStream out = sock.getOutputStream();
+        head = readHead(in);
+        if ("refuse".equals(mode)) {
+            out.write("HTTP/1.1 507 Insufficient Storage\r\nContent-Length: 0\r\n\r\n"
+                    .getBytes());
+            out.flush();
+            // count what the client sends anyway, until it closes
+            sock.setSoTimeout(2000);
+            try {
+                received = skip(in, Long.MAX_VALUE);
+            } catch (SocketTimeoutException e) {
+                received = -1;
+            }
+            return;
+        }
+        if ("continue".equals(mode)) {
+            out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes());
+            out.flush();
+        }
+        received = skip(in, BODY_SIZE);
+        if ("ignore".equals(mode))
+            // late interim response, to be skipped by the client
+            out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes());
+        out.write("HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n".getBytes());
+        out.flush();
+    }
+
+    private static long skip(InputStream in, long max) throws IOException {
+        long n = 0;
+        while (n < max && -1 != in.read())
+            n++;
+        return n;
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int state = 0;
+        while (state < 4) {
+            int b = in.read();
+            if (-1 == b)
+                break;
+            sb.append((char) b);
+            if (b == '\r')
+                state = (state == 2) ? 3 : 1;
+            else if (b == '\n')
+                state = (state == 1 || state == 3) ? state + 1 : 0;
+            else
+                state = 0;
+        }
+        return sb.toString();
+    }
+
+    private OioHttpResponse upload(OioHttpSettings settings) {
+        OioHttp http = OioHttp.http(settings, SocketProviders.directSocketProvider(settings));
+        return http.put(url).body(new ByteArrayInputStream(new byte[BODY_SIZE]),
+                (long) BODY_SIZE).execute();
+    }
+
+    @Test
+    public void accepted() throws InterruptedException {
+        mode = "continue";
+        OioHttpResponse resp = upload(new OioHttpSettings().expectContinueThreshold(1024L));
+        assertEquals(201, resp.code());
+        resp.close();
+        assertTrue(served.await(5, TimeUnit.SECONDS));
+        assertTrue(head.contains("Expect: 100-continue\r\n"));
+        assertEquals(BODY_SIZE, received);
+    }
+
+    @Test
+    public void refused() throws InterruptedException {
+        mode = "refuse";
+        OioHttpResponse resp = upload(new OioHttpSettings().expectContinueThreshold(1024L));
+        assertEquals(507, resp.code());
+        resp.close();
+        assertTrue(served.await(5, TimeUnit.SECONDS));
+        assertEquals(0, received);
+    }
+
+    @Test
+    public void ignored() throws InterruptedException {
+        mode = "ignore";
+        OioHttpResponse resp = upload(new OioHttpSettings().expectContinueThreshold(1024L)
+                .expectContinueTimeout(100));
+        assertEquals(201, resp.code());
+        resp.close();
+        assertTrue(served.await(5, TimeUnit.SECONDS));
+        assertEquals(BODY_SIZE, received);
+    }
+
+    @Test
+    public void belowThreshold() throws InterruptedException {
+        mode = "ignore";
+        OioHttpResponse resp = upload(new OioHttpSettings());
+        assertEquals(201, resp.code());
+        resp.close();
+        assertTrue(served.await(5, TimeUnit.SECONDS));
+        assertFalse(head.contains("Expect"));
+    }
+}
@@ -120,4 +120,60 @@ public class OioHttpResponseTest {
 			assertTrue(e.getMessage().contains("Invalid HTTP status line"));
 		}
 	}
+	@Test
+	public void internedHeaderNames() {
+		OioHttpResponse resp = testResponse(
+				"HTTP/1.1 200 OK\r\nCONTENT-LENGTH:0\r\n"
+						+ "X-Oio-Content-Meta-Name:  summer.txt \r\n"
+						+ "X-Custom-Header: a: b\r\n"
+						+ "not a header\r\n\r\n",
+				200,
+				"OK",
+				3);
+		assertEquals("0", resp.header("Content-Length"));
+		assertEquals("summer.txt", resp.header("x-oio-content-meta-name"));
+		assertEquals("a: b", resp.header("X-CUSTOM-HEADER"));
+		for (String name : resp.headers().keySet()) {
+			if (name.equals("content-length"))
+				assertTrue(name == "content-length");
+		}
+	}
+
+	@Test
+	public void utf8HeaderValue() throws IOException {
+		String data = "HTTP/1.1 200 OK\r\nX-oio-content-meta-name: \u00e9t\u00e9.txt\r\n\r\n";
+		Socket sock = mock(Socket.class);
+		when(sock.getInputStream()).thenReturn(
+				new ByteArrayInputStream(data.getBytes("UTF-8")));
+		OioHttpResponse resp = OioHttpResponse.build(sock, null);
+		assertEquals("\u00e9t\u00e9.txt", resp.header("X-oio-content-meta-name"));
+	}
+
+	@Test
+	public void longHeaderLine() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 20000; i++)
+			value.append((char) ('a' + i % 26));
+		OioHttpResponse resp = testResponse(
+				"HTTP/1.1 200 OK\r\nX-oio-list-marker: " + value
+						+ "\r\nContent-Length: 4\r\n\r\ntest",
+				200,
+				"OK",
+				2);
+		assertEquals(value.toString(), resp.header("X-oio-list-marker"));
+		assertEquals("test", new String(TestHelper.toByteArray(resp.body())));
+	}
+
+	@Test
+	public void nonNumericStatusCode() {
+		String data = "HTTP/1.1 2x0 OK\r\n\r\n";
+		Socket sock = mock(Socket.class);
+		try {
+			when(sock.getInputStream()).thenReturn(new ByteArrayInputStream(data.getBytes()));
+			OioHttpResponse.build(sock, null);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Invalid HTTP status line"));
+		}
+	}
 }
@@ -1,10 +1,13 @@
 package io.openio.sds.http;
 
 import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
 import io.openio.sds.TestHelper;
 import io.openio.sds.TestSocketProvider;
 import io.openio.sds.common.DeadlineManager;
 import io.openio.sds.common.DeadlineManager.ClockSource;
+import io.openio.sds.common.HostSelector;
 import io.openio.sds.exceptions.DeadlineReachedException;
 import io.openio.sds.exceptions.OioException;
 
@@ -13,9 +16,12 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -48,12 +54,12 @@ public class OioHttpTest {
         assertEquals(outputs.size(), 1);
         ByteArrayOutputStream output = outputs.get(0);
 
-        String expectedOutput = "POST /testPath?%40=%3D&testKey=testValue HTTP/1.1\r\n"
-                + "TestHeaderKey2: testHeaderValue2\r\n" + "TestHeaderKey: testHeaderValue\r\n"
-                + "Accept: */*\r\n" + "Connection: close\r\n" + "User-Agent: oio-http\r\n"
-                + "X-oio-timeout: 0\r\n"
-                + "Host: 127.0.0.1:8080\r\n" + "Accept-Encoding: gzip, deflate\r\n"
-                + "Content-Length: 2\r\n" + "Content-Type: application/json\r\n" + "\r\n" + "{}";
+        String expectedOutput = "POST /testPath?testKey=testValue&%40=%3D HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:8080\r\n" + "Connection: close\r\n" + "Accept: */*\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n" + "User-Agent: oio-http\r\n"
+                + "TestHeaderKey: testHeaderValue\r\n" + "TestHeaderKey2: testHeaderValue2\r\n"
+                + "Content-Length: 2\r\n" + "Content-Type: application/json\r\n"
+                + "X-oio-timeout: 0\r\n" + "\r\n" + "{}";
 
         assertEquals(new String(output.toByteArray()), expectedOutput);
         assertEquals(resp.code(), 200);
@@ -90,11 +96,11 @@ public class OioHttpTest {
         assertEquals(outputs.size(), 1);
         ByteArrayOutputStream output = outputs.get(0);
 
-        String expectedOutput = "POST /testPath HTTP/1.1\r\n" + "Transfer-Encoding: chunked\r\n"
-                + "Accept: */*\r\n" + "Connection: close\r\n" + "User-Agent: oio-http\r\n"
-                + "X-oio-timeout: 0\r\n"
-                + "Host: 127.0.0.1:8080\r\n" + "Accept-Encoding: gzip, deflate\r\n"
-                + "Content-Type: application/octet-stream\r\n" + "\r\n" + "3\r\n" + "tes\r\n"
+        String expectedOutput = "POST /testPath HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:8080\r\n" + "Connection: close\r\n" + "Accept: */*\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n" + "User-Agent: oio-http\r\n"
+                + "Content-Type: application/octet-stream\r\n" + "X-oio-timeout: 0\r\n"
+                + "Transfer-Encoding: chunked\r\n" + "\r\n" + "3\r\n" + "tes\r\n"
                 + "1\r\n" + "t\r\n" + "0\r\n\r\n";
 
         assertEquals(new String(output.toByteArray()), expectedOutput);
@@ -123,16 +129,87 @@ public class OioHttpTest {
         assertEquals(outputs.size(), 1);
         ByteArrayOutputStream output = outputs.get(0);
 
-        String expectedOutput = "POST /testPath HTTP/1.1\r\n" + "Accept: */*\r\n"
-                + "Connection: close\r\n" + "User-Agent: oio-http\r\n"
-                + "X-oio-timeout: 0\r\n"
-                + "Host: 127.0.0.1:8080\r\n"
-                + "Accept-Encoding: gzip, deflate\r\n" + "Content-Length: 4\r\n"
-                + "Content-Type: application/octet-stream\r\n" + "\r\n" + "test";
+        String expectedOutput = "POST /testPath HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:8080\r\n" + "Connection: close\r\n" + "Accept: */*\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n" + "User-Agent: oio-http\r\n"
+                + "Content-Length: 4\r\n" + "Content-Type: application/octet-stream\r\n"
+                + "X-oio-timeout: 0\r\n" + "\r\n" + "test";
 
         assertEquals(new String(output.toByteArray()), expectedOutput);
     }
 
+    @Test
+    public void headerOverridesConstantHeader() {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(new ByteArrayInputStream("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"
+                .getBytes()));
+
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+
+        OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider);
+
+        OioHttp.RequestBuilder req = http.get("http://127.0.0.1:8080/testPath");
+        req.header("user-agent", "custom");
+        req.header("Accept", "application/json");
+        req.execute();
+
+        List<ByteArrayOutputStream> outputs = socketProvider.outputs();
+        assertEquals(outputs.size(), 1);
+        ByteArrayOutputStream output = outputs.get(0);
+
+        String expectedOutput = "GET /testPath HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:8080\r\n" + "Connection: close\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n"
+                + "user-agent: custom\r\n" + "Accept: application/json\r\n"
+                + "X-oio-timeout: 0\r\n" + "Content-Length: 0\r\n" + "\r\n";
+
+        assertEquals(new String(output.toByteArray()), expectedOutput);
+    }
+
+    @Test
+    public void hostSelectorReportedOnRuntimeException() {
+        final AtomicInteger inflight = new AtomicInteger(0);
+        HostSelector selector = new HostSelector() {
+
+            @Override
+            public List<InetSocketAddress> select(List<InetSocketAddress> hosts) {
+                return hosts;
+            }
+
+            @Override
+            public void onStart(InetSocketAddress host) {
+                inflight.incrementAndGet();
+            }
+
+            @Override
+            public void onSuccess(InetSocketAddress host, long latencyNanos) {
+                inflight.decrementAndGet();
+            }
+
+            @Override
+            public void onFailure(InetSocketAddress host) {
+                inflight.decrementAndGet();
+            }
+        };
+        RespondingSocketProvider socketProvider = new RespondingSocketProvider(new Responder() {
+
+            @Override
+            public InputStream respond(InetSocketAddress addr, byte[] request) {
+                throw new IllegalStateException("Unexpected");
+            }
+        });
+        OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider, selector);
+        try {
+            http.get("http://127.0.0.1:8080/testPath")
+                    .hosts(Arrays.asList(new InetSocketAddress("127.0.0.1", 8080)))
+                    .execute();
+            fail("Expected the request to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Unexpected", e.getMessage());
+        }
+        assertEquals(0, inflight.get());
+    }
+
     class Dummy {
         String a;
         int b;
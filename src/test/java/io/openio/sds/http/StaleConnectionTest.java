@@ -0,0 +1,139 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.common.SocketProviders;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.pool.PoolingSettings;
+
+/**
+ * Requests on pooled connections which the server closed while they were
+ * idle.
+ */
+public class StaleConnectionTest {
+
+    private ServerSocket server;
+    private AtomicInteger connections = new AtomicInteger(0);
+    private String url;
+    /* whether the server sends stray bytes after the response */
+    private volatile boolean junk = false;
+
+    @Before
+    public void before() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        url = "http://127.0.0.1:" + server.getLocalPort() + "/test";
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                serve();
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        server.close();
+    }
+
+    /*
+     * Answer one request on each connection, announcing keep-alive, then
+     * close the connection.
+     */
+    private void serve() {
+        while (!server.isClosed()) {
+            try {
+                Socket sock = server.accept();
+                connections.incrementAndGet();
+                try {
+                    InputStream in = new BufferedInputStream(sock.getInputStream());
+                    int state = 0;
+                    while (state < 4) {
+                        int b = in.read();
+                        if (-1 == b)
+                            break;
+                        if (b == '\r')
+                            state = (state == 2) ? 3 : 1;
+                        else if (b == '\n')
+                            state = (state == 1 || state == 3) ? state + 1 : 0;
+                        else
+                            state = 0;
+                    }
+                    sock.getOutputStream().write(
+                            "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes());
+                    sock.getOutputStream().flush();
+                    if (junk) {
+                        // after the client released the connection
+                        Thread.sleep(50);
+                        sock.getOutputStream().write("junk".getBytes());
+                        sock.getOutputStream().flush();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    sock.close();
+                }
+            } catch (IOException e) {
+                // server closed
+            }
+        }
+    }
+
+    private OioHttp http(int validateAfterInactivity) {
+        PoolingSettings pooling = new PoolingSettings()
+                .validateAfterInactivity(validateAfterInactivity);
+        OioHttpSettings settings = new OioHttpSettings();
+        return OioHttp.http(settings,
+                SocketProviders.pooledSocketProvider(pooling, settings));
+    }
+
+    @Test
+    public void validateOnLease() throws InterruptedException {
+        junk = true;
+        OioHttp http = http(0);
+        assertEquals(200, http.get(url).execute().close().code());
+        Thread.sleep(100);
+        assertEquals(200, http.post(url).execute().close().code());
+        assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void retryIdempotent() throws InterruptedException {
+        OioHttp http = http(-1);
+        assertEquals(200, http.get(url).execute().close().code());
+        Thread.sleep(100);
+        assertEquals(200, http.get(url).execute().close().code());
+        Thread.sleep(100);
+        assertEquals(200, http.delete(url).idempotent().execute().close().code());
+        assertEquals(3, connections.get());
+    }
+
+    @Test
+    public void noRetryNonIdempotent() throws InterruptedException {
+        OioHttp http = http(-1);
+        assertEquals(200, http.get(url).execute().close().code());
+        Thread.sleep(100);
+        try {
+            http.post(url).execute();
+            fail("Request on a stale connection should have failed");
+        } catch (OioException e) {
+            // expected
+        }
+    }
+}
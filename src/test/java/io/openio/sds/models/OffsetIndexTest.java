@@ -0,0 +1,87 @@
+package io.openio.sds.models;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class OffsetIndexTest {
+
+    private final OffsetIndex index = new OffsetIndex(new long[] { 100, 0, 100, 50, 0 });
+
+    @Test
+    public void offsets() {
+        assertEquals(5, index.count());
+        assertEquals(250, index.size());
+        assertEquals(0, index.offset(0));
+        assertEquals(100, index.offset(1));
+        assertEquals(100, index.offset(2));
+        assertEquals(200, index.offset(3));
+        assertEquals(250, index.offset(5));
+        assertEquals(0, index.size(1));
+        assertEquals(50, index.size(3));
+    }
+
+    @Test
+    public void positionOf() {
+        assertEquals(0, index.positionOf(0));
+        assertEquals(0, index.positionOf(99));
+        // empty positions never hold a byte
+        assertEquals(2, index.positionOf(100));
+        assertEquals(2, index.positionOf(199));
+        assertEquals(3, index.positionOf(200));
+        assertEquals(3, index.positionOf(249));
+    }
+
+    @Test
+    public void positionEnding() {
+        assertEquals(-1, index.positionEnding(0));
+        assertEquals(0, index.positionEnding(1));
+        assertEquals(0, index.positionEnding(100));
+        assertEquals(2, index.positionEnding(101));
+        assertEquals(2, index.positionEnding(200));
+        assertEquals(3, index.positionEnding(250));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void positionOfEnd() {
+        index.positionOf(250);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSize() {
+        new OffsetIndex(new long[] { 100, -1 });
+    }
+
+    @Test
+    public void largeMetachunks() {
+        // 1 GiB fragments, so 6 GiB metachunks
+        long fragment = 1L << 30;
+        List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+        for (int pos = 0; pos < 2; pos++) {
+            for (int sub = 0; sub < 9; sub++)
+                chunks.add(new ChunkInfo().pos(Position.composed(pos, sub)).size(fragment));
+        }
+        ObjectInfo oinf = new ObjectInfo().chunkMethod("ec/algo=liberasurecode_rs_vand,k=6,m=3")
+                .size(10 * fragment).chunks(chunks);
+        assertEquals(6 * fragment, oinf.metachunksize(0));
+        assertEquals(4 * fragment, oinf.metachunksize(1));
+        OffsetIndex i = oinf.offsetIndex();
+        assertEquals(10 * fragment, i.size());
+        assertEquals(1, i.positionOf(7 * fragment));
+    }
+
+    @Test
+    public void cachedByObject() {
+        ObjectInfo oinf = new ObjectInfo().chunks(Arrays.asList(
+                new ChunkInfo().pos(Position.simple(0)).size(10L)));
+        OffsetIndex i = oinf.offsetIndex();
+        assertEquals(i, oinf.offsetIndex());
+        oinf.chunks(Arrays.asList(
+                new ChunkInfo().pos(Position.simple(0)).size(20L)));
+        assertEquals(20, oinf.offsetIndex().size());
+    }
+}
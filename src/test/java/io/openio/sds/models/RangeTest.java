@@ -79,6 +79,13 @@ public class RangeTest {
         Assert.assertEquals(20, r.to());
     }
 
+    @Test
+    public void parseBeyond2GiB() {
+        Range r = Range.parse("3000000000-6000000000");
+        Assert.assertEquals(3000000000L, r.from());
+        Assert.assertEquals(6000000000L, r.to());
+    }
+
     @Test
     public void parseOkWithFrom() {
         Range r = Range.parse("10-");
@@ -46,14 +46,18 @@ public class ProxyClientTest {
         assertEquals(outputs.size(), 1);
         ByteArrayOutputStream output = outputs.get(0);
 
-        String expectedOutput = method + " " + path + " HTTP/1.1\r\n" + "X-oio-req-id: "
-                + reqCtx.requestId() + "\r\n" + "Accept: */*\r\n" + "Connection: close\r\n"
-                + "User-Agent: oio-http\r\n" + "X-oio-timeout: "
-                + OioHttp.timeoutMillisToStringMicros(reqCtx.timeout()) + "\r\n"
-                + "Host: 127.0.0.1:8080\r\n" + "Accept-Encoding: gzip, deflate\r\n"
-                + "Content-Length: " + data.length() + "\r\n";
+        String expectedOutput = method + " " + path + " HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:8080\r\n" + "Connection: close\r\n" + "Accept: */*\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n" + "User-Agent: oio-http\r\n"
+                + "X-oio-req-id: " + reqCtx.requestId() + "\r\n";
         if (data.length() != 0) {
-            expectedOutput = expectedOutput + "Content-Type: application/json\r\n";
+            expectedOutput = expectedOutput + "Content-Length: " + data.length() + "\r\n"
+                    + "Content-Type: application/json\r\n";
+        }
+        expectedOutput = expectedOutput + "X-oio-timeout: "
+                + OioHttp.timeoutMillisToStringMicros(reqCtx.timeout()) + "\r\n";
+        if (data.length() == 0) {
+            expectedOutput = expectedOutput + "Content-Length: 0\r\n";
         }
 
         expectedOutput = expectedOutput + "\r\n" + data;
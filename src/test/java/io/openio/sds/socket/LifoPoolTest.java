@@ -0,0 +1,174 @@
+package io.openio.sds.socket;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.openio.sds.pool.Pool;
+import io.openio.sds.pool.Poolable;
+import io.openio.sds.pool.PoolingSettings;
+
+public class LifoPoolTest {
+
+    private Pool<Poolable> pool;
+    private AtomicInteger created = new AtomicInteger(0);
+    private AtomicInteger destroyed = new AtomicInteger(0);
+
+    private void init(boolean threadAffinity) {
+        PoolingSettings settings = new PoolingSettings();
+        settings.cleanDelay(1L)
+                .cleanRate(1L)
+                .idleTimeout(500)
+                .maxForEach(20)
+                .maxWait(100)
+                .lifo(true)
+                .threadAffinity(threadAffinity);
+        pool = new Pool<Poolable>(settings, true) {
+
+            @Override
+            protected Poolable create() {
+                created.incrementAndGet();
+                return new TestPoolable();
+            }
+
+            @Override
+            protected void destroy(Poolable t) {
+                destroyed.incrementAndGet();
+            }
+        };
+    }
+
+    @After
+    public void after() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void lastReleasedFirst() {
+        init(false);
+        Poolable a = pool.lease();
+        Poolable b = pool.lease();
+        pool.release(a);
+        pool.release(b);
+        Assert.assertEquals(2, pool.size());
+        Assert.assertSame(b, pool.lease());
+        Assert.assertSame(a, pool.lease());
+        Assert.assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void doubleRelease() {
+        init(true);
+        Poolable a = pool.lease();
+        pool.release(a);
+        pool.release(a);
+        Assert.assertEquals(1, pool.size());
+        Assert.assertEquals(0, pool.leased());
+        Assert.assertSame(a, pool.lease());
+        Assert.assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void threadAffinity() throws InterruptedException {
+        init(true);
+        final Poolable mine = pool.lease();
+        final Poolable[] other = new Poolable[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                other[0] = pool.lease();
+                pool.release(other[0]);
+            }
+        };
+        pool.release(mine);
+        t.start();
+        t.join();
+        Assert.assertEquals(1, pool.size());
+        // the other thread got our item and gave it back
+        Assert.assertSame(mine, other[0]);
+        Assert.assertSame(mine, pool.lease());
+        Assert.assertEquals(0, pool.size());
+        pool.release(mine);
+        Assert.assertSame(mine, pool.lease());
+    }
+
+    @Test
+    public void cleanEldest() throws InterruptedException {
+        init(false);
+        Poolable a = pool.lease();
+        pool.release(a);
+        Thread.sleep(3000);
+        Assert.assertEquals(0, pool.size());
+        Assert.assertEquals(1, destroyed.get());
+    }
+
+    @Test
+    public void multiThread() throws InterruptedException {
+        init(true);
+        final Set<Poolable> seen = new HashSet<Poolable>();
+        final AtomicInteger errors = new AtomicInteger(0);
+        Thread[] threads = new Thread[10];
+        for (int i = 0; i < 10; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        Poolable p = pool.lease();
+                        // the same item must never be leased twice
+                        synchronized (seen) {
+                            if (p.isPooled() || !seen.add(p))
+                                errors.incrementAndGet();
+                        }
+                        synchronized (seen) {
+                            seen.remove(p);
+                        }
+                        pool.release(p);
+                    }
+                }
+            };
+        }
+        for (int i = 0; i < 10; i++)
+            threads[i].start();
+        for (int i = 0; i < 10; i++)
+            threads[i].join();
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(0, pool.leased());
+        Assert.assertTrue(created.get() <= 20);
+        Assert.assertEquals(created.get(), pool.size() + destroyed.get());
+    }
+
+    private static class TestPoolable implements Poolable {
+
+        private volatile boolean pooled = false;
+        private volatile long lastUsage;
+
+        @Override
+        public boolean reusable() {
+            return true;
+        }
+
+        @Override
+        public void lastUsage(long lastUsage) {
+            this.lastUsage = lastUsage;
+        }
+
+        @Override
+        public long lastUsage() {
+            return this.lastUsage;
+        }
+
+        @Override
+        public void setPooled(boolean pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public boolean isPooled() {
+            return pooled;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io.openio.sds.socket;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.pool.Pool;
+import io.openio.sds.pool.PoolBudget;
+import io.openio.sds.pool.PoolGroup;
+import io.openio.sds.pool.Poolable;
+import io.openio.sds.pool.PoolingSettings;
+
+public class PoolGroupTest {
+
+    private PoolGroup<String, Poolable> group;
+
+    @Before
+    public void before() {
+        PoolingSettings settings = new PoolingSettings();
+        settings.cleanDelay(1L)
+                .cleanRate(1L)
+                .idleTimeout(500)
+                .maxForEach(10)
+                .maxTotal(15)
+                .maxWait(100)
+                .routeIdleTimeout(1500);
+        group = new PoolGroup<String, Poolable>(settings, true) {
+
+            @Override
+            protected Pool<Poolable> createPool(String key, PoolingSettings settings,
+                    PoolBudget budget) {
+                return new TestPool(settings, budget);
+            }
+        };
+    }
+
+    @After
+    public void after() {
+        group.shutdown();
+    }
+
+    @Test
+    public void lazyPools() {
+        Assert.assertEquals(0, group.routes());
+        Poolable p = group.lease("a");
+        Assert.assertEquals(1, group.routes());
+        group.pool("a").release(p);
+        Assert.assertEquals(1, group.size());
+        group.lease("b");
+        Assert.assertEquals(2, group.routes());
+        Assert.assertSame(group.pool("a"), group.pool("a"));
+    }
+
+    @Test
+    public void reachMaxForEach() {
+        for (int i = 0; i < 10; i++)
+            group.lease("a");
+        try {
+            group.lease("a");
+            Assert.fail();
+        } catch (OioException e) {
+            Assert.assertTrue(
+                    e.getMessage().contains("Unable to get pooled element"));
+        }
+        // other routes are still usable
+        group.lease("b");
+    }
+
+    @Test
+    public void reachMaxTotal() {
+        for (int i = 0; i < 10; i++)
+            group.lease("a");
+        for (int i = 0; i < 5; i++)
+            group.lease("b");
+        Assert.assertEquals(15, group.leased());
+        try {
+            group.lease("c");
+            Assert.fail();
+        } catch (OioException e) {
+            Assert.assertTrue(
+                    e.getMessage().contains("Unable to get pooled element"));
+        }
+    }
+
+    @Test
+    public void releaseFreesBudget() {
+        Poolable p = null;
+        for (int i = 0; i < 15; i++)
+            p = group.lease(i < 10 ? "a" : "b");
+        group.pool("b").release(p);
+        Assert.assertEquals(14, group.leased());
+        group.lease("c");
+        Assert.assertEquals(15, group.leased());
+    }
+
+    @Test
+    public void idleItemsCountInMaxTotal() throws InterruptedException {
+        Poolable[] a = new Poolable[10];
+        for (int i = 0; i < 10; i++)
+            a[i] = group.lease("a");
+        Poolable b = null;
+        for (int i = 0; i < 5; i++)
+            b = group.lease("b");
+        group.pool("a").release(a[0]);
+        Thread.sleep(5);
+        group.pool("b").release(b);
+        Assert.assertEquals(15, group.open());
+        // the least recently used idle item makes room
+        group.lease("c");
+        Assert.assertEquals(15, group.open());
+        Assert.assertEquals(0, group.pool("a").size());
+        Assert.assertEquals(1, group.pool("b").size());
+    }
+
+    @Test
+    public void releaseOnAnotherRouteWakesWaiter() throws Exception {
+        final Poolable[] a = new Poolable[10];
+        for (int i = 0; i < 10; i++)
+            a[i] = group.lease("a");
+        for (int i = 0; i < 5; i++)
+            group.lease("b");
+        Thread releaser = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                group.pool("a").release(a[0]);
+            }
+        };
+        releaser.start();
+        group.lease("c");
+        releaser.join();
+        Assert.assertEquals(15, group.leased());
+        Assert.assertEquals(15, group.open());
+    }
+
+    @Test
+    public void clean() throws InterruptedException {
+        group.pool("a").release(group.lease("a"));
+        group.pool("b").release(group.lease("b"));
+        Assert.assertEquals(2, group.size());
+        Thread.sleep(3000);
+        Assert.assertEquals(0, group.size());
+    }
+
+    @Test
+    public void removeIdleRoutes() throws InterruptedException {
+        Poolable p = group.lease("a");
+        group.pool("b").release(group.lease("b"));
+        Assert.assertEquals(2, group.routes());
+        Thread.sleep(4000);
+        // "b" has no more items and has not been used for a while
+        Assert.assertEquals(1, group.routes());
+        Pool<Poolable> a = group.pool("a");
+        a.release(p);
+        Assert.assertEquals(1, group.routes());
+    }
+
+    @Test
+    public void releaseAfterShutdown() {
+        Pool<Poolable> a = group.pool("a");
+        Poolable p = a.lease();
+        a.shutdown();
+        a.release(p);
+        Assert.assertEquals(0, a.size());
+        Assert.assertEquals(0, group.leased());
+    }
+
+    private static class TestPool extends Pool<Poolable> {
+
+        TestPool(PoolingSettings settings, PoolBudget budget) {
+            super(settings, false, budget);
+        }
+
+        @Override
+        protected Poolable create() {
+            return new Poolable() {
+
+                private boolean pooled = false;
+                private long lastUsage;
+
+                @Override
+                public boolean reusable() {
+                    return true;
+                }
+
+                @Override
+                public void lastUsage(long lastUsage) {
+                    this.lastUsage = lastUsage;
+                }
+
+                @Override
+                public long lastUsage() {
+                    return this.lastUsage;
+                }
+
+                @Override
+                public void setPooled(boolean pooled) {
+                    this.pooled = pooled;
+                }
+
+                @Override
+                public boolean isPooled() {
+                    return pooled;
+                }
+            };
+        }
+
+        @Override
+        protected void destroy(Poolable t) {
+            // nothing
+        }
+    }
+}
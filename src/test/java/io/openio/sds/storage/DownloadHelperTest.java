@@ -0,0 +1,103 @@
+package io.openio.sds.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+
+public class DownloadHelperTest {
+
+    private static ObjectInfo object(long... sizes) {
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>();
+        long total = 0;
+        for (int pos = 0; pos < sizes.length; pos++) {
+            l.add(new ChunkInfo().pos(Position.simple(pos)).size(sizes[pos])
+                    .url("http://127.0.0.1:6001/" + pos));
+            total += sizes[pos];
+        }
+        return new ObjectInfo().size(total).chunks(l);
+    }
+
+    /*
+     * "pos:from-to" for each target
+     */
+    private static String targets(ObjectInfo oinf, Range range) {
+        StringBuilder sb = new StringBuilder();
+        for (Target t : DownloadHelper.loadTargets(oinf, range)) {
+            if (0 < sb.length())
+                sb.append(' ');
+            sb.append(t.getChunk().get(0).url().substring("http://127.0.0.1:6001/".length()));
+            if (null != t.getRange())
+                sb.append(':').append(t.getRange().from()).append('-').append(t.getRange().to());
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void wholeObject() {
+        List<Target> targets = DownloadHelper.loadTargets(object(100, 100, 50), null);
+        assertEquals(3, targets.size());
+        for (Target t : targets)
+            assertNull(t.getRange());
+    }
+
+    @Test
+    public void inOneChunk() {
+        ObjectInfo oinf = object(100, 100, 50);
+        assertEquals("0:10-20", targets(oinf, Range.between(10, 20)));
+        assertEquals("1:10-20", targets(oinf, Range.between(110, 120)));
+        assertEquals("1:0-100", targets(oinf, Range.between(100, 200)));
+        assertEquals("0:0-100", targets(oinf, Range.upTo(100)));
+    }
+
+    @Test
+    public void acrossChunks() {
+        ObjectInfo oinf = object(100, 100, 50);
+        assertEquals("0:90-100 1:0-100 2:0-10", targets(oinf, Range.between(90, 210)));
+        assertEquals("0:99-100 1:0-1", targets(oinf, Range.between(99, 101)));
+    }
+
+    @Test
+    public void toTheEnd() {
+        ObjectInfo oinf = object(100, 100, 50);
+        assertEquals("1:50-100 2:0-50", targets(oinf, Range.from(150)));
+        assertEquals("2:0-50", targets(oinf, Range.from(200)));
+        // the end is clamped to the size of the object
+        assertEquals("2:40-50", targets(oinf, Range.between(240, 1000)));
+        assertEquals("", targets(oinf, Range.from(250)));
+    }
+
+    @Test
+    public void emptyChunks() {
+        ObjectInfo oinf = object(100, 0, 100, 0);
+        assertEquals("0:50-100 2:0-50", targets(oinf, Range.between(50, 150)));
+        assertEquals("2:0-100", targets(oinf, Range.from(100)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outOfObject() {
+        DownloadHelper.loadTargets(object(100, 100), Range.from(201));
+    }
+
+    @Test
+    public void manyChunks() {
+        long[] sizes = new long[10000];
+        for (int i = 0; i < sizes.length; i++)
+            sizes[i] = 1000;
+        ObjectInfo oinf = object(sizes);
+        assertEquals("9999:500-1000", targets(oinf, Range.from(9999500)));
+        List<Target> targets = DownloadHelper.loadTargets(oinf, Range.between(500, 9999500));
+        assertEquals(10000, targets.size());
+        for (int i = 1; i < targets.size() - 1; i++)
+            assertTrue(targets.get(i).getChunk().get(0).url().endsWith("/" + i));
+    }
+}
@@ -0,0 +1,184 @@
+package io.openio.sds.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.openio.sds.exceptions.OioException;
+
+public class ParallelUploadTest {
+
+    private static final long[] SIZES = { 100000, 100000, 100000, 50000 };
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final byte[] data = new byte[350000];
+    private final ConcurrentHashMap<Integer, byte[]> uploaded =
+            new ConcurrentHashMap<Integer, byte[]>();
+    private final AtomicInteger inflight = new AtomicInteger(0);
+    private final AtomicInteger maxInflight = new AtomicInteger(0);
+
+    public ParallelUploadTest() {
+        new Random(42).nextBytes(data);
+    }
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Records the data of each position, slowly so the uploads overlap
+     */
+    private ParallelUpload upload(int parallelism, final int failing) {
+        return new ParallelUpload(SIZES, parallelism, executor, 10000) {
+
+            @Override
+            protected void upload(int pos, InputStream in) {
+                int n = inflight.incrementAndGet();
+                int max;
+                while (n > (max = maxInflight.get()) && !maxInflight.compareAndSet(max, n))
+                    ;
+                try {
+                    if (pos == failing)
+                        throw new OioException("pos " + pos + " refused");
+                    byte[] b = new byte[(int) SIZES[pos]];
+                    int filled = 0;
+                    while (filled < b.length) {
+                        int read = in.read(b, filled, Math.min(1000, b.length - filled));
+                        if (-1 == read)
+                            throw new OioException("short read");
+                        filled += read;
+                        if (0 == filled % 20000)
+                            Thread.sleep(1);
+                    }
+                    uploaded.put(pos, b);
+                } catch (IOException e) {
+                    throw new OioException("read error", e);
+                } catch (InterruptedException e) {
+                    throw new OioException("interrupted", e);
+                } finally {
+                    inflight.decrementAndGet();
+                }
+            }
+        };
+    }
+
+    private void assertUploaded() throws Exception {
+        long offset = 0;
+        for (int pos = 0; pos < SIZES.length; pos++) {
+            assertArrayEquals(Arrays.copyOfRange(data, (int) offset, (int) (offset + SIZES[pos])),
+                    uploaded.get(pos));
+            offset += SIZES[pos];
+        }
+    }
+
+    private byte[] md5() throws Exception {
+        return MessageDigest.getInstance("MD5").digest(data);
+    }
+
+    @Test
+    public void fromArray() throws Exception {
+        assertArrayEquals(md5(), upload(3, -1).run(SeekableSource.of(data)));
+        assertUploaded();
+        assertTrue(1 < maxInflight.get());
+    }
+
+    @Test
+    public void fromFile() throws Exception {
+        File f = File.createTempFile("upload", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(f);
+            out.write(data);
+            out.close();
+            assertArrayEquals(md5(), upload(2, -1).run(SeekableSource.of(f)));
+            assertUploaded();
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void fromBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 10);
+        buffer.position(10);
+        buffer.put(data);
+        buffer.position(10);
+        assertArrayEquals(md5(), upload(4, -1).run(SeekableSource.of(buffer)));
+        assertUploaded();
+        assertEquals(10, buffer.position());
+    }
+
+    @Test
+    public void fromStream() throws Exception {
+        // 2 read-ahead buffers per position
+        byte[] md5 = upload(2, -1).run(new ByteArrayInputStream(data), 4 * 64 * 1024);
+        assertArrayEquals(md5(), md5);
+        assertUploaded();
+        assertTrue(1 < maxInflight.get());
+    }
+
+    @Test
+    public void sequential() throws Exception {
+        assertArrayEquals(md5(), upload(1, -1).run(new ByteArrayInputStream(data), 1L << 20));
+        assertUploaded();
+        assertEquals(1, maxInflight.get());
+    }
+
+    @Test
+    public void failedPosition() {
+        try {
+            upload(2, 1).run(SeekableSource.of(data));
+            fail("Expected OioException");
+        } catch (OioException e) {
+            assertEquals("pos 1 refused", e.getMessage());
+        }
+    }
+
+    @Test
+    public void failedPositionFromStream() {
+        try {
+            upload(2, 1).run(new ByteArrayInputStream(data), 1L << 20);
+            fail("Expected OioException");
+        } catch (OioException e) {
+            assertEquals("pos 1 refused", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shortStream() {
+        try {
+            upload(2, -1).run(new ByteArrayInputStream(data, 0, 250000), 1L << 20);
+            fail("Expected OioException");
+        } catch (OioException e) {
+            assertEquals("Stream read error", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shortSource() {
+        try {
+            upload(2, -1).run(SeekableSource.of(Arrays.copyOf(data, 250000)));
+            fail("Expected OioException");
+        } catch (OioException e) {
+            // expected
+        }
+    }
+}
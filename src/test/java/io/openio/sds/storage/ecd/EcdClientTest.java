@@ -84,7 +84,7 @@ public class EcdClientTest {
 		Mockito.when(mockedObject.url()).thenReturn(mockedUrl);
 		Mockito.when(mockedObject.size()).thenReturn(size);
 		Mockito.when(mockedObject.metachunksize(Mockito.anyInt()))
-		        .thenReturn(size.intValue());
+		        .thenReturn(size);
 		Mockito.when(mockedObject.oid()).thenReturn("B16B00B5CAFEBABE5962");
 		Mockito.when(mockedObject.version())
 		        .thenReturn(System.currentTimeMillis());
@@ -148,8 +148,7 @@ public class EcdClientTest {
 		ObjectInfo mockedObject = Mockito.mock(ObjectInfo.class);
 		Mockito.when(mockedObject.url()).thenReturn(mockedUrl);
 		Mockito.when(mockedObject.size()).thenReturn(size);
-		Mockito.when(mockedObject.metachunksize(Mockito.anyInt())).thenReturn(
-				size.intValue());
+		Mockito.when(mockedObject.metachunksize(Mockito.anyInt())).thenReturn(size);
 		Mockito.when(mockedObject.oid()).thenReturn("B16B00B5CAFEBABE5962");
 		Mockito.when(mockedObject.version()).thenReturn(
 				System.currentTimeMillis());
@@ -0,0 +1,121 @@
+package io.openio.sds.storage.ecd;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.RespondingSocketProvider.range;
+import static io.openio.sds.TestHelper.data;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.Target;
+
+public class EcdInputStreamTest {
+
+	private static final int METACHUNK_SIZE = 100000;
+	private static final int METACHUNKS = 3;
+	private static final Pattern CHUNK = Pattern.compile(
+	        "X-oio-chunk-meta-chunk-0: http://127.0.0.1:6010/(\\d+)\r\n");
+
+	/* "metachunk:offset" of each request */
+	private final List<String> requests = Collections
+	        .synchronizedList(new ArrayList<String>());
+
+	/*
+	 * An ecd where byte i of the object is value(i).
+	 */
+	private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+		@Override
+		public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+			String head = new String(request, "US-ASCII");
+			Matcher m = CHUNK.matcher(head);
+			assertTrue(m.find());
+			int pos = Integer.parseInt(m.group(1));
+			Range range = range(request);
+			requests.add(pos + ":" + (null == range ? 0 : range.from()));
+			return chunk(range, data(pos * METACHUNK_SIZE, METACHUNK_SIZE), -1);
+		}
+	});
+
+	private EcdInputStream stream(boolean sizes) {
+		List<Target> targets = new ArrayList<Target>();
+		for (int i = 0; i < METACHUNKS; i++) {
+			targets.add(new Target().setChunk(Arrays.asList(new ChunkInfo()
+			        .pos(Position.composed(i, 0))
+			        .size(METACHUNK_SIZE / 6L)
+			        .url("http://127.0.0.1:6010/" + i))));
+		}
+		EcdInputStream in = new EcdInputStream("http://127.0.0.1:6789", targets,
+		        "ec/algo=liberasurecode_rs_vand,k=6,m=3",
+		        OioHttp.http(new OioHttpSettings(), provider), new RequestContext());
+		if (sizes) {
+			long[] l = new long[METACHUNKS];
+			Arrays.fill(l, METACHUNK_SIZE);
+			in.targetSizes(l);
+		}
+		return in;
+	}
+
+	private static void assertData(long offset, InputStream in) throws IOException {
+		byte[] buf = new byte[10];
+		int filled = 0;
+		while (filled < buf.length)
+			filled += in.read(buf, filled, buf.length - filled);
+		assertArrayEquals(data(offset, buf.length), buf);
+	}
+
+	@Test
+	public void skipWholeTargets() throws IOException {
+		InputStream in = stream(true);
+		assertEquals(180000, in.skip(180000));
+		assertData(180000, in);
+		assertEquals(Arrays.asList("1:80000"), requests);
+	}
+
+	@Test
+	public void skipInCurrentTarget() throws IOException {
+		InputStream in = stream(true);
+		assertData(0, in);
+		assertEquals(70000, in.skip(70000));
+		assertData(70010, in);
+		assertEquals(Arrays.asList("0:0", "0:70010"), requests);
+	}
+
+	@Test
+	public void unknownSizes() throws IOException {
+		InputStream in = stream(false);
+		assertEquals(180000, in.skip(180000));
+		assertData(180000, in);
+		assertEquals(Arrays.asList("0:0", "1:0"), requests);
+	}
+
+	@Test
+	public void skipToTheEnd() throws IOException {
+		InputStream in = stream(true);
+		assertData(0, in);
+		assertEquals(METACHUNKS * METACHUNK_SIZE - 10, in.skip(Long.MAX_VALUE));
+		assertEquals(-1, in.read());
+		assertEquals(Arrays.asList("0:0"), requests);
+	}
+}
@@ -0,0 +1,161 @@
+package io.openio.sds.storage.rawx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.storage.Target;
+
+public class HedgedReadTest {
+
+    private static final String SLOW = "http://127.0.0.1:6001/AAAA";
+    private static final String FAST = "http://127.0.0.1:6002/BBBB";
+
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private volatile long slowMillis = 1000;
+    /* interrupted when a rawx answers */
+    private volatile Thread interruptOnAnswer;
+    private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+
+    /*
+     * Each rawx answers its port number as the chunk data, the rawx on
+     * port 6001 after slowMillis, the rawx on port 6003 with an error.
+     */
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            Thread reader = interruptOnAnswer;
+            if (null != reader) {
+                reader.interrupt();
+                // answer once the reader noticed, not before it wakes up
+                long deadline = System.nanoTime() + 1000000000L;
+                while (reader.isInterrupted() && System.nanoTime() < deadline)
+                    Thread.yield();
+            }
+            if (6001 == addr.getPort()) {
+                try {
+                    Thread.sleep(slowMillis);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            String head = 6003 == addr.getPort()
+                    ? "HTTP/1.1 503 Unavailable\r\n"
+                    : "HTTP/1.1 200 OK\r\n";
+            return new ByteArrayInputStream(
+                    (head + "Content-Length: 4\r\n\r\n" + addr.getPort()).getBytes());
+        }
+    }) {
+
+        @Override
+        public Socket getSocket(InetSocketAddress addr) {
+            requests.incrementAndGet();
+            Socket sock = super.getSocket(addr);
+            sockets.add(sock);
+            return sock;
+        }
+    };
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private ObjectInputStream stream(Integer hedgeDelay, String... urls) {
+        ChunkInfo[] chunks = new ChunkInfo[urls.length];
+        for (int i = 0; i < urls.length; i++)
+            chunks[i] = new ChunkInfo().url(urls[i]).size(4L);
+        Target t = new Target().setChunk(Arrays.asList(chunks));
+        OioHttp http = OioHttp.http(new OioHttpSettings(), provider);
+        HedgePolicy policy = new HedgePolicy(executor, new RawxSettings().hedgeDelay(hedgeDelay));
+        return new ObjectInputStream(Collections.singletonList(t), http,
+                new RequestContext()).hedging(policy);
+    }
+
+    private String download(Integer hedgeDelay, String... urls) throws IOException {
+        ObjectInputStream in = stream(hedgeDelay, urls);
+        byte[] buf = new byte[4];
+        assertEquals(4, in.read(buf));
+        assertEquals(-1, in.read(buf));
+        in.close();
+        return new String(buf);
+    }
+
+    @Test
+    public void fastReplicaWins() throws IOException {
+        long start = System.nanoTime();
+        assertEquals("6002", download(50, SLOW, FAST));
+        assertTrue(System.nanoTime() - start < 800000000L);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void noHedgeWhenFastEnough() throws IOException {
+        assertEquals("6002", download(1000, FAST, SLOW));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void disabled() throws IOException {
+        slowMillis = 100;
+        assertEquals("6001", download(-1, SLOW, FAST));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void adaptiveDelay() throws IOException {
+        // no hedging until enough answers have been observed
+        slowMillis = 100;
+        assertEquals("6001", download(0, SLOW, FAST));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void failoverOnError() throws IOException {
+        assertEquals("6002", download(1000, "http://127.0.0.1:6003/CCCC", FAST));
+    }
+
+    @Test
+    public void interruptedReadClosesTheAnswer() throws IOException {
+        interruptOnAnswer = Thread.currentThread();
+        ObjectInputStream in = stream(1000, FAST);
+        try {
+            in.read(new byte[4]);
+            fail("Expected the interrupted read to fail");
+        } catch (Exception e) {
+            // interrupted before the answer came
+        } finally {
+            interruptOnAnswer = null;
+            Thread.interrupted();
+        }
+        // by its download, which finds the chunk claimed by the reader
+        verify(sockets.get(0), timeout(1000)).close();
+    }
+}
@@ -0,0 +1,204 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.TestHelper.value;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+import io.openio.sds.storage.Target;
+
+/**
+ * Chunks larger than 2 GiB, made of zeros followed by a small tail, so they
+ * are streamed without being stored.
+ */
+public class LargeChunkTest {
+
+    private static final long SIZE = (1L << 31) + 1024 * 1024;
+    private static final int TAIL = 16;
+    private static final Pattern REQUEST = Pattern.compile(
+            "(GET|PUT) /\\S* .*?\r\n\r\n", Pattern.DOTALL);
+    private static final Pattern RANGE = Pattern.compile("Range: bytes=(\\d+)-(\\d*)\r\n");
+    private static final Pattern LENGTH = Pattern.compile("Content-Length: (\\d+)\r\n");
+
+    /* "method:from" of the GET requests, "method:length" of the PUT requests */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    /* body bytes received by the PUT requests */
+    private volatile long received = 0;
+
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            Matcher m = REQUEST.matcher(new String(request, "US-ASCII"));
+            assertTrue(m.lookingAt());
+            if ("PUT".equals(m.group(1))) {
+                Matcher l = LENGTH.matcher(m.group());
+                assertTrue(l.find());
+                requests.add("PUT:" + l.group(1));
+                return new ByteArrayInputStream(
+                        "HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n".getBytes());
+            }
+            Matcher r = RANGE.matcher(m.group());
+            long from = r.find() ? Long.parseLong(r.group(1)) : 0L;
+            requests.add("GET:" + from);
+            String status = 0 == from ? "HTTP/1.1 200 OK\r\n"
+                    : "HTTP/1.1 206 Partial Content\r\n";
+            return new SequenceInputStream(new ByteArrayInputStream(
+                    (status + "Content-Length: " + (SIZE - from) + "\r\n\r\n").getBytes()),
+                    new LargeStream(from));
+        }
+    }) {
+
+        /*
+         * Only keep the head of the requests, and count the body bytes
+         */
+        @Override
+        protected OutputStream output(InetSocketAddress addr, final ByteArrayOutputStream head) {
+            return new OutputStream() {
+                private boolean inBody = false;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (inBody) {
+                        received += len;
+                        return;
+                    }
+                    head.write(b, off, len);
+                    String s = head.toString("US-ASCII");
+                    int end = s.indexOf("\r\n\r\n");
+                    if (0 <= end) {
+                        inBody = true;
+                        received += head.size() - end - 4;
+                    }
+                }
+            };
+        }
+    };
+
+    /*
+     * Byte i of the chunk
+     */
+    private static byte chunkByte(long i) {
+        return i < SIZE - TAIL ? 0 : value(i);
+    }
+
+    /*
+     * The chunk, from an offset
+     */
+    private static class LargeStream extends InputStream {
+
+        private long offset;
+
+        LargeStream(long offset) {
+            this.offset = offset;
+        }
+
+        @Override
+        public int read() throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (offset >= SIZE)
+                return -1;
+            int n = (int) Math.min(len, SIZE - offset);
+            Arrays.fill(b, off, off + n, (byte) 0);
+            for (long i = Math.max(offset, SIZE - TAIL); i < offset + n; i++)
+                b[off + (int) (i - offset)] = chunkByte(i);
+            offset += n;
+            return n;
+        }
+    }
+
+    private ObjectInputStream stream() {
+        List<Target> targets = Arrays.asList(new Target().setChunk(Arrays.asList(
+                new ChunkInfo().url("http://127.0.0.1:6001/0").size(SIZE))));
+        return new ObjectInputStream(targets, OioHttp.http(new OioHttpSettings(), provider),
+                new RequestContext());
+    }
+
+    private static void assertTail(InputStream in) throws IOException {
+        byte[] expected = new byte[TAIL];
+        for (int i = 0; i < TAIL; i++)
+            expected[i] = chunkByte(SIZE - TAIL + i);
+        byte[] buf = new byte[TAIL];
+        int filled = 0;
+        while (filled < buf.length)
+            filled += in.read(buf, filled, buf.length - filled);
+        assertArrayEquals(expected, buf);
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void download() throws IOException {
+        InputStream in = stream();
+        byte[] buf = new byte[1024 * 1024];
+        long total = 0;
+        while (total < SIZE - TAIL)
+            total += in.read(buf, 0, (int) Math.min(buf.length, SIZE - TAIL - total));
+        assertTail(in);
+        in.close();
+        assertEquals(Arrays.asList("GET:0"), requests);
+    }
+
+    @Test
+    public void skipBeyond2GiB() throws IOException {
+        InputStream in = stream();
+        assertEquals(SIZE - TAIL, in.skip(SIZE - TAIL));
+        assertTail(in);
+        in.close();
+        assertEquals(Arrays.asList("GET:" + (SIZE - TAIL)), requests);
+    }
+
+    @Test
+    public void upload() {
+        OioHttpSettings settings = new OioHttpSettings()
+                .receiveBufferSize(1024 * 1024)
+                .expectContinueThreshold(-1L);
+        RawxClient client = new RawxClient(OioHttp.http(settings, provider),
+                new RawxSettings().http(settings));
+        ObjectInfo oinf = new ObjectInfo()
+                .url(OioUrl.url("account", "container", "object"))
+                .oid("0123456789ABCDEF")
+                .version(1234567890L)
+                .size(SIZE)
+                .chunks(Arrays.asList(new ChunkInfo().pos(Position.simple(0)).size(SIZE)
+                        .url("http://127.0.0.1:6001/0123456789ABCDEF")));
+        client.uploadChunks(oinf, new LargeStream(0), new RequestContext());
+        assertEquals(Arrays.asList("PUT:" + SIZE), requests);
+        assertEquals(SIZE, received);
+        assertEquals(SIZE, oinf.chunks().get(0).size().longValue());
+    }
+}
@@ -0,0 +1,168 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.RespondingSocketProvider.range;
+import static io.openio.sds.TestHelper.data;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+
+public class ObjectChannelTest {
+
+    private static final long[] CHUNK_SIZES = { 100, 100, 50 };
+    private static final int SIZE = 250;
+    private static final Pattern REQUEST = Pattern.compile("GET /(\\d+) ");
+
+    /* "chunk:range" of each request */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    /*
+     * Byte i of the object is value(i).
+     */
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            Matcher m = REQUEST.matcher(new String(request, "US-ASCII"));
+            assertTrue(m.lookingAt());
+            int pos = Integer.parseInt(m.group(1));
+            Range range = range(request);
+            assertNotNull(range);
+            requests.add(pos + ":" + range.rangeValue());
+            return chunk(request, data(pos * 100, (int) CHUNK_SIZES[pos]));
+        }
+    });
+
+    private SeekableByteChannel open(RawxClient client) {
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>();
+        for (int pos = 0; pos < CHUNK_SIZES.length; pos++)
+            l.add(new ChunkInfo().pos(Position.simple(pos)).size(CHUNK_SIZES[pos])
+                    .url("http://127.0.0.1:6001/" + pos));
+        ObjectInfo oinf = new ObjectInfo().size((long) SIZE).chunks(l);
+        return client.openObject(oinf, new RequestContext());
+    }
+
+    private RawxClient client(long cacheSize) {
+        return new RawxClient(OioHttp.http(new OioHttpSettings(), provider),
+                new RawxSettings().blockSize(32).blockCacheSize(cacheSize));
+    }
+
+    private static byte[] read(SeekableByteChannel ch, long position, int len)
+            throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        ch.position(position);
+        while (buf.hasRemaining() && -1 != ch.read(buf))
+            ;
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    @Test
+    public void randomReads() throws IOException {
+        SeekableByteChannel ch = open(client(1024));
+        assertEquals(SIZE, ch.size());
+        assertArrayEquals(data(240, 10), read(ch, 240, 10));
+        assertEquals(SIZE, ch.position());
+        assertArrayEquals(data(5, 10), read(ch, 5, 10));
+        assertEquals(15, ch.position());
+        // across the chunk boundaries
+        assertArrayEquals(data(90, 120), read(ch, 90, 120));
+        assertArrayEquals(data(0, SIZE), read(ch, 0, 1000));
+        ch.close();
+    }
+
+    @Test
+    public void alignedBlocks() throws IOException {
+        SeekableByteChannel ch = open(client(1024));
+        read(ch, 240, 10);
+        read(ch, 120, 20);
+        assertEquals(Arrays.asList("2:32-50", "1:0-32", "1:32-64"), requests);
+    }
+
+    @Test
+    public void cachedBlocks() throws IOException {
+        RawxClient client = client(1024);
+        SeekableByteChannel ch = open(client);
+        assertArrayEquals(data(240, 10), read(ch, 240, 10));
+        assertEquals(1, requests.size());
+        assertArrayEquals(data(232, 18), read(ch, 232, 18));
+        // another channel over the same object
+        assertArrayEquals(data(235, 10), read(open(client), 235, 10));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void noCache() throws IOException {
+        SeekableByteChannel ch = open(client(0));
+        read(ch, 240, 10);
+        read(ch, 240, 10);
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    public void endOfObject() throws IOException {
+        SeekableByteChannel ch = open(client(1024));
+        ch.position(SIZE);
+        assertEquals(-1, ch.read(ByteBuffer.allocate(10)));
+        ch.position(SIZE + 10);
+        assertEquals(-1, ch.read(ByteBuffer.allocate(10)));
+        assertTrue(requests.isEmpty());
+    }
+
+    @Test
+    public void closed() throws IOException {
+        SeekableByteChannel ch = open(client(1024));
+        ch.close();
+        assertTrue(!ch.isOpen());
+        try {
+            ch.read(ByteBuffer.allocate(10));
+            fail("Closed channel should not be readable");
+        } catch (ClosedChannelException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void blockCacheEviction() {
+        BlockCache cache = new BlockCache(100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertNotNull(cache.get("a"));
+        cache.put("c", new byte[40]);
+        // "b" is the least recently used
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.size());
+        cache.put("d", new byte[101]);
+        assertNull(cache.get("d"));
+    }
+}
@@ -0,0 +1,106 @@
+package io.openio.sds.storage.rawx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.common.Hex;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+
+public class ParallelChunkUploadTest {
+
+    private static final int CHUNK_SIZE = 100000;
+    private static final int CHUNKS = 4;
+    private static final int REPLICAS = 2;
+    private static final Pattern REQUEST = Pattern.compile(
+            "PUT /(\\S+) .*?\r\n\r\n", Pattern.DOTALL);
+
+    private final byte[] data = new byte[CHUNKS * CHUNK_SIZE - 1000];
+    /* body received by each chunk */
+    private final ConcurrentHashMap<String, byte[]> bodies = new ConcurrentHashMap<String, byte[]>();
+
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            Matcher m = REQUEST.matcher(new String(request, "ISO-8859-1"));
+            assertTrue(m.lookingAt());
+            bodies.put(m.group(1), Arrays.copyOfRange(request, m.end(), request.length));
+            return new ByteArrayInputStream(
+                    "HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n".getBytes());
+        }
+    });
+
+    public ParallelChunkUploadTest() {
+        new Random(7).nextBytes(data);
+    }
+
+    private RawxClient client() {
+        RawxSettings settings = new RawxSettings().uploadParallelism(3).uploadBudget(1L << 20);
+        return new RawxClient(OioHttp.http(settings.http(), provider), settings);
+    }
+
+    private ObjectInfo object() {
+        List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+        for (int pos = 0; pos < CHUNKS; pos++) {
+            for (int r = 0; r < REPLICAS; r++) {
+                chunks.add(new ChunkInfo().pos(Position.simple(pos)).size((long) CHUNK_SIZE)
+                        .url("http://127.0.0.1:600" + r + "/" + pos + "-" + r));
+            }
+        }
+        return new ObjectInfo()
+                .url(OioUrl.url("account", "container", "object"))
+                .oid("0123456789ABCDEF")
+                .version(1234567890L)
+                .size((long) data.length)
+                .chunks(chunks);
+    }
+
+    private void assertUploaded(ObjectInfo oinf) throws Exception {
+        for (int pos = 0; pos < CHUNKS; pos++) {
+            byte[] expected = Arrays.copyOfRange(data, pos * CHUNK_SIZE,
+                    Math.min(data.length, (pos + 1) * CHUNK_SIZE));
+            for (int r = 0; r < REPLICAS; r++)
+                assertArrayEquals(expected, bodies.get(pos + "-" + r));
+            assertEquals(expected.length, oinf.sortedChunks().get(pos).get(0).size().longValue());
+        }
+        assertEquals(Hex.toHex(MessageDigest.getInstance("MD5").digest(data)), oinf.hash());
+    }
+
+    @Test
+    public void fromArray() throws Exception {
+        ObjectInfo oinf = object();
+        client().uploadChunks(oinf, data, new RequestContext());
+        assertUploaded(oinf);
+    }
+
+    @Test
+    public void fromStream() throws Exception {
+        ObjectInfo oinf = object();
+        client().uploadChunks(oinf, new ByteArrayInputStream(data), new RequestContext());
+        assertUploaded(oinf);
+    }
+}
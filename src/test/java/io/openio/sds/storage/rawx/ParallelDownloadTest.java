@@ -0,0 +1,135 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.TestHelper.data;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Position;
+
+public class ParallelDownloadTest {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final Pattern REQUEST = Pattern.compile("GET /(\\d+) ");
+
+    private final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+    /* the rawx on this port answers 503 */
+    private volatile int failingPort = -1;
+    private File file;
+
+    /*
+     * Byte i of the object is value(i).
+     */
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            threads.add(Thread.currentThread().getName());
+            Matcher m = REQUEST.matcher(new String(request, "US-ASCII"));
+            assertTrue(m.lookingAt());
+            int pos = Integer.parseInt(m.group(1));
+            if (failingPort == addr.getPort())
+                return new ByteArrayInputStream(
+                        "HTTP/1.1 503 Unavailable\r\nContent-Length: 0\r\n\r\n".getBytes());
+            return chunk(request, data(pos * CHUNK_SIZE, CHUNK_SIZE));
+        }
+    });
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("oio-download", ".bin");
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    private static ObjectInfo object(int chunks) {
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>();
+        for (int pos = 0; pos < chunks; pos++) {
+            for (int port = 6001; port <= 6002; port++) {
+                l.add(new ChunkInfo().pos(Position.simple(pos)).size((long) CHUNK_SIZE)
+                        .url("http://127.0.0.1:" + port + "/" + pos));
+            }
+        }
+        return new ObjectInfo().size((long) chunks * CHUNK_SIZE).chunks(l);
+    }
+
+    private void download(ObjectInfo oinf, int parallelism) throws IOException {
+        RawxClient client = new RawxClient(OioHttp.http(new OioHttpSettings(), provider),
+                new RawxSettings());
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            client.downloadObject(oinf, channel, parallelism, new RequestContext());
+        }
+    }
+
+    @Test
+    public void parallel() throws IOException {
+        download(object(20), 4);
+        assertArrayEquals(data(0, 20 * CHUNK_SIZE), Files.readAllBytes(file.toPath()));
+        assertTrue(1 < threads.size());
+    }
+
+    @Test
+    public void sequential() throws IOException {
+        download(object(5), 1);
+        assertArrayEquals(data(0, 5 * CHUNK_SIZE), Files.readAllBytes(file.toPath()));
+        assertEquals(1, threads.size());
+    }
+
+    @Test
+    public void failover() throws IOException {
+        failingPort = 6001;
+        download(object(5), 3);
+        assertArrayEquals(data(0, 5 * CHUNK_SIZE), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void failure() throws IOException {
+        ObjectInfo oinf = object(5);
+        // the last chunk is only on the failing rawx
+        failingPort = 6002;
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>(oinf.chunks());
+        l.remove(8);
+        oinf.chunks(l);
+        try {
+            download(oinf, 3);
+            fail("Download should fail");
+        } catch (OioException e) {
+            assertTrue(e.getMessage().contains("at pos 4"));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.RespondingSocketProvider.range;
+import static io.openio.sds.TestHelper.readAll;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.storage.Target;
+
+public class PrefetchTest {
+
+    private static final int CHUNK_SIZE = 8;
+    private static final Pattern REQUEST = Pattern.compile("GET /(\\d+) ");
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    /* the chunks requested, in order */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    /* the rawx on this port breaks the connection after sending 4 bytes */
+    private volatile int brokenPort = -1;
+
+    /*
+     * Chunk n is made of CHUNK_SIZE times the letter 'A' + n.
+     */
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            Matcher m = REQUEST.matcher(new String(request, "US-ASCII"));
+            assertTrue(m.lookingAt());
+            int pos = Integer.parseInt(m.group(1));
+            requests.add(m.group(1));
+            byte[] data = new byte[CHUNK_SIZE];
+            Arrays.fill(data, (byte) ('A' + pos));
+            return chunk(range(request), data, brokenPort == addr.getPort() ? 4 : -1);
+        }
+    });
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private ObjectInputStream stream(int chunks, int depth, int budget) {
+        List<Target> targets = new ArrayList<Target>();
+        for (int i = 0; i < chunks; i++) {
+            targets.add(new Target().setChunk(Arrays.asList(
+                    new ChunkInfo().url("http://127.0.0.1:6001/" + i).size((long) CHUNK_SIZE),
+                    new ChunkInfo().url("http://127.0.0.1:6002/" + i).size((long) CHUNK_SIZE))));
+        }
+        return new ObjectInputStream(targets, OioHttp.http(new OioHttpSettings(), provider),
+                new RequestContext()).prefetching(executor, depth, budget);
+    }
+
+    private static List<String> sorted(List<String> l) {
+        List<String> res = new ArrayList<String>(l);
+        Collections.sort(res);
+        return res;
+    }
+
+    /*
+     * The data of the chunks, from an offset
+     */
+    private static byte[] expected(int chunks, int from) {
+        byte[] res = new byte[chunks * CHUNK_SIZE - from];
+        for (int i = 0; i < res.length; i++)
+            res[i] = (byte) ('A' + (from + i) / CHUNK_SIZE);
+        return res;
+    }
+
+    @Test
+    public void prefetchNextChunks() throws Exception {
+        ObjectInputStream in = stream(5, 2, 1024);
+        assertEquals('A', in.read());
+        // the next 2 chunks are being downloaded
+        long deadline = System.currentTimeMillis() + 5000;
+        while (3 > requests.size() && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(Arrays.asList("0", "1", "2"), sorted(requests));
+        assertArrayEquals(expected(5, 1), readAll(in, 3));
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4"), sorted(requests));
+    }
+
+    @Test
+    public void budgetSmallerThanChunks() throws IOException {
+        // 3 bytes buffered per prefetched chunk, the rest read when needed
+        assertArrayEquals(expected(5, 0), readAll(stream(5, 2, 6), 3));
+    }
+
+    @Test
+    public void noBudget() throws IOException {
+        assertArrayEquals(expected(3, 0), readAll(stream(3, 1, 0), 3));
+    }
+
+    @Test
+    public void disabled() throws IOException {
+        ObjectInputStream in = stream(3, 0, 1024);
+        assertEquals('A', in.read());
+        assertEquals(Arrays.asList("0"), requests);
+        assertArrayEquals(expected(3, 1), readAll(in, 3));
+    }
+
+    @Test
+    public void resumeBrokenPrefetch() throws IOException {
+        // the prefetched data breaks after 4 bytes, the rest comes from
+        // the other replica
+        brokenPort = 6001;
+        assertArrayEquals(expected(3, 0), readAll(stream(3, 2, 1024), 3));
+    }
+
+    @Test
+    public void closeWhilePrefetching() throws IOException {
+        ObjectInputStream in = stream(10, 4, 1024);
+        assertEquals('A', in.read());
+        in.close();
+        assertEquals(-1, in.read());
+    }
+}
@@ -0,0 +1,132 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.RespondingSocketProvider.range;
+import static io.openio.sds.TestHelper.readAll;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.Target;
+
+public class ResumedReadTest {
+
+    private static final String DATA = "ABCDEFGH";
+
+    /* the Range header of each request, "" when there is none */
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    /*
+     * A rawx serving DATA, with the Range header of the request, which
+     * breaks the connection after sending "breakAfter" bytes of the body,
+     * and ignores the Range header if "ignoreRange" is set.
+     */
+    private AbstractSocketProvider rawx(int breakAfter, boolean ignoreRange) {
+        return new RespondingSocketProvider(responder(breakAfter, ignoreRange));
+    }
+
+    private Responder responder(final int breakAfter, final boolean ignoreRange) {
+        return new Responder() {
+
+            @Override
+            public InputStream respond(InetSocketAddress addr, byte[] request) {
+                Range range = range(request);
+                ranges.add(null == range ? "" : range.rangeValue());
+                return chunk(ignoreRange ? null : range, DATA.getBytes(), breakAfter);
+            }
+        };
+    }
+
+    /*
+     * Every rawx breaks on the first request only.
+     */
+    private AbstractSocketProvider firstBreaks(final int breakAfter, final boolean ignoreRange) {
+        final Responder broken = responder(breakAfter, false);
+        final Responder working = responder(-1, ignoreRange);
+        return new RespondingSocketProvider(new Responder() {
+            private boolean first = true;
+
+            @Override
+            public synchronized InputStream respond(InetSocketAddress addr, byte[] request)
+                    throws IOException {
+                if (first) {
+                    first = false;
+                    return broken.respond(addr, request);
+                }
+                return working.respond(addr, request);
+            }
+        });
+    }
+
+    private ObjectInputStream stream(AbstractSocketProvider provider, Range range) {
+        Target t = new Target().setRange(range).setChunk(Arrays.asList(
+                new ChunkInfo().url("http://127.0.0.1:6001/AAAA").size(8L),
+                new ChunkInfo().url("http://127.0.0.1:6002/AAAA").size(8L)));
+        return new ObjectInputStream(Collections.singletonList(t),
+                OioHttp.http(new OioHttpSettings(), provider), new RequestContext());
+    }
+
+    @Test
+    public void resumeFromNextReplica() throws IOException {
+        assertArrayEquals(DATA.getBytes(), readAll(stream(firstBreaks(3, false), null), 3));
+        assertEquals(Arrays.asList("", "3-"), ranges);
+    }
+
+    @Test
+    public void resumeRange() throws IOException {
+        assertArrayEquals("CDEFG".getBytes(),
+                readAll(stream(firstBreaks(2, false), Range.between(2, 7)), 3));
+        assertEquals(Arrays.asList("2-7", "4-7"), ranges);
+    }
+
+    @Test
+    public void resumeWhenRangeIgnored() throws IOException {
+        assertArrayEquals(DATA.getBytes(), readAll(stream(firstBreaks(5, true), null), 3));
+        assertEquals(Arrays.asList("", "5-"), ranges);
+    }
+
+    @Test
+    public void resumeRangeWhenRangeIgnored() throws IOException {
+        assertArrayEquals("CDEFG".getBytes(),
+                readAll(stream(firstBreaks(2, true), Range.between(2, 7)), 3));
+        assertEquals(Arrays.asList("2-7", "4-7"), ranges);
+    }
+
+    @Test
+    public void rangeIgnored() throws IOException {
+        assertArrayEquals("CDEFG".getBytes(),
+                readAll(stream(rawx(-1, true), Range.between(2, 7)), 3));
+        assertEquals(Arrays.asList("2-7"), ranges);
+    }
+
+    @Test
+    public void allReplicasBroken() throws IOException {
+        InputStream in = stream(rawx(0, false), null);
+        try {
+            in.read(new byte[8]);
+            fail("Broken download should fail");
+        } catch (IOException e) {
+            // expected
+        }
+        // the first download, then a resume from each replica
+        assertEquals(Arrays.asList("", "", ""), ranges);
+    }
+}
@@ -0,0 +1,134 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.RespondingSocketProvider.range;
+import static io.openio.sds.TestHelper.data;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.Target;
+
+public class SkipTest {
+
+    private static final int CHUNK_SIZE = 100000;
+    private static final int CHUNKS = 3;
+    private static final Pattern REQUEST = Pattern.compile("GET /(\\d+) ");
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    /* "chunk:offset" of each request */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+    /*
+     * Byte i of the object is value(i).
+     */
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) throws IOException {
+            Matcher m = REQUEST.matcher(new String(request, "US-ASCII"));
+            assertTrue(m.lookingAt());
+            int pos = Integer.parseInt(m.group(1));
+            Range range = range(request);
+            requests.add(pos + ":" + (null == range ? 0 : range.from()));
+            return chunk(request, data(pos * CHUNK_SIZE, CHUNK_SIZE));
+        }
+    });
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private ObjectInputStream stream(int prefetchDepth) {
+        List<Target> targets = new ArrayList<Target>();
+        for (int i = 0; i < CHUNKS; i++) {
+            targets.add(new Target().setChunk(Arrays.asList(
+                    new ChunkInfo().url("http://127.0.0.1:6001/" + i).size((long) CHUNK_SIZE))));
+        }
+        return new ObjectInputStream(targets, OioHttp.http(new OioHttpSettings(), provider),
+                new RequestContext()).prefetching(executor, prefetchDepth, 1024);
+    }
+
+    private static void assertData(long offset, InputStream in) throws IOException {
+        byte[] buf = new byte[10];
+        int filled = 0;
+        while (filled < buf.length)
+            filled += in.read(buf, filled, buf.length - filled);
+        assertArrayEquals(data(offset, buf.length), buf);
+    }
+
+    @Test
+    public void skipWholeChunks() throws IOException {
+        InputStream in = stream(0);
+        assertEquals(180000, in.skip(180000));
+        assertData(180000, in);
+        // the first chunk is never downloaded
+        assertEquals(Arrays.asList("1:80000"), requests);
+    }
+
+    @Test
+    public void skipInCurrentChunk() throws IOException {
+        InputStream in = stream(0);
+        assertData(0, in);
+        assertEquals(70000, in.skip(70000));
+        assertData(70010, in);
+        assertEquals(Arrays.asList("0:0", "0:70010"), requests);
+    }
+
+    @Test
+    public void smallSkipIsRead() throws IOException {
+        InputStream in = stream(0);
+        assertData(0, in);
+        assertEquals(1000, in.skip(1000));
+        assertData(1010, in);
+        // across a chunk boundary too
+        assertEquals(CHUNK_SIZE - 1020 + 5, in.skip(CHUNK_SIZE - 1020 + 5));
+        assertData(CHUNK_SIZE + 5, in);
+        assertEquals(Arrays.asList("0:0", "1:0"), requests);
+    }
+
+    @Test
+    public void skipToTheEnd() throws IOException {
+        InputStream in = stream(0);
+        assertData(0, in);
+        assertEquals(CHUNKS * CHUNK_SIZE - 10, in.skip(Long.MAX_VALUE));
+        assertEquals(-1, in.read());
+        assertEquals(0, in.skip(100000));
+        assertEquals(Arrays.asList("0:0"), requests);
+    }
+
+    @Test
+    public void skipWithPrefetch() throws IOException {
+        InputStream in = stream(1);
+        assertData(0, in);
+        assertEquals(250000, in.skip(250000));
+        assertData(250010, in);
+        assertEquals(CHUNKS * CHUNK_SIZE - 250020, in.skip(Long.MAX_VALUE));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+}
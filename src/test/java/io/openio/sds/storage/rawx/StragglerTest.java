@@ -0,0 +1,222 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.common.OioConstants.CHUNK_META_CHUNK_HASH;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+
+public class StragglerTest {
+
+    private static final int REPLICAS = 3;
+    private static final int SLOW_PORT = 6002;
+    private static final Pattern REQUEST = Pattern.compile(
+            "PUT /(\\S+) .*?\r\n\r\n", Pattern.DOTALL);
+
+    private final byte[] data = new byte[512 * 1024];
+    /* bytes received by each chunk, complete or not */
+    private final ConcurrentHashMap<String, ByteArrayOutputStream> requests =
+            new ConcurrentHashMap<String, ByteArrayOutputStream>();
+    /* how long the slow rawx takes to write each buffer */
+    private volatile long slowWriteMillis = 0;
+    /* how long the slow rawx takes to write the first buffer, on top */
+    private volatile long stallMillis = 0;
+
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) {
+            return new ByteArrayInputStream(("HTTP/1.1 201 Created\r\n"
+                    + CHUNK_META_CHUNK_HASH + ": " + addr.getPort() + "\r\n"
+                    + "Content-Length: 0\r\n\r\n").getBytes());
+        }
+    }) {
+
+        @Override
+        protected OutputStream output(final InetSocketAddress addr,
+                final ByteArrayOutputStream req) {
+            requests.put(addr.toString() + "#" + System.identityHashCode(req), req);
+            return new OutputStream() {
+                private boolean closed = false;
+                private boolean stalled = false;
+
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (SLOW_PORT == addr.getPort()) {
+                        pause(slowWriteMillis + (stalled ? 0 : stallMillis));
+                        stalled = true;
+                    }
+                    synchronized (req) {
+                        req.write(b, off, len);
+                    }
+                }
+
+                /*
+                 * Like a write blocked on a full socket buffer: an
+                 * interruption does not end it, closing the socket does.
+                 */
+                private synchronized void pause(long millis) throws IOException {
+                    boolean interrupted = false;
+                    long deadline = System.currentTimeMillis() + millis;
+                    long left;
+                    while (!closed && 0 < (left = deadline - System.currentTimeMillis())) {
+                        try {
+                            wait(left);
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (interrupted)
+                        Thread.currentThread().interrupt();
+                    if (closed)
+                        throw new IOException("Socket closed");
+                }
+
+                @Override
+                public synchronized void close() {
+                    closed = true;
+                    notifyAll();
+                }
+            };
+        }
+    };
+
+    public StragglerTest() {
+        new Random(11).nextBytes(data);
+    }
+
+    private RawxClient client(RawxSettings settings) {
+        settings.http().expectContinueThreshold(-1L);
+        return new RawxClient(OioHttp.http(settings.http(), provider), settings);
+    }
+
+    private ObjectInfo object() {
+        List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+        for (int r = 0; r < REPLICAS; r++) {
+            chunks.add(new ChunkInfo().pos(Position.simple(0)).size((long) data.length)
+                    .url("http://127.0.0.1:600" + r + "/0-" + r));
+        }
+        return new ObjectInfo()
+                .url(OioUrl.url("account", "container", "object"))
+                .oid("0123456789ABCDEF")
+                .version(1234567890L)
+                .size((long) data.length)
+                .chunks(chunks);
+    }
+
+    /*
+     * The body received by a chunk, null if incomplete
+     */
+    private byte[] body(String chunk) {
+        for (ByteArrayOutputStream req : requests.values()) {
+            byte[] request;
+            synchronized (req) {
+                request = req.toByteArray();
+            }
+            Matcher m = REQUEST.matcher(new String(request, 0,
+                    Math.min(request.length, 4096), ISO_8859_1));
+            if (m.lookingAt() && m.group(1).equals(chunk)) {
+                byte[] body = Arrays.copyOfRange(request, m.end(), request.length);
+                return body.length == data.length ? body : null;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * The bytes received by a rawx so far
+     */
+    private long received(int port) {
+        long received = 0;
+        for (Entry<String, ByteArrayOutputStream> e : requests.entrySet()) {
+            if (e.getKey().contains(":" + port + "#")) {
+                synchronized (e.getValue()) {
+                    received += e.getValue().size();
+                }
+            }
+        }
+        return received;
+    }
+
+    @Test
+    public void laggingReplicaIsShed() throws Exception {
+        slowWriteMillis = 20;
+        ObjectInfo oinf = object();
+        RawxSettings settings = new RawxSettings().quorumWrite(true)
+                .stragglerLag(64L * 1024).stragglerTimeout(-1);
+        client(settings).uploadChunks(oinf, new ByteArrayInputStream(data),
+                new RequestContext());
+        assertArrayEquals(data, body("0-0"));
+        assertArrayEquals(data, body("0-1"));
+        assertNull(body("0-2"));
+    }
+
+    @Test
+    public void lateReplicaIsAbandonedAfterTheQuorum() throws Exception {
+        stallMillis = 1000;
+        ObjectInfo oinf = object();
+        // the whole chunk fits within the lag, only the timeout applies
+        RawxSettings settings = new RawxSettings().quorumWrite(true)
+                .stragglerLag(1L << 20).stragglerTimeout(100);
+        long start = System.nanoTime();
+        client(settings).uploadChunks(oinf, data, new RequestContext());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < stallMillis);
+        assertArrayEquals(data, body("0-0"));
+        assertArrayEquals(data, body("0-1"));
+        assertNull(body("0-2"));
+        // the slow rawx gets nothing more once its stall is over
+        long received = received(SLOW_PORT);
+        Thread.sleep(stallMillis + 500 - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        assertEquals(received, received(SLOW_PORT));
+        List<ChunkInfo> chunks = oinf.sortedChunks().get(0);
+        assertEquals("6000", chunks.get(0).hash());
+        assertEquals("6001", chunks.get(1).hash());
+        assertNull(chunks.get(2).hash());
+        assertEquals(Long.valueOf(data.length), chunks.get(2).size());
+    }
+
+    @Test
+    public void everyReplicaIsWaitedForWithoutQuorum() throws Exception {
+        slowWriteMillis = 1;
+        ObjectInfo oinf = object();
+        RawxSettings settings = new RawxSettings().stragglerLag(64L * 1024);
+        client(settings).uploadChunks(oinf, new ByteArrayInputStream(data),
+                new RequestContext());
+        for (int r = 0; r < REPLICAS; r++)
+            assertArrayEquals(data, body("0-" + r));
+    }
+}
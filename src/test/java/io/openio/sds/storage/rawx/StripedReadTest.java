@@ -0,0 +1,110 @@
+package io.openio.sds.storage.rawx;
+
+import static io.openio.sds.RespondingSocketProvider.chunk;
+import static io.openio.sds.RespondingSocketProvider.range;
+import static io.openio.sds.TestHelper.data;
+import static io.openio.sds.TestHelper.readAll;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.RespondingSocketProvider;
+import io.openio.sds.RespondingSocketProvider.Responder;
+import io.openio.sds.common.AbstractSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.Target;
+
+public class StripedReadTest {
+
+    private static final int CHUNK_SIZE = 100;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    /* "port:range" of each request */
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    /* the rawx on this port answers 503 */
+    private volatile int failingPort = -1;
+
+    /*
+     * Byte i of the chunk is value(i).
+     */
+    private AbstractSocketProvider provider = new RespondingSocketProvider(new Responder() {
+
+        @Override
+        public InputStream respond(InetSocketAddress addr, byte[] request) {
+            Range range = range(request);
+            assertNotNull(range);
+            requests.add(addr.getPort() + ":" + range.rangeValue());
+            if (failingPort == addr.getPort())
+                return new ByteArrayInputStream(
+                        "HTTP/1.1 503 Unavailable\r\nContent-Length: 0\r\n\r\n".getBytes());
+            return chunk(request, data(0, CHUNK_SIZE));
+        }
+    });
+
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+
+    private ObjectInputStream stream(Range range, int stripeSize) {
+        Target t = new Target().setRange(range).setChunk(Arrays.asList(
+                new ChunkInfo().url("http://127.0.0.1:6001/AAAA").size((long) CHUNK_SIZE),
+                new ChunkInfo().url("http://127.0.0.1:6002/AAAA").size((long) CHUNK_SIZE),
+                new ChunkInfo().url("http://127.0.0.1:6003/AAAA").size((long) CHUNK_SIZE)));
+        return new ObjectInputStream(Collections.singletonList(t),
+                OioHttp.http(new OioHttpSettings(), provider), new RequestContext())
+                .prefetching(executor, 0, 0)
+                .striping(stripeSize);
+    }
+
+    private List<String> sortedRequests() {
+        List<String> res = new ArrayList<String>(requests);
+        Collections.sort(res);
+        return res;
+    }
+
+    @Test
+    public void stripes() throws IOException {
+        assertArrayEquals(data(0, CHUNK_SIZE), readAll(stream(null, 30), 7));
+        assertEquals(Arrays.asList("6001:0-30", "6001:90-100", "6002:30-60", "6003:60-90"),
+                sortedRequests());
+    }
+
+    @Test
+    public void stripedRange() throws IOException {
+        assertArrayEquals(data(10, 80), readAll(stream(Range.between(10, 90), 40), 7));
+        assertEquals(Arrays.asList("6001:10-50", "6002:50-90"), sortedRequests());
+    }
+
+    @Test
+    public void smallChunk() throws IOException {
+        assertArrayEquals(data(10, 30), readAll(stream(Range.between(10, 40), 40), 7));
+        assertEquals(Arrays.asList("6001:10-40"), requests);
+    }
+
+    @Test
+    public void failover() throws IOException {
+        failingPort = 6002;
+        assertArrayEquals(data(0, CHUNK_SIZE), readAll(stream(null, 30), 7));
+        assertEquals(Arrays.asList("6001:0-30", "6001:90-100", "6002:30-60", "6003:30-60",
+                "6003:60-90"), sortedRequests());
+    }
+}